@@ -2,12 +2,14 @@ package org.example.file;
 
 import org.example.file.exception.FileError;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.AsynchronousFileChannel;
 import java.nio.channels.CompletionHandler;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -37,12 +39,37 @@ public final class FileService {
                 FileChannel sourceChannel = open(of(source), READ);
                 FileChannel targetChannel = open(of(target), CREATE, WRITE)
         ) {
-            sourceChannel.transferTo(0, sourceChannel.size(), targetChannel);
+            final long size = sourceChannel.size();
+            long position = 0;
+            // transferTo may move less than asked (e.g. at most 2GB per call on Linux), so loop till the end
+            while (position < size) {
+                try {
+                    position += transferChunk(sourceChannel, position, size - position, targetChannel);
+                } catch (EOFException ex) {
+                    handleException(COPY_ERROR, source, format("File %s was truncated while transferring", source),
+                            ex, exceptionInfo);
+                    return;
+                }
+            }
         } catch (IOException ex) {
             handleException(OPEN_ERROR, source, format("Failed to open file channel %s", source), ex, exceptionInfo);
         }
     }
 
+    // one step of zero-copy transfer (sendfile on Linux: page cache -> target without copying through the heap),
+    // non-blocking target (e.g. socket with full send buffer) may take less than count, even nothing.
+    // Nothing transferred & the source ends at position: it was truncated meanwhile, the rest never comes,
+    // so EOFException instead of 0 (a loop till position + count would spin forever)
+    public static long transferChunk(FileChannel source, long position, long count, WritableByteChannel target)
+            throws IOException {
+        final long transferred = source.transferTo(position, count, target);
+        if (transferred == 0 && count > 0 && source.size() <= position) {
+            throw new EOFException(format("Source was truncated to %d bytes, %d expected",
+                    source.size(), position + count));
+        }
+        return transferred;
+    }
+
     // adjust the buffer size based on performance needs and available memory
     // e.g. use as large buffer, as you can by memory & result latency
     public static void copyFile(
@@ -0,0 +1,88 @@
+package org.example.server;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+
+/**
+ * Outbound watermarks shared by all connections & counters of every slow-consumer decision.
+ */
+public final class Backpressure {
+    private final long highWatermark;
+    private final long lowWatermark;
+    private final SlowConsumerPolicy policy;
+
+    private final LongAdder readsSuspended = new LongAdder();
+    private final LongAdder readsResumed = new LongAdder();
+    private final LongAdder droppedOldest = new LongAdder();
+    private final LongAdder droppedNewest = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+
+    public Backpressure(long highWatermark, long lowWatermark, SlowConsumerPolicy policy) {
+        if (lowWatermark > highWatermark) {
+            throw new IllegalArgumentException(format(
+                    "Low watermark %d is above high watermark %d", lowWatermark, highWatermark));
+        }
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.policy = policy;
+    }
+
+    public long highWatermark() {
+        return highWatermark;
+    }
+
+    public long lowWatermark() {
+        return lowWatermark;
+    }
+
+    public SlowConsumerPolicy policy() {
+        return policy;
+    }
+
+    public long readsSuspended() {
+        return readsSuspended.sum();
+    }
+
+    public long readsResumed() {
+        return readsResumed.sum();
+    }
+
+    public long droppedOldest() {
+        return droppedOldest.sum();
+    }
+
+    public long droppedNewest() {
+        return droppedNewest.sum();
+    }
+
+    public long disconnected() {
+        return disconnected.sum();
+    }
+
+    void onReadSuspended() {
+        readsSuspended.increment();
+    }
+
+    void onReadResumed() {
+        readsResumed.increment();
+    }
+
+    void onDroppedOldest() {
+        droppedOldest.increment();
+    }
+
+    void onDroppedNewest() {
+        droppedNewest.increment();
+    }
+
+    void onDisconnected() {
+        disconnected.increment();
+    }
+
+    @Override
+    public String toString() {
+        return format("Backpressure[suspended=%d, resumed=%d, droppedOldest=%d, droppedNewest=%d, disconnected=%d]",
+                readsSuspended(), readsResumed(), droppedOldest(), droppedNewest(), disconnected());
+    }
+}
@@ -0,0 +1,15 @@
+package org.example.server;
+
+/**
+ * Chat server engine speaking the same protocol as {@link SimpleServer} (framing, exit code, topic commands),
+ * so different I/O models can be compared side by side.
+ */
+public interface ChatServer {
+
+    // blocks the calling thread till shutdown
+    void startServer();
+
+    void shutdown();
+
+    int getPort();
+}
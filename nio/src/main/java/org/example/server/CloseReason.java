@@ -0,0 +1,30 @@
+package org.example.server;
+
+/**
+ * Why the server closed a connection (reported on every close).
+ */
+public enum CloseReason {
+    // client sent exit code
+    CLIENT_EXIT,
+    // client closed its side of the socket
+    PEER_CLOSED,
+    // no inbound data for idle timeout
+    IDLE_TIMEOUT,
+    // started frame wasn't completed within read timeout
+    READ_TIMEOUT,
+    // ping wasn't answered till the next heartbeat (dead or half-open peer)
+    HEARTBEAT_TIMEOUT,
+    // outbound queue above high watermark with DISCONNECT policy
+    SLOW_CONSUMER,
+    // corrupted or oversized frame
+    PROTOCOL_ERROR,
+    // no buffer to read into (REJECT/WAIT pool policy)
+    BUFFER_EXHAUSTED,
+    IO_ERROR,
+    // unexpected exception while serving the connection (bug in a handler, task or timer callback)
+    INTERNAL_ERROR,
+    // reactive handler cancelled the inbound, completed or failed the outbound
+    APPLICATION,
+    // server stopped, every connection still open is closed by its event loop
+    SHUTDOWN
+}
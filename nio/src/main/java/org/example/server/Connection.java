@@ -0,0 +1,598 @@
+package org.example.server;
+
+import org.example.server.buffer.SharedBuffer;
+import org.example.server.journal.Journal;
+import org.example.server.timer.Timeout;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.channels.SelectionKey.OP_READ;
+
+/**
+ * Per-connection state owned by the worker loop serving the channel, attached to the channel's selection key.
+ * Any thread may {@link #send(SharedBuffer)}, only the worker thread writes to the channel.
+ * Sending & writing allocate nothing in steady state: frames are queued in a growable ring
+ * & written through the worker's reusable views of shared content.
+ */
+final class Connection implements TopicRegistry.Subscriber {
+    // reasons to stop reading from the client, OP_READ is registered only while none of them is set
+    static final int SUSPEND_BACKPRESSURE = 1;
+    static final int SUSPEND_MAILBOX = 2;
+    static final int SUSPEND_THROTTLE = 4;
+    static final int SUSPEND_RATE_LIMIT = 8;
+    static final int SUSPEND_DEMAND = 16;
+    static final int SUSPEND_BUFFER = 32;
+    private static final int INITIAL_OUTBOUND_CAPACITY = 16;
+
+    // dense slot in worker's ConnectionRegistry, -1 until registered
+    private int id = -1;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final EventLoop worker;
+    private final Backpressure backpressure;
+    private final SocketAddress remoteAddress;
+    // "[address]: " encoded once, prepended to every message of the client
+    private final byte[] addressPrefix;
+    // key of the client in the traffic sketch & its hash
+    private final String host;
+    private final long hostHash;
+    // traffic of this client, worker thread only (bytes out are updated by flushes, which run on the worker too)
+    private long bytesRead;
+    private long bytesWritten;
+    // bytes of partial frame carried across reads (leased from the pool, null while there is nothing to carry)
+    private ByteBuffer cumulation;
+    // decoded messages waiting for processing, in order (set once on registration)
+    private Mailbox mailbox;
+    // messages the client may send, shared limit of all connections (set once on registration)
+    private TokenBucket rateLimiter;
+    // frames go to the reactive handler instead of the mailbox (null - chat protocol, set once on registration)
+    private ReactiveConnection streams;
+
+    // frames waiting for the socket send buffer (ring: producers append at tail, worker drains head on OP_WRITE),
+    // a frame is queued at most once per connection at a time (views are per worker, not per enqueue)
+    private final Object outboundLock = new Object();
+    private SharedBuffer[] outbound = new SharedBuffer[INITIAL_OUTBOUND_CAPACITY];
+    private int outboundHead;
+    private int outboundSize;
+    // bytes of the head frame already written, worker thread only
+    private int headWritten;
+    // next connection waiting for flush in worker's stack (see EventLoop#scheduleFlush)
+    Connection nextFlush;
+    // true while flush is scheduled or OP_WRITE is registered, so producers don't wake up worker per message
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+    // queued but not yet written bytes, compared against watermarks
+    private final AtomicLong pendingBytes = new AtomicLong();
+    // true while overflow handling is scheduled on worker
+    private final AtomicBoolean overflowPending = new AtomicBoolean();
+    // worker thread only
+    private int readSuspensions;
+    // when reading started waiting for a free pool buffer (0 - not waiting), worker thread only
+    private long bufferWaitStartNanos;
+    // file being sent between queued frames (one at a time), worker thread only
+    private FileTransfer transfer;
+    // run once everything queued is written (e.g. next chunk of a replay), each of them once, worker thread only
+    private final List<Runnable> drainListeners = new ArrayList<>(2);
+    // replay in progress (null - none), a new one supersedes it, worker thread only
+    private Journal.Cursor replay;
+    // topics the client is subscribed to (to unsubscribe on close)
+    private final Set<String> topics = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    // timers & their state, worker thread only (except pong, which is handled by processing thread)
+    private Timeout idleTimeout;
+    private Timeout readTimeout;
+    private Timeout heartbeatTimeout;
+    private long lastReadNanos = System.nanoTime();
+    // 0 when there is no ping waiting for pong
+    private volatile long pingSentNanos;
+    private volatile long lastRttNanos;
+    // smoothed like TCP SRTT: srtt = 7/8 * srtt + 1/8 * rtt
+    private volatile long smoothedRttNanos;
+
+    Connection(
+            SocketChannel channel,
+            SelectionKey key,
+            EventLoop worker,
+            Backpressure backpressure,
+            SocketAddress remoteAddress
+    ) {
+        this.channel = channel;
+        this.key = key;
+        this.worker = worker;
+        this.backpressure = backpressure;
+        this.remoteAddress = remoteAddress;
+        this.addressPrefix = ("[" + remoteAddress + "]: ").getBytes();
+        this.host = hostOf(remoteAddress);
+        this.hostHash = hash(host);
+    }
+
+    // IP without port, socket path for Unix domain socket clients ("<path>#<n>")
+    private static String hostOf(SocketAddress address) {
+        if (address instanceof InetSocketAddress inet && inet.getAddress() != null) {
+            return inet.getAddress().getHostAddress();
+        }
+        final String name = String.valueOf(address);
+        final int separator = name.lastIndexOf('#');
+        return separator > 0 ? name.substring(0, separator) : name;
+    }
+
+    // 64-bit FNV-1a, computed once per connection for the traffic sketch
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    int id() {
+        return id;
+    }
+
+    void id(int id) {
+        this.id = id;
+    }
+
+    SocketChannel channel() {
+        return channel;
+    }
+
+    SelectionKey key() {
+        return key;
+    }
+
+    EventLoop worker() {
+        return worker;
+    }
+
+    SocketAddress remoteAddress() {
+        return remoteAddress;
+    }
+
+    byte[] addressPrefix() {
+        return addressPrefix;
+    }
+
+    String host() {
+        return host;
+    }
+
+    long hostHash() {
+        return hostHash;
+    }
+
+    @Override
+    public Set<String> topics() {
+        return topics;
+    }
+
+    Mailbox mailbox() {
+        return mailbox;
+    }
+
+    void mailbox(Mailbox mailbox) {
+        this.mailbox = mailbox;
+    }
+
+    ReactiveConnection streams() {
+        return streams;
+    }
+
+    void streams(ReactiveConnection streams) {
+        this.streams = streams;
+    }
+
+    TokenBucket rateLimiter() {
+        return rateLimiter;
+    }
+
+    void rateLimiter(TokenBucket rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    long bytesRead() {
+        return bytesRead;
+    }
+
+    void onRead(int bytes) {
+        bytesRead += bytes;
+    }
+
+    long bytesWritten() {
+        return bytesWritten;
+    }
+
+    ByteBuffer cumulation() {
+        return cumulation;
+    }
+
+    void cumulation(ByteBuffer cumulation) {
+        this.cumulation = cumulation;
+    }
+
+    /**
+     * Queue encoded frame for writing, never blocks & never touches the socket directly.
+     * Connection takes own reference of the frame, caller keeps its reference.
+     */
+    void send(SharedBuffer frame) {
+        if (closed) {
+            return;
+        }
+        final int size = frame.size();
+        final boolean overflow = pendingBytes.get() + size > backpressure.highWatermark();
+        if (overflow) {
+            if (overflowPending.compareAndSet(false, true)) {
+                worker.execute(this::handleOverflow);
+            }
+            if (backpressure.policy() == SlowConsumerPolicy.DROP_NEWEST) {
+                backpressure.onDroppedNewest();
+                return;
+            }
+            if (backpressure.policy() == SlowConsumerPolicy.DISCONNECT) {
+                return;
+            }
+        }
+        frame.retain();
+        synchronized (outboundLock) {
+            if (outboundSize == outbound.length) {
+                growOutbound();
+            }
+            outbound[(outboundHead + outboundSize++) & (outbound.length - 1)] = frame;
+        }
+        final long pending = pendingBytes.addAndGet(size);
+        if (closed) {
+            // connection was closed concurrently, nobody else is going to release the frame
+            clearOutbound();
+            return;
+        }
+        if (flushPending.compareAndSet(false, true)) {
+            worker.scheduleFlush(this);
+        }
+        // delayed flush may have to happen sooner (also for the first frame, it can be above flushBytes alone)
+        worker.onPending(pending);
+    }
+
+    // keeps ring order, capacity stays power of two
+    private void growOutbound() {
+        final SharedBuffer[] grown = new SharedBuffer[outbound.length * 2];
+        for (int i = 0; i < outboundSize; i++) {
+            grown[i] = outbound[(outboundHead + i) & (outbound.length - 1)];
+        }
+        outbound = grown;
+        outboundHead = 0;
+    }
+
+    /**
+     * Write queued frames to the socket, several at once with gathering write (one syscall).
+     * Called by worker thread only.
+     *
+     * @return true if everything was written (OP_WRITE is not needed anymore)
+     */
+    boolean flush(ByteBuffer[] gather, SharedBuffer[] owners) throws IOException {
+        // chunk of a file in progress goes first, frames queued meanwhile must not split it
+        if (transfer != null && transfer.inChunk() && !writeChunk()) {
+            return false;
+        }
+        do {
+            if (!writeQueued(gather, owners)) {
+                return false;
+            }
+            flushPending.set(false);
+            // producer could add frame after queue was drained but before flag was reset
+        } while (hasOutbound() && flushPending.compareAndSet(false, true));
+        if (transfer != null) {
+            if (transfer.hasMore()) {
+                transfer.startChunk();
+                writeChunk();
+                // one chunk per write readiness (continues on OP_WRITE), so a big file doesn't hold up the loop
+                return false;
+            }
+            final FileTransfer finished = transfer;
+            transfer = null;
+            finished.finish(true);
+        }
+        if (!drainListeners.isEmpty()) {
+            // listeners may register again (e.g. queue the next chunk & wait for it), those run on the next drain
+            final Runnable[] listeners = drainListeners.toArray(new Runnable[0]);
+            drainListeners.clear();
+            for (Runnable listener : listeners) {
+                listener.run();
+            }
+        }
+        return true;
+    }
+
+    private boolean writeChunk() throws IOException {
+        final long before = transfer.bytesSent();
+        final boolean complete = transfer.writeChunk(channel);
+        final long written = transfer.bytesSent() - before;
+        bytesWritten += written;
+        worker.metrics().bytesOut.add(written);
+        return complete;
+    }
+
+    /**
+     * Start sending the file between queued frames. Worker thread only.
+     *
+     * @return false if another file is being sent already
+     */
+    boolean startTransfer(FileTransfer transfer) {
+        if (this.transfer != null || closed) {
+            return false;
+        }
+        this.transfer = transfer;
+        worker.flush(this);
+        return true;
+    }
+
+    /**
+     * Run the listener on worker thread once the outbound queue is written out, next to the listeners registered
+     * already. Worker thread only.
+     */
+    void onDrained(Runnable listener) {
+        drainListeners.add(listener);
+    }
+
+    Journal.Cursor replay() {
+        return replay;
+    }
+
+    void replay(Journal.Cursor replay) {
+        this.replay = replay;
+    }
+
+    private boolean hasOutbound() {
+        synchronized (outboundLock) {
+            return outboundSize > 0;
+        }
+    }
+
+    void close() {
+        closed = true;
+        clearOutbound();
+        if (transfer != null) {
+            final FileTransfer aborted = transfer;
+            transfer = null;
+            aborted.finish(false);
+        }
+        cancel(idleTimeout);
+        cancel(readTimeout);
+        cancel(heartbeatTimeout);
+        drainListeners.clear();
+        replay = null;
+    }
+
+    private static void cancel(Timeout timeout) {
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    Timeout idleTimeout() {
+        return idleTimeout;
+    }
+
+    void idleTimeout(Timeout idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    Timeout readTimeout() {
+        return readTimeout;
+    }
+
+    void readTimeout(Timeout readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    void heartbeatTimeout(Timeout heartbeatTimeout) {
+        this.heartbeatTimeout = heartbeatTimeout;
+    }
+
+    long lastReadNanos() {
+        return lastReadNanos;
+    }
+
+    void lastReadNanos(long lastReadNanos) {
+        this.lastReadNanos = lastReadNanos;
+    }
+
+    long pingSentNanos() {
+        return pingSentNanos;
+    }
+
+    void pingSentNanos(long pingSentNanos) {
+        this.pingSentNanos = pingSentNanos;
+    }
+
+    // pong echoes ping timestamp, stale or foreign values are ignored
+    void onPong(long echoedNanos, long nowNanos) {
+        if (echoedNanos != pingSentNanos) {
+            return;
+        }
+        final long rtt = nowNanos - echoedNanos;
+        lastRttNanos = rtt;
+        smoothedRttNanos = smoothedRttNanos == 0 ? rtt : smoothedRttNanos + (rtt - smoothedRttNanos) / 8;
+        pingSentNanos = 0;
+    }
+
+    long lastRttNanos() {
+        return lastRttNanos;
+    }
+
+    long smoothedRttNanos() {
+        return smoothedRttNanos;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void clearOutbound() {
+        synchronized (outboundLock) {
+            while (outboundSize > 0) {
+                pollOutbound().release();
+            }
+            // partially written head doesn't matter anymore
+            pendingBytes.set(0);
+        }
+    }
+
+    // caller holds outboundLock
+    private SharedBuffer pollOutbound() {
+        final SharedBuffer frame = outbound[outboundHead];
+        outbound[outboundHead] = null;
+        outboundHead = (outboundHead + 1) & (outbound.length - 1);
+        outboundSize--;
+        return frame;
+    }
+
+    long pendingBytes() {
+        return pendingBytes.get();
+    }
+
+    long bufferWaitStartNanos() {
+        return bufferWaitStartNanos;
+    }
+
+    void bufferWaitStartNanos(long nanos) {
+        this.bufferWaitStartNanos = nanos;
+    }
+
+    /**
+     * Stop reading from the client for the given reason. Worker thread only.
+     */
+    void suspendRead(int reason) {
+        if (readSuspensions == 0 && key.isValid()) {
+            key.interestOps(key.interestOps() & ~OP_READ);
+        }
+        readSuspensions |= reason;
+    }
+
+    /**
+     * Resume reading if no other reason to keep it suspended is left. Worker thread only.
+     */
+    void resumeRead(int reason) {
+        readSuspensions &= ~reason;
+        if (readSuspensions == 0 && key.isValid()) {
+            key.interestOps(key.interestOps() | OP_READ);
+        }
+    }
+
+    boolean isReadSuspended(int reason) {
+        return (readSuspensions & reason) != 0;
+    }
+
+    // client doesn't read as fast as we produce: stop reading from it & apply slow-consumer policy
+    private void handleOverflow() {
+        overflowPending.set(false);
+        if (!key.isValid()) {
+            return;
+        }
+        if (!isReadSuspended(SUSPEND_BACKPRESSURE)) {
+            suspendRead(SUSPEND_BACKPRESSURE);
+            backpressure.onReadSuspended();
+        }
+        switch (backpressure.policy()) {
+            case DROP_OLDEST -> dropOldest();
+            case DISCONNECT -> {
+                backpressure.onDisconnected();
+                System.err.printf("Slow consumer %s: %d bytes pending, disconnecting%n", channel, pendingBytes.get());
+                worker.close(this, CloseReason.SLOW_CONSUMER);
+            }
+            case DROP_NEWEST -> {
+                // already dropped by producers
+            }
+        }
+    }
+
+    // head frame may be partially written already, so it is never dropped (would corrupt the stream)
+    private void dropOldest() {
+        synchronized (outboundLock) {
+            final int mask = outbound.length - 1;
+            while (pendingBytes.get() > backpressure.highWatermark() && outboundSize > 1) {
+                final int second = (outboundHead + 1) & mask;
+                final SharedBuffer frame = outbound[second];
+                // close the gap: shift the rest of the ring one slot towards the head
+                for (int i = 1; i < outboundSize - 1; i++) {
+                    outbound[(outboundHead + i) & mask] = outbound[(outboundHead + i + 1) & mask];
+                }
+                outbound[(outboundHead + outboundSize - 1) & mask] = null;
+                outboundSize--;
+                pendingBytes.addAndGet(-frame.size());
+                frame.release();
+                backpressure.onDroppedOldest();
+            }
+        }
+    }
+
+    // queue drained enough, client is able to take more
+    private void resumeIfDrained() {
+        if (isReadSuspended(SUSPEND_BACKPRESSURE) && pendingBytes.get() <= backpressure.lowWatermark()) {
+            resumeRead(SUSPEND_BACKPRESSURE);
+            backpressure.onReadResumed();
+        }
+    }
+
+    private boolean writeQueued(ByteBuffer[] gather, SharedBuffer[] owners) throws IOException {
+        while (true) {
+            int count;
+            // producers only append at tail, so head frames stay put while they are written
+            synchronized (outboundLock) {
+                count = Math.min(outboundSize, gather.length);
+                for (int i = 0; i < count; i++) {
+                    owners[i] = outbound[(outboundHead + i) & (outbound.length - 1)];
+                }
+            }
+            if (count == 0) {
+                return true;
+            }
+            for (int i = 0; i < count; i++) {
+                gather[i] = owners[i].view(worker.index());
+            }
+            gather[0].position(gather[0].position() + headWritten);
+
+            final long bytesWritten = channel.write(gather, 0, count);
+            worker.metrics().writeSyscalls.increment();
+            pendingBytes.addAndGet(-bytesWritten);
+            this.bytesWritten += bytesWritten;
+            worker.metrics().bytesOut.add(bytesWritten);
+            resumeIfDrained();
+
+            int written = 0;
+            while (written < count && !gather[written].hasRemaining()) {
+                written++;
+            }
+            worker.metrics().framesWritten.add(written);
+            headWritten = written < count ? gather[written].position() - owners[written].content().position() : 0;
+            synchronized (outboundLock) {
+                for (int i = 0; i < written; i++) {
+                    pollOutbound();
+                }
+            }
+            for (int i = 0; i < written; i++) {
+                // this recipient is done, content goes back to the pool after the last one
+                owners[i].release();
+            }
+            Arrays.fill(gather, 0, count, null);
+            Arrays.fill(owners, 0, count, null);
+            if (written < count) {
+                // socket send buffer is full, wait for OP_WRITE
+                return false;
+            }
+        }
+    }
+}
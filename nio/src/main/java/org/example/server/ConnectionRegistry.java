@@ -0,0 +1,79 @@
+package org.example.server;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Connections of one event loop indexed by dense int id, the slot of a growable array. Ids of closed
+ * connections are reused (free-list), so the array stays compact & iteration walks plain references
+ * instead of hash buckets & entry objects. Lookups on the read path don't need it at all: the connection
+ * is attached to its selection key.
+ * <p>
+ * Loop thread only, except {@link #size()}.
+ */
+final class ConnectionRegistry {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private Connection[] slots = new Connection[INITIAL_CAPACITY];
+    // ids of the free slots below highWater, taken as a stack (the most recently freed slot is still in cache)
+    private int[] free = new int[INITIAL_CAPACITY];
+    private int freeCount;
+    // slots from here on were never used
+    private int highWater;
+    // single writer, volatile for gauges
+    private volatile int size;
+
+    /**
+     * Take a free id for the connection (sets {@link Connection#id()}).
+     */
+    void add(Connection connection) {
+        final int id = freeCount > 0 ? free[--freeCount] : highWater++;
+        if (id == slots.length) {
+            slots = Arrays.copyOf(slots, slots.length * 2);
+        }
+        slots[id] = connection;
+        connection.id(id);
+        size = size + 1;
+    }
+
+    /**
+     * @return false if the connection isn't registered (already removed)
+     */
+    boolean remove(Connection connection) {
+        final int id = connection.id();
+        if (id < 0 || id >= highWater || slots[id] != connection) {
+            return false;
+        }
+        slots[id] = null;
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, free.length * 2);
+        }
+        free[freeCount++] = id;
+        size = size - 1;
+        return true;
+    }
+
+    Connection get(int id) {
+        return id >= 0 && id < highWater ? slots[id] : null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(Consumer<Connection> action) {
+        for (int i = 0; i < highWater; i++) {
+            final Connection connection = slots[i];
+            if (connection != null) {
+                action.accept(connection);
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(slots, 0, highWater, null);
+        highWater = 0;
+        freeCount = 0;
+        size = 0;
+    }
+}
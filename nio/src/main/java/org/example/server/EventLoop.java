@@ -0,0 +1,350 @@
+package org.example.server;
+
+import org.example.server.buffer.SharedBuffer;
+import org.example.server.timer.HashedWheelTimer;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static java.nio.channels.SelectionKey.OP_READ;
+import static java.nio.channels.SelectionKey.OP_WRITE;
+
+/**
+ * Single-threaded reactor: one selector, one thread, one registry of the connections it serves.
+ * The acceptor (boss) loop owns the server channel, worker loops own the client channels handed over to them.
+ */
+final class EventLoop implements Runnable {
+    // max frames flushed by one gathering write
+    private static final int MAX_GATHER = 64;
+    // how often the top talkers are published to metrics readers
+    private static final long TRAFFIC_PUBLISH_MILLIS = 1_000;
+
+    private final String name;
+    // reader slot of this loop in shared buffers (see SharedBuffer#view(int))
+    private final int index;
+    private final SimpleServer server;
+    private final Selector selector;
+    // idle/read timeouts & heartbeats of connections served by this loop
+    private final HashedWheelTimer timer;
+    private final ServerMetrics metrics;
+    // write coalescing policy (see ServerConfig#getFlushDelayMillis())
+    private final long flushDelayNanos;
+    private final int flushBytes;
+    // set by producers when a client has flushBytes pending, delayed flush happens right away then
+    private volatile boolean flushNow;
+    // loop thread only: when the loop found the first flush waiting (0 - none is waiting)
+    private long flushWindowStart;
+    // tasks from other threads (e.g. registration of accepted channels), executed by the loop thread itself
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // connections with frames to flush, intrusive stack (linked by Connection.nextFlush) so scheduling allocates nothing
+    private final AtomicReference<Connection> flushes = new AtomicReference<>();
+    // connections served by this loop only, each one is attached to its key as well
+    private final ConnectionRegistry connections = new ConnectionRegistry();
+    // reused by every flush, loop thread only
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private final SharedBuffer[] gatherOwners = new SharedBuffer[MAX_GATHER];
+    // created once, select passes every ready key to it
+    private final Consumer<SelectionKey> onSelected = this::handleSelected;
+    // loop thread only: when the first ready key of the current round was handled (0 - none yet)
+    private long handleStart;
+
+    // inbound traffic per client host (null - disabled), loop thread only except published top K
+    private final TrafficSketch traffic;
+    private final long trafficDecayNanos;
+    private long lastTrafficDecay;
+
+    // volatile: producers skip wakeup of their own loop
+    private volatile Thread thread;
+
+    EventLoop(String name, int index, SimpleServer server, HashedWheelTimer timer) {
+        this.name = name;
+        this.index = index;
+        this.server = server;
+        this.timer = timer;
+        this.metrics = server.getMetrics();
+        this.flushDelayNanos = server.getConfig().getFlushDelayMillis() * 1_000_000;
+        this.flushBytes = server.getConfig().getFlushBytes();
+        final ServerConfig config = server.getConfig();
+        this.traffic = config.isTrafficSketchEnabled()
+                ? new TrafficSketch(config.getTrafficSketchWidth(), config.getTrafficSketchDepth(), config.getTrafficTopK())
+                : null;
+        this.trafficDecayNanos = config.getTrafficDecayMillis() * 1_000_000;
+        try {
+            selector = Selector.open();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    void start() {
+        thread = new Thread(this, name);
+        thread.start();
+    }
+
+    // channel must be registered from the loop thread, otherwise register() blocks while select() is in progress
+    void register(SocketChannel client, SocketAddress remoteAddress, Consumer<Connection> onRegistered) {
+        execute(() -> {
+            try {
+                final SelectionKey key = client.register(selector, OP_READ);
+                final Connection connection = new Connection(
+                        client, key, this, server.getBackpressure(), remoteAddress);
+                connections.add(connection);
+                // read & write events get the connection straight from the key, no lookup
+                key.attach(connection);
+                onRegistered.accept(connection);
+            } catch (IOException e) {
+                System.err.println("Failed to register client in " + name);
+                try {
+                    client.close();
+                } catch (IOException ex) {
+                    System.err.println("Failed to close client: " + remoteAddress);
+                }
+                server.releaseConnection();
+            }
+        });
+    }
+
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Flush connection on the loop thread at the end of the current (or next) iteration, together with every
+     * other connection written meanwhile. Caller guarantees the connection isn't scheduled already
+     * (Connection.flushPending), so the stack never contains it twice.
+     */
+    void scheduleFlush(Connection connection) {
+        Connection head;
+        do {
+            head = flushes.get();
+            connection.nextFlush = head;
+        } while (!flushes.compareAndSet(head, connection));
+        // only the first one wakes up the loop (wakeup is a syscall), the loop itself checks the stack before select
+        if (head == null && Thread.currentThread() != thread) {
+            wakeup();
+            metrics.wakeups.increment();
+        }
+    }
+
+    // max-bytes part of the policy, no need to hurry unless the flush is delayed
+    void onPending(long pendingBytes) {
+        if (flushDelayNanos > 0 && pendingBytes >= flushBytes && !flushNow) {
+            flushNow = true;
+            // the loop itself checks the flag before select
+            if (Thread.currentThread() != thread) {
+                wakeup();
+                metrics.wakeups.increment();
+            }
+        }
+    }
+
+    // flush every iteration or once the first waiting flush is flushDelay old (or a client has flushBytes pending)
+    private boolean flushDue(long now) {
+        if (flushes.get() == null) {
+            return false;
+        }
+        if (flushDelayNanos == 0 || flushNow) {
+            return true;
+        }
+        if (flushWindowStart == 0) {
+            flushWindowStart = now;
+        }
+        return now - flushWindowStart >= flushDelayNanos;
+    }
+
+    // don't block in select past the flush deadline. Ready keys go straight to the action: no selected-key set
+    // entries & no iterator per round, the loop allocates nothing per event
+    private int select() throws IOException {
+        final long timerTimeout = timer.selectTimeoutMillis();
+        if (flushes.get() == null) {
+            return selector.select(onSelected, timerTimeout);
+        }
+        final long now = System.nanoTime();
+        if (flushDue(now)) {
+            return selector.selectNow(onSelected);
+        }
+        final long flushTimeout = Math.max(1, (flushDelayNanos - (now - flushWindowStart)) / 1_000_000);
+        return selector.select(onSelected, timerTimeout == 0 ? flushTimeout : Math.min(timerTimeout, flushTimeout));
+    }
+
+    // select action, loop thread
+    private void handleSelected(SelectionKey key) {
+        if (handleStart == 0) {
+            handleStart = System.nanoTime();
+        }
+        if (!key.isValid()) {
+            return;
+        }
+        try {
+            handle(key);
+        } catch (RuntimeException e) {
+            // a bug in one handler costs its connection, not the loop with every connection on it
+            System.err.printf("Unexpected error in %s: %s%n", name, e);
+            if (key.attachment() instanceof Connection) {
+                server.closeConnection(key, CloseReason.INTERNAL_ERROR);
+            }
+        }
+    }
+
+    private void runFlushes() {
+        flushNow = false;
+        flushWindowStart = 0;
+        Connection connection = flushes.getAndSet(null);
+        while (connection != null) {
+            final Connection next = connection.nextFlush;
+            connection.nextFlush = null;
+            try {
+                flush(connection);
+            } catch (RuntimeException e) {
+                System.err.printf("Flush failed in %s: %s%n", name, e);
+                server.closeConnection(connection.key(), CloseReason.INTERNAL_ERROR);
+            }
+            connection = next;
+        }
+    }
+
+    int index() {
+        return index;
+    }
+
+    Selector selector() {
+        return selector;
+    }
+
+    ConnectionRegistry connections() {
+        return connections;
+    }
+
+    @Override
+    public void run() {
+        // acceptor may run on the caller's thread
+        thread = Thread.currentThread();
+        if (traffic != null) {
+            lastTrafficDecay = System.nanoTime();
+            timer.schedule(TRAFFIC_PUBLISH_MILLIS, this::sampleTraffic);
+        }
+        while (server.isRunning()) {
+            try {
+                // block until any I/O event, wakeup() from another thread, the next timer tick or flush deadline,
+                // ready keys are handled during the call
+                handleStart = 0;
+                final int selected = select();
+                final long start = handleStart != 0 ? handleStart : System.nanoTime();
+                runTasks();
+                if (flushDue(System.nanoTime())) {
+                    runFlushes();
+                }
+                final long end = System.nanoTime();
+                timer.tick(end);
+                metrics.selectedKeys.record(selected);
+                metrics.loopIteration.record((end - start) / 1_000);
+            } catch (IOException e) {
+                System.err.printf("Error trying select event by selector %s: %s%n", name, e.getMessage());
+                if (!selector.isOpen()) {
+                    break;
+                }
+            }
+        }
+        closeAll();
+    }
+
+    private void handle(SelectionKey key) {
+        if (key.isAcceptable()) {
+            server.acceptConnection(key);
+            return;
+        }
+        if (key.isReadable()) {
+            server.readData(key);
+        }
+        // socket send buffer has space again for pending frames
+        if (key.isValid() && key.isWritable()) {
+            server.writeData(key);
+        }
+    }
+
+    // register OP_WRITE only while there is something left to write, otherwise selector spins on writable socket
+    void flush(Connection connection) {
+        final SelectionKey key = connection.key();
+        if (!key.isValid()) {
+            return;
+        }
+        try {
+            if (connection.flush(gather, gatherOwners)) {
+                key.interestOps(key.interestOps() & ~OP_WRITE);
+            } else {
+                key.interestOps(key.interestOps() | OP_WRITE);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to write to client: " + connection.channel());
+            server.closeConnection(key, CloseReason.IO_ERROR);
+        }
+    }
+
+    void close(Connection connection, CloseReason reason) {
+        server.closeConnection(connection.key(), reason);
+    }
+
+    ServerMetrics metrics() {
+        return metrics;
+    }
+
+    TrafficSketch traffic() {
+        return traffic;
+    }
+
+    // timer task: publish the top K for metrics readers, halve the counts once per decay interval
+    private void sampleTraffic() {
+        final long now = System.nanoTime();
+        if (trafficDecayNanos > 0 && now - lastTrafficDecay >= trafficDecayNanos) {
+            traffic.decay();
+            lastTrafficDecay = now;
+        }
+        traffic.publish();
+        timer.schedule(TRAFFIC_PUBLISH_MILLIS, this::sampleTraffic);
+    }
+
+    HashedWheelTimer timer() {
+        return timer;
+    }
+
+    void wakeup() {
+        selector.wakeup();
+    }
+
+    // server is stopped: close every channel served by this loop & the selector itself
+    private void closeAll() {
+        // the usual close path (removing the current slot leaves the others in place), so reactive streams are
+        // terminated, timers cancelled & topics left like on any other close
+        final int open = connections.size();
+        connections.forEach(connection -> server.closeConnection(connection.key(), CloseReason.SHUTDOWN));
+        connections.clear();
+        if (open > 0) {
+            System.out.printf("%s closed %d connection(s): %s%n", name, open, CloseReason.SHUTDOWN);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close selector " + name);
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.printf("Task failed in %s: %s%n", name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.example.server;
+
+import org.example.file.FileService;
+import org.example.server.codec.FrameEncoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.function.BiConsumer;
+
+import static java.lang.String.format;
+import static java.nio.ByteBuffer.wrap;
+
+/**
+ * Zero-copy transfer of a file (from an offset) to one connection. The file goes to the socket in chunks with
+ * {@link FileChannel#transferTo} (sendfile on Linux: page cache to socket, never through the heap), each chunk
+ * preceded by its header frame {@code "/chunk <offset> <length> <file size> <name>"}, so the client tracks
+ * progress & resumes after a failure with {@code "/file <name> <offset of the first missing chunk>"}.
+ * <p>
+ * Driven by the worker loop as part of the connection flush: chat frames queued meanwhile go between chunks,
+ * never inside one. Worker thread only.
+ */
+final class FileTransfer {
+    static final String CHUNK_COMMAND = "/chunk";
+
+    private final String name;
+    private final FileChannel file;
+    private final long size;
+    private final long startOffset;
+    private final int chunkBytes;
+    private final FrameEncoder encoder;
+    // called once: true when the whole file is sent, false if the connection was closed before
+    private final BiConsumer<FileTransfer, Boolean> onFinished;
+    // next byte of the file to send & end of the chunk in progress
+    private long position;
+    private long chunkEnd;
+    // header of the chunk in progress, null between chunks
+    private ByteBuffer header;
+    // everything written to the socket, headers included
+    private long bytesSent;
+
+    FileTransfer(
+            String name,
+            FileChannel file,
+            long startOffset,
+            int chunkBytes,
+            FrameEncoder encoder,
+            BiConsumer<FileTransfer, Boolean> onFinished
+    ) throws IOException {
+        this.name = name;
+        this.file = file;
+        this.size = file.size();
+        this.startOffset = startOffset;
+        this.position = startOffset;
+        this.chunkEnd = startOffset;
+        this.chunkBytes = chunkBytes;
+        this.encoder = encoder;
+        this.onFinished = onFinished;
+    }
+
+    String name() {
+        return name;
+    }
+
+    long size() {
+        return size;
+    }
+
+    long startOffset() {
+        return startOffset;
+    }
+
+    long position() {
+        return position;
+    }
+
+    long bytesSent() {
+        return bytesSent;
+    }
+
+    boolean inChunk() {
+        return header != null;
+    }
+
+    boolean hasMore() {
+        return position < size;
+    }
+
+    void startChunk() {
+        chunkEnd = Math.min(size, position + chunkBytes);
+        header = encoder.encode(wrap(
+                format("%s %d %d %d %s", CHUNK_COMMAND, position, chunkEnd - position, size, name).getBytes()));
+    }
+
+    /**
+     * Continue the chunk in progress.
+     *
+     * @return true if the chunk is written completely, false if socket send buffer is full
+     */
+    boolean writeChunk(WritableByteChannel channel) throws IOException {
+        while (header.hasRemaining()) {
+            final int written = channel.write(header);
+            bytesSent += written;
+            if (written == 0) {
+                return false;
+            }
+        }
+        while (position < chunkEnd) {
+            // EOFException if the file was truncated: the chunk can't be completed, the connection is closed
+            final long transferred = FileService.transferChunk(file, position, chunkEnd - position, channel);
+            if (transferred == 0) {
+                return false;
+            }
+            position += transferred;
+            bytesSent += transferred;
+        }
+        header = null;
+        return true;
+    }
+
+    void finish(boolean completed) {
+        try {
+            file.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close transferred file " + name);
+        }
+        onFinished.accept(this, completed);
+    }
+}
@@ -0,0 +1,127 @@
+package org.example.server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * Inbound messages of one connection, processed in arrival order by one pool thread at a time (actor style):
+ * different connections are processed in parallel, messages of the same connection never are.
+ * <p>
+ * Lock-free single-producer ring: only the worker loop reading the connection offers messages, the mailbox
+ * itself is the task submitted to the pool (at most once while it has messages), so nothing is allocated per
+ * message. Full mailbox doesn't drop anything, the loop stops reading the client until processing catches up.
+ */
+final class Mailbox implements Runnable {
+    private final Connection connection;
+    private final Executor executor;
+    private final BiConsumer<Connection, ByteBuffer> processor;
+    // called by processing thread when suspended mailbox is drained to half
+    private final Runnable onDrained;
+    private final ByteBuffer[] messages;
+    private final int mask;
+    // messages processed in one run before the pool thread is given to other mailboxes
+    private final int throughput;
+    // tail is written by producer only, head by consumer only, volatile writes publish slots to the other side
+    private volatile long tail;
+    private volatile long head;
+    // true while the mailbox is queued in the pool or being run, so it is never run by two threads at once
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // true while the loop doesn't read the client because the mailbox was full
+    private final AtomicBoolean suspended = new AtomicBoolean();
+
+    Mailbox(
+            Connection connection,
+            Executor executor,
+            BiConsumer<Connection, ByteBuffer> processor,
+            Runnable onDrained,
+            int capacity,
+            int throughput
+    ) {
+        if (capacity < 2 || throughput < 1) {
+            throw new IllegalArgumentException(
+                    "Mailbox capacity must be at least 2 & throughput at least 1: " + capacity + ", " + throughput);
+        }
+        this.connection = connection;
+        this.executor = executor;
+        this.processor = processor;
+        this.onDrained = onDrained;
+        // power of two, so the slot is a mask of the sequence
+        this.messages = new ByteBuffer[Integer.highestOneBit(capacity - 1) << 1];
+        this.mask = messages.length - 1;
+        this.throughput = throughput;
+    }
+
+    /**
+     * Producer (worker loop) only.
+     *
+     * @return false if the mailbox is full (message is not taken)
+     */
+    boolean offer(ByteBuffer message) {
+        final long sequence = tail;
+        if (sequence - head == messages.length) {
+            return false;
+        }
+        messages[(int) sequence & mask] = message;
+        tail = sequence + 1;
+        schedule();
+        return true;
+    }
+
+    int size() {
+        return (int) (tail - head);
+    }
+
+    boolean isFull() {
+        return size() == messages.length;
+    }
+
+    /**
+     * Producer found the mailbox full & is about to stop reading the client.
+     * Processing could free half of it in the meantime, then reading goes on right away.
+     *
+     * @return true if reading must be suspended (the mailbox calls back once drained)
+     */
+    boolean suspend() {
+        suspended.set(true);
+        // whoever resets the flag (producer here or consumer in resumeIfDrained) owns the resumption
+        return !(isDrained() && suspended.compareAndSet(true, false));
+    }
+
+    @Override
+    public void run() {
+        long sequence = head;
+        final long end = Math.min(tail, sequence + throughput);
+        for (; sequence < end; sequence++) {
+            final int slot = (int) sequence & mask;
+            final ByteBuffer message = messages[slot];
+            messages[slot] = null;
+            // slot is free for the producer while the message is processed
+            head = sequence + 1;
+            processor.accept(connection, message);
+        }
+        resumeIfDrained();
+        scheduled.set(false);
+        // producer could offer after the last message was taken but before the flag was reset (& didn't submit)
+        if (size() > 0) {
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this);
+        }
+    }
+
+    private void resumeIfDrained() {
+        if (suspended.get() && isDrained() && suspended.compareAndSet(true, false)) {
+            onDrained.run();
+        }
+    }
+
+    private boolean isDrained() {
+        return size() <= messages.length / 2;
+    }
+}
@@ -0,0 +1,490 @@
+package org.example.server;
+
+import org.example.server.buffer.BufferPool;
+import org.example.server.buffer.BufferPoolExhaustedException;
+import org.example.server.buffer.SharedBuffer;
+import org.example.server.codec.CorruptedFrameException;
+import org.example.server.codec.FrameDecoder;
+import org.example.server.codec.FrameEncoder;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.Charset;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.Runtime.getRuntime;
+import static java.lang.String.format;
+import static java.nio.ByteBuffer.wrap;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.example.server.SimpleServer.DEFAULT_TOPIC;
+import static org.example.server.SimpleServer.EXIT_CODE;
+import static org.example.server.SimpleServer.PUBLISH_COMMAND;
+import static org.example.server.SimpleServer.SUBSCRIBE_COMMAND;
+import static org.example.server.SimpleServer.UNSUBSCRIBE_COMMAND;
+
+/**
+ * Same chat protocol as {@link SimpleServer}, but proactor-style: {@link AsynchronousServerSocketChannel} in
+ * an {@link AsynchronousChannelGroup}, the JDK runs the readiness loop (epoll on Linux) & calls completion
+ * handlers on the group threads once a read or write is done. Messages are handled right in the read handler,
+ * there is no separate processing pool.
+ * <p>
+ * Buffers come from the same {@link BufferPool}: inbound buffer is leased for the connection's lifetime
+ * (a read is always pending & owns its buffer, unlike the reactor which leases it per read), outbound frames
+ * are shared reference-counted buffers, one per message for all recipients. Group threads never wait for
+ * a pool buffer ({@link org.example.server.buffer.ExhaustionPolicy#WAIT} included): a client is rejected without
+ * an inbound buffer, an outbound frame is unpooled.
+ * <p>
+ * At most one write per connection is pending (the channel allows no more): frames queued meanwhile go out
+ * together in the next gathering write. Connections with more than high watermark of queued bytes are
+ * disconnected.
+ */
+public class ProactorServer implements ChatServer {
+    // frames in one gathering write
+    private static final int MAX_GATHER = 64;
+    private static final byte[] EXIT_BYTES = EXIT_CODE.getBytes(US_ASCII);
+    private static final byte[] NO_PREFIX = new byte[0];
+
+    private final int port;
+    private final int bufferSize;
+    private final int threads;
+    private final ServerConfig config;
+    private final FrameDecoder frameDecoder;
+    private final FrameEncoder frameEncoder;
+    private final BufferPool bufferPool;
+    private final Backpressure backpressure;
+    private final boolean announceConnections;
+    private final TopicRegistry<Session> topics = new TopicRegistry<>(Session[]::new);
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private AsynchronousChannelGroup group;
+    private AsynchronousServerSocketChannel serverChannel;
+
+    public ProactorServer(ServerConfig config) {
+        this.config = config;
+        this.port = config.getPort();
+        this.bufferSize = config.getBufferSize();
+        // one group thread per core, like one worker loop per core in the reactor
+        this.threads = config.getWorkerCount() > 0 ? config.getWorkerCount() : getRuntime().availableProcessors();
+        this.frameDecoder = config.getFrameDecoder();
+        this.frameEncoder = config.getFrameEncoder();
+        this.announceConnections = config.isAnnounceConnections();
+        this.bufferPool = new BufferPool(
+                config.getMinBufferSize(),
+                bufferSize,
+                config.getBuffersPerSlab(),
+                config.getMaxConnections(),
+                config.getExhaustionPolicy(),
+                config.getBufferWaitMillis());
+        this.backpressure = new Backpressure(
+                config.getHighWatermark(),
+                config.getLowWatermark(),
+                config.getSlowConsumerPolicy());
+        initServer();
+    }
+
+    private void initServer() {
+        try {
+            group = AsynchronousChannelGroup.withFixedThreadPool(threads, groupThreads());
+            serverChannel = AsynchronousServerSocketChannel.open(group);
+            if (config.getReceiveBufferSize() > 0) {
+                serverChannel.setOption(StandardSocketOptions.SO_RCVBUF, config.getReceiveBufferSize());
+            }
+            serverChannel.bind(new InetSocketAddress(port), config.getBacklog());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static ThreadFactory groupThreads() {
+        final AtomicInteger count = new AtomicInteger();
+        return runnable -> new Thread(runnable, "proactor-" + count.getAndIncrement());
+    }
+
+    // returns after shutdown(), like the other engines
+    @Override
+    public void startServer() {
+        System.out.printf("Server listening on port %s with %d completion thread(s) (proactor)...%n", port, threads);
+        serverChannel.accept(null, onAccept);
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close server channel on port " + port);
+        }
+        sessions.forEach(this::closeSession);
+        group.shutdown();
+        stopped.countDown();
+    }
+
+    @Override
+    public int getPort() {
+        return port;
+    }
+
+    public Backpressure getBackpressure() {
+        return backpressure;
+    }
+
+    // completion handlers are shared by all connections (session comes as attachment), nothing allocated per I/O
+    private final CompletionHandler<AsynchronousSocketChannel, Void> onAccept = new CompletionHandler<>() {
+        @Override
+        public void completed(AsynchronousSocketChannel channel, Void attachment) {
+            // next accept first, so a slow setup of this client doesn't delay others
+            serverChannel.accept(null, this);
+            accepted(channel);
+        }
+
+        @Override
+        public void failed(Throwable e, Void attachment) {
+            if (serverChannel.isOpen()) {
+                System.err.println("Failed to accept client: " + e.getMessage());
+                serverChannel.accept(null, this);
+            }
+        }
+    };
+
+    private final CompletionHandler<Integer, Session> onRead = new CompletionHandler<>() {
+        @Override
+        public void completed(Integer bytesRead, Session session) {
+            readCompleted(session, bytesRead);
+        }
+
+        @Override
+        public void failed(Throwable e, Session session) {
+            if (session.channel.isOpen()) {
+                System.err.println("Failed to read from client: " + session.remoteAddress);
+            }
+            closeSession(session);
+            bufferPool.release(session.in);
+        }
+    };
+
+    private final CompletionHandler<Long, Session> onWrite = new CompletionHandler<>() {
+        @Override
+        public void completed(Long bytesWritten, Session session) {
+            writeCompleted(session, bytesWritten);
+        }
+
+        @Override
+        public void failed(Throwable e, Session session) {
+            closeSession(session);
+            releaseBatch(session);
+        }
+    };
+
+    private void accepted(AsynchronousSocketChannel channel) {
+        try {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, config.isTcpNoDelay());
+            if (config.getSendBufferSize() > 0) {
+                channel.setOption(StandardSocketOptions.SO_SNDBUF, config.getSendBufferSize());
+            }
+            final SocketAddress remoteAddress = channel.getRemoteAddress();
+            // group threads must not wait for a buffer: the completions that would return one run on them too
+            final ByteBuffer in = bufferPool.tryAcquire(bufferSize);
+            if (in == null) {
+                System.err.println("No buffer available, rejecting client");
+                closeQuietly(channel);
+                return;
+            }
+            final Session session = new Session(channel, remoteAddress, in);
+            sessions.add(session);
+            topics.subscribe(DEFAULT_TOPIC, session);
+            if (announceConnections) {
+                broadcast("[System]: " + session.remoteAddress + " connected!");
+                System.out.println("Client connected: " + session.remoteAddress);
+            }
+            channel.read(session.in, session, onRead);
+        } catch (BufferPoolExhaustedException e) {
+            System.err.println(e.getMessage() + ", rejecting client");
+            closeQuietly(channel);
+        } catch (IOException e) {
+            System.err.println("Failed to connect client: " + e.getMessage());
+            closeQuietly(channel);
+        }
+    }
+
+    // group thread: decode every complete frame, handle it right here & issue the next read.
+    // The read chain owns the inbound buffer & returns it to the pool when it ends (here or in failed())
+    private void readCompleted(Session session, int bytesRead) {
+        final ByteBuffer in = session.in;
+        if (bytesRead == -1) {
+            closeSession(session);
+            bufferPool.release(in);
+            return;
+        }
+        in.flip();
+        try {
+            ByteBuffer frame;
+            while (session.open.get() && (frame = frameDecoder.decode(in)) != null) {
+                if (frame.hasRemaining()) {
+                    processMessage(session, frame);
+                }
+            }
+            // keep partial frame for the next read (move it to the buffer start)
+            in.compact();
+            if (!in.hasRemaining()) {
+                throw new CorruptedFrameException("Frame doesn't fit into " + in.capacity() + " bytes");
+            }
+        } catch (CorruptedFrameException e) {
+            System.err.printf("Corrupted frame from client %s: %s%n", session.remoteAddress, e.getMessage());
+            closeSession(session);
+        }
+        if (session.open.get()) {
+            session.channel.read(in, session, onRead);
+        } else {
+            bufferPool.release(in);
+        }
+    }
+
+    private void processMessage(Session session, ByteBuffer frame) {
+        if (isExit(frame)) {
+            closeSession(session);
+            return;
+        }
+        // platform charset, like SimpleServer
+        final String message = Charset.defaultCharset().decode(frame.duplicate()).toString();
+        if (message.startsWith(SUBSCRIBE_COMMAND + " ")) {
+            final String topic = message.substring(SUBSCRIBE_COMMAND.length()).trim();
+            topics.subscribe(topic, session);
+            send(session, encode(format("[System]: subscribed to #%s", topic)));
+        } else if (message.startsWith(UNSUBSCRIBE_COMMAND + " ")) {
+            final String topic = message.substring(UNSUBSCRIBE_COMMAND.length()).trim();
+            topics.unsubscribe(topic, session);
+            send(session, encode(format("[System]: unsubscribed from #%s", topic)));
+        } else if (message.startsWith(PUBLISH_COMMAND + " ")) {
+            final String[] parts = message.substring(PUBLISH_COMMAND.length()).trim().split(" ", 2);
+            if (parts.length < 2 || parts[0].isEmpty()) {
+                send(session, encode("[System]: usage " + PUBLISH_COMMAND + " <topic> <message>"));
+            } else {
+                publish(parts[0], encode(format("[#%s][%s]: %s", parts[0], session.remoteAddress, parts[1])));
+            }
+        } else {
+            // plain message: sender's prefix + payload straight from the read buffer into one pooled frame
+            publish(DEFAULT_TOPIC, encode(session.addressPrefix, frame));
+        }
+    }
+
+    private static boolean isExit(ByteBuffer frame) {
+        if (frame.remaining() != EXIT_BYTES.length) {
+            return false;
+        }
+        for (int i = 0; i < EXIT_BYTES.length; i++) {
+            if (frame.get(frame.position() + i) != EXIT_BYTES[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void broadcast(String message) {
+        publish(DEFAULT_TOPIC, encode(message));
+    }
+
+    // one frame for all subscribers, released after the last of them has written it
+    private void publish(String topic, SharedBuffer frame) {
+        for (Session session : topics.subscribers(topic)) {
+            send(session, frame.retain());
+        }
+        frame.release();
+    }
+
+    private SharedBuffer encode(String message) {
+        return encode(NO_PREFIX, wrap(message.getBytes()));
+    }
+
+    private SharedBuffer encode(byte[] prefix, ByteBuffer payload) {
+        final int frameLength = frameEncoder.frameLength(prefix.length + payload.remaining());
+        if (frameLength > bufferPool.maxSize()) {
+            return SharedBuffer.wrap(frameEncoder.encode(prefix, payload));
+        }
+        try {
+            // never waits (group thread), an unpooled frame instead
+            final SharedBuffer frame = bufferPool.tryAcquireShared(frameLength);
+            if (frame == null) {
+                return SharedBuffer.wrap(frameEncoder.encode(prefix, payload));
+            }
+            frameEncoder.encode(prefix, payload, frame.content());
+            frame.content().flip();
+            return frame;
+        } catch (BufferPoolExhaustedException e) {
+            return SharedBuffer.wrap(frameEncoder.encode(prefix, payload));
+        }
+    }
+
+    // any thread: queue the frame, start a write unless one is pending already
+    private void send(Session session, SharedBuffer frame) {
+        if (!session.open.get()) {
+            frame.release();
+            return;
+        }
+        if (session.pendingBytes.addAndGet(frame.size()) > backpressure.highWatermark()) {
+            // no way to stop a proactor read from the sender's side cheaply, slow consumer goes away
+            frame.release();
+            backpressure.onDisconnected();
+            System.err.println("Slow consumer disconnected: " + session.remoteAddress);
+            closeSession(session);
+            return;
+        }
+        session.outbound.add(frame);
+        if (!session.open.get()) {
+            // closed meanwhile, closeSession() may have drained the queue before the frame was added
+            releaseQueued(session);
+            return;
+        }
+        if (session.writing.compareAndSet(false, true)) {
+            writeNext(session);
+        }
+    }
+
+    // caller owns the writing flag
+    private void writeNext(Session session) {
+        while (true) {
+            int count = 0;
+            SharedBuffer frame;
+            while (count < MAX_GATHER && (frame = session.outbound.poll()) != null) {
+                session.batch[count] = frame;
+                // own position per connection, the content is shared
+                session.views[count] = frame.content().duplicate();
+                count++;
+            }
+            if (count > 0) {
+                session.batchSize = count;
+                session.batchStart = 0;
+                session.channel.write(session.views, 0, count, 0, TimeUnit.MILLISECONDS, session, onWrite);
+                return;
+            }
+            session.writing.set(false);
+            // frame queued between the poll & the reset would be left behind otherwise
+            if (session.outbound.isEmpty() || !session.writing.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void writeCompleted(Session session, long bytesWritten) {
+        session.pendingBytes.addAndGet(-bytesWritten);
+        // release fully written frames, continue the batch if the socket took only a part of it
+        while (session.batchStart < session.batchSize && !session.views[session.batchStart].hasRemaining()) {
+            session.batch[session.batchStart].release();
+            session.batch[session.batchStart] = null;
+            session.views[session.batchStart] = null;
+            session.batchStart++;
+        }
+        if (!session.open.get()) {
+            releaseBatch(session);
+            return;
+        }
+        if (session.batchStart < session.batchSize) {
+            session.channel.write(session.views, session.batchStart, session.batchSize - session.batchStart,
+                    0, TimeUnit.MILLISECONDS, session, onWrite);
+        } else {
+            writeNext(session);
+        }
+    }
+
+    private void closeSession(Session session) {
+        if (!session.open.compareAndSet(true, false)) {
+            return;
+        }
+        sessions.remove(session);
+        topics.unsubscribeAll(session);
+        // pending read & write complete with AsynchronousCloseException, their handlers release their buffers
+        closeQuietly(session.channel);
+        releaseQueued(session);
+        if (announceConnections) {
+            broadcast("[System]: " + session.remoteAddress + " disconnected.");
+            System.out.printf("Client disconnected: [%s]%n", session.remoteAddress);
+        }
+    }
+
+    // frames nobody will write any more
+    private static void releaseQueued(Session session) {
+        SharedBuffer frame;
+        while ((frame = session.outbound.poll()) != null) {
+            frame.release();
+        }
+    }
+
+    // rest of the pending write of a closed connection
+    private static void releaseBatch(Session session) {
+        for (int i = session.batchStart; i < session.batchSize; i++) {
+            session.batch[i].release();
+            session.batch[i] = null;
+            session.views[i] = null;
+        }
+        session.batchStart = session.batchSize;
+    }
+
+    private static void closeQuietly(AsynchronousSocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close client channel: " + e.getMessage());
+        }
+    }
+
+    private static final class Session implements TopicRegistry.Subscriber {
+        private final AsynchronousSocketChannel channel;
+        private final SocketAddress remoteAddress;
+        private final byte[] addressPrefix;
+        private final Set<String> topics = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean open = new AtomicBoolean(true);
+        // inbound: pooled, owned by the pending read
+        private final ByteBuffer in;
+        // outbound: frames waiting for the pending write to complete
+        private final Queue<SharedBuffer> outbound = new ConcurrentLinkedQueue<>();
+        private final AtomicLong pendingBytes = new AtomicLong();
+        private final AtomicBoolean writing = new AtomicBoolean();
+        // frames of the pending gathering write & their per-connection views, touched by the writer only
+        private final SharedBuffer[] batch = new SharedBuffer[MAX_GATHER];
+        private final ByteBuffer[] views = new ByteBuffer[MAX_GATHER];
+        private int batchStart;
+        private int batchSize;
+
+        private Session(AsynchronousSocketChannel channel, SocketAddress remoteAddress, ByteBuffer in) {
+            this.channel = channel;
+            this.remoteAddress = remoteAddress;
+            this.addressPrefix = ("[" + remoteAddress + "]: ").getBytes();
+            this.in = in;
+        }
+
+        @Override
+        public Set<String> topics() {
+            return topics;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return !open.get();
+        }
+    }
+
+    public static void main(String[] args) {
+        new ProactorServer(ServerConfig.builder().port(8020).build()).startServer();
+    }
+}
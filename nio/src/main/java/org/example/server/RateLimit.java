@@ -0,0 +1,52 @@
+package org.example.server;
+
+import static java.lang.String.format;
+
+/**
+ * Messages per second & burst of a token bucket, changeable at runtime: buckets read the current settings
+ * on every acquire, so an update applies to existing connections at once. Rate 0 means unlimited.
+ */
+public final class RateLimit {
+    // replaced as a whole, so a bucket never sees the rate of one update with the burst of another
+    private volatile Settings settings;
+
+    public RateLimit(double permitsPerSecond, int burst) {
+        update(permitsPerSecond, burst);
+    }
+
+    /**
+     * @param burst tokens available at once after idling, 0 - one second worth of the rate
+     */
+    public void update(double permitsPerSecond, int burst) {
+        if (permitsPerSecond < 0 || burst < 0) {
+            throw new IllegalArgumentException(format("Invalid rate limit: %s/s, burst %d", permitsPerSecond, burst));
+        }
+        if (permitsPerSecond == 0) {
+            settings = new Settings(0, 0, 0);
+            return;
+        }
+        final long intervalNanos = Math.max(1, (long) (1_000_000_000L / permitsPerSecond));
+        final int tokens = burst > 0 ? burst : (int) Math.max(1, Math.ceil(permitsPerSecond));
+        settings = new Settings(permitsPerSecond, intervalNanos, tokens * intervalNanos);
+    }
+
+    public double permitsPerSecond() {
+        return settings.permitsPerSecond;
+    }
+
+    public long burst() {
+        final Settings current = settings;
+        return current.intervalNanos == 0 ? 0 : current.burstNanos / current.intervalNanos;
+    }
+
+    Settings settings() {
+        return settings;
+    }
+
+    // interval between tokens & how far ahead of time the bucket may run (burst tokens)
+    record Settings(double permitsPerSecond, long intervalNanos, long burstNanos) {
+        boolean unlimited() {
+            return intervalNanos == 0;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package org.example.server;
+
+import org.example.server.buffer.SharedBuffer;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * A client connection as a Reactive Streams pair (see {@link ServerConfig#getReactiveHandler()}), frames in &
+ * out are payloads without framing (the server's codec does that).
+ * <p>
+ * {@link #inbound()}: one subscriber, every frame once. The channel is registered for {@code OP_READ} only
+ * while the subscriber has demand: decoded frames beyond it wait in the connection's cumulation, the rest in
+ * the socket receive buffer, so the TCP window closes on a subscriber that doesn't request. Signals come on
+ * the worker thread of the connection (publish on another scheduler for anything slow), every frame is
+ * a heap buffer of its own.
+ * <p>
+ * {@link #outbound()}: subscribe it to the publisher of responses. Frames are requested in batches, the next
+ * batch once the queued frames are below the low watermark, so the upstream goes as fast as the client reads.
+ * Completing the outbound closes the connection after everything is written.
+ * <p>
+ * Closing the connection completes the inbound (or errors it if closed by an error) & cancels the upstream of
+ * the outbound, cancelling the inbound or erroring the outbound closes the connection. A subscriber that throws
+ * gets the exception as onError & its connection is closed, the worker goes on with the others.
+ */
+public final class ReactiveConnection {
+    // frames requested from the outbound upstream at once
+    private static final int OUTBOUND_BATCH = 32;
+    // stands for a subscription that is gone (and for the rejected second subscriber)
+    private static final Subscription CANCELLED = new Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    private final Connection connection;
+    private final Function<ByteBuffer, SharedBuffer> encoder;
+    private final long lowWatermark;
+    private final Runnable onDemand;
+    private final Inbound inbound = new Inbound();
+    private final Outbound outbound = new Outbound();
+
+    /**
+     * @param onDemand inbound demand went up from 0 (any thread): resume reading
+     */
+    ReactiveConnection(
+            Connection connection,
+            Function<ByteBuffer, SharedBuffer> encoder,
+            long lowWatermark,
+            Runnable onDemand
+    ) {
+        this.connection = connection;
+        this.encoder = encoder;
+        this.lowWatermark = lowWatermark;
+        this.onDemand = onDemand;
+    }
+
+    public Publisher<ByteBuffer> inbound() {
+        return inbound;
+    }
+
+    public Subscriber<ByteBuffer> outbound() {
+        return outbound;
+    }
+
+    public SocketAddress remoteAddress() {
+        return connection.remoteAddress();
+    }
+
+    // worker thread
+    boolean hasDemand() {
+        return inbound.hasDemand();
+    }
+
+    // worker thread, frame is valid during the call only (it is copied)
+    void emit(ByteBuffer frame) {
+        inbound.emit(ByteBuffer.allocate(frame.remaining()).put(frame).flip());
+    }
+
+    // worker thread, connection is closed already
+    void onClosed(CloseReason reason) {
+        try {
+            inbound.terminate(reason);
+        } catch (RuntimeException e) {
+            System.err.printf("Inbound subscriber of %s failed on close: %s%n", remoteAddress(), e);
+        }
+        try {
+            outbound.cancelUpstream();
+        } catch (RuntimeException e) {
+            System.err.printf("Outbound upstream of %s failed on cancel: %s%n", remoteAddress(), e);
+        }
+    }
+
+    private void close() {
+        connection.worker().execute(() -> connection.worker().close(connection, CloseReason.APPLICATION));
+    }
+
+    private final class Inbound implements Publisher<ByteBuffer>, Subscription {
+        private final AtomicBoolean subscribed = new AtomicBoolean();
+        private final AtomicLong demand = new AtomicLong();
+        private volatile boolean cancelled;
+        // worker thread only
+        private Subscriber<? super ByteBuffer> subscriber;
+        private boolean terminated;
+        // connection closed before the subscriber came
+        private CloseReason closedBy;
+
+        @Override
+        public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+            Objects.requireNonNull(subscriber, "subscriber");
+            if (!subscribed.compareAndSet(false, true)) {
+                subscriber.onSubscribe(CANCELLED);
+                subscriber.onError(new IllegalStateException("Inbound of " + remoteAddress() + " is subscribed already"));
+                return;
+            }
+            // every signal comes from the worker, onSubscribe too
+            connection.worker().execute(() -> {
+                this.subscriber = subscriber;
+                try {
+                    subscriber.onSubscribe(this);
+                } catch (RuntimeException e) {
+                    fail(e);
+                    return;
+                }
+                if (closedBy != null) {
+                    terminate(closedBy);
+                }
+            });
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                connection.worker().execute(() -> {
+                    if (!terminated) {
+                        terminated = true;
+                        subscriber.onError(new IllegalArgumentException("Non-positive request: " + n));
+                    }
+                    cancel();
+                });
+                return;
+            }
+            // unbounded once it overflows
+            final long before = demand.getAndAccumulate(n, (current, added) ->
+                    current + added < 0 ? Long.MAX_VALUE : current + added);
+            if (before == 0 && !cancelled) {
+                onDemand.run();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                close();
+            }
+        }
+
+        boolean hasDemand() {
+            return subscriber != null && !terminated && !cancelled && demand.get() > 0;
+        }
+
+        void emit(ByteBuffer frame) {
+            if (demand.get() != Long.MAX_VALUE) {
+                demand.decrementAndGet();
+            }
+            try {
+                subscriber.onNext(frame);
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        // subscriber threw (§2.13): the subscription is over, the error goes to onError & the connection is closed
+        private void fail(RuntimeException error) {
+            System.err.printf("Inbound subscriber of %s failed: %s%n", remoteAddress(), error);
+            if (!terminated) {
+                terminated = true;
+                try {
+                    subscriber.onError(error);
+                } catch (RuntimeException e) {
+                    System.err.printf("Inbound subscriber of %s failed in onError: %s%n", remoteAddress(), e);
+                }
+            }
+            cancelled = true;
+            close();
+        }
+
+        void terminate(CloseReason reason) {
+            if (subscriber == null) {
+                closedBy = reason;
+                return;
+            }
+            if (terminated || cancelled) {
+                return;
+            }
+            terminated = true;
+            switch (reason) {
+                case CLIENT_EXIT, PEER_CLOSED, SHUTDOWN, APPLICATION -> subscriber.onComplete();
+                default -> subscriber.onError(new IOException("Connection " + remoteAddress() + " closed: " + reason));
+            }
+        }
+    }
+
+    private final class Outbound implements Subscriber<ByteBuffer> {
+        private final AtomicReference<Subscription> upstream = new AtomicReference<>();
+        // requested & not received yet, the next batch is requested when it gets to 0
+        private final AtomicLong outstanding = new AtomicLong();
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            Objects.requireNonNull(subscription, "subscription");
+            if (!upstream.compareAndSet(null, subscription)) {
+                subscription.cancel();
+                return;
+            }
+            connection.worker().execute(this::requestBatch);
+        }
+
+        @Override
+        public void onNext(ByteBuffer payload) {
+            Objects.requireNonNull(payload, "payload");
+            final SharedBuffer frame = encoder.apply(payload);
+            connection.send(frame);
+            frame.release();
+            if (outstanding.decrementAndGet() == 0) {
+                connection.worker().execute(this::requestBatch);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            System.err.printf("Outbound of %s failed: %s%n", remoteAddress(), error);
+            close();
+        }
+
+        @Override
+        public void onComplete() {
+            // after the queued frames are written
+            connection.worker().execute(() -> {
+                if (connection.pendingBytes() == 0) {
+                    close();
+                } else {
+                    connection.onDrained(ReactiveConnection.this::close);
+                }
+            });
+        }
+
+        // worker thread: a batch while the client keeps up, otherwise once it has read the queued frames
+        private void requestBatch() {
+            if (connection.isClosed()) {
+                cancelUpstream();
+                return;
+            }
+            if (connection.pendingBytes() >= lowWatermark) {
+                connection.onDrained(this::requestBatch);
+                return;
+            }
+            outstanding.set(OUTBOUND_BATCH);
+            try {
+                upstream.get().request(OUTBOUND_BATCH);
+            } catch (RuntimeException e) {
+                onError(e);
+            }
+        }
+
+        void cancelUpstream() {
+            final Subscription subscription = upstream.getAndSet(CANCELLED);
+            if (subscription != null && subscription != CANCELLED) {
+                subscription.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.example.server;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.example.server.buffer.ExhaustionPolicy;
+import org.example.server.codec.DelimiterFrameDecoder;
+import org.example.server.codec.DelimiterFrameEncoder;
+import org.example.server.codec.FrameDecoder;
+import org.example.server.codec.FrameEncoder;
+
+import java.util.function.Consumer;
+
+import static java.lang.Runtime.getRuntime;
+
+@Getter
+@Builder(toBuilder = true)
+public class ServerConfig {
+    @Builder.Default
+    private int port = 8020;
+    @Builder.Default
+    private int bufferSize = 8 * 1024;
+    // open connections at most: acceptors stop selecting OP_ACCEPT at the limit & the kernel backlog holds the rest
+    @Builder.Default
+    private int maxConnections = 1000;
+    // accepts per listener per loop iteration, the rest of a burst waits for the next iteration
+    @Builder.Default
+    private int maxAcceptsPerIteration = 64;
+    // one worker selector per core, 0 means single-reactor mode (acceptor serves clients itself)
+    @Builder.Default
+    private int workerCount = getRuntime().availableProcessors();
+    // listening channels on the same port (SO_REUSEPORT), each with own acceptor loop: kernel balances accepts
+    @Builder.Default
+    private int acceptorCount = 1;
+
+    // pending connections queue of each listener (JDK default is 50, too small for reconnect storms)
+    @Builder.Default
+    private int backlog = 1024;
+    // socket options of accepted channels, 0 keeps OS default of the buffer size
+    @Builder.Default
+    private boolean tcpNoDelay = true;
+    @Builder.Default
+    private int receiveBufferSize = 0;
+    @Builder.Default
+    private int sendBufferSize = 0;
+    // Unix domain socket listened on together with the TCP port (null - TCP only): same loops & protocol,
+    // no TCP/IP stack for local clients. A stale socket file of a previous run is replaced
+    @Builder.Default
+    private String unixSocketPath = null;
+
+    // smallest size class of the buffer pool, classes grow by power of two up to bufferSize
+    @Builder.Default
+    private int minBufferSize = 512;
+    // how many buffers are sliced from one direct allocation
+    @Builder.Default
+    private int buffersPerSlab = 64;
+    @Builder.Default
+    private ExhaustionPolicy exhaustionPolicy = ExhaustionPolicy.GROW;
+    // used by WAIT policy only
+    @Builder.Default
+    private long bufferWaitMillis = 100;
+
+    // queued outbound bytes per connection: reading from client stops above high & resumes below low watermark
+    @Builder.Default
+    private long highWatermark = 256 * 1024;
+    @Builder.Default
+    private long lowWatermark = 128 * 1024;
+    @Builder.Default
+    private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DISCONNECT;
+
+    // write coalescing: frames queued during a loop iteration are written together (gathering write) at its end,
+    // delay > 0 lets them pile up over several iterations unless a client has flushBytes pending
+    @Builder.Default
+    private long flushDelayMillis = 0;
+    @Builder.Default
+    private int flushBytes = 64 * 1024;
+
+    // decoded messages per connection waiting for processing (reading stops while full) & messages processed
+    // in one go before the processing thread moves on to another connection
+    @Builder.Default
+    private int mailboxCapacity = 1024;
+    @Builder.Default
+    private int mailboxThroughput = 64;
+
+    // timeouts per connection, 0 disables: no inbound data / started frame not completed / ping interval
+    @Builder.Default
+    private long idleTimeoutMillis = 5 * 60 * 1000;
+    @Builder.Default
+    private long readTimeoutMillis = 30 * 1000;
+    @Builder.Default
+    private long heartbeatIntervalMillis = 0;
+    // timing wheel of each event loop: resolution & number of buckets (power of two)
+    @Builder.Default
+    private long timerTickMillis = 100;
+    @Builder.Default
+    private int timerWheelSize = 512;
+
+    // journal of broadcast messages for "/replay" (null - disabled): mapped segment files in the directory,
+    // deleted above retention bytes or when older than retention time (0 - no limit)
+    @Builder.Default
+    private String journalDirectory = null;
+    @Builder.Default
+    private int journalSegmentBytes = 64 * 1024 * 1024;
+    @Builder.Default
+    private long journalRetentionBytes = 1024L * 1024 * 1024;
+    @Builder.Default
+    private long journalRetentionMillis = 24 * 60 * 60 * 1000L;
+    // sparse index: one entry per that many bytes of the segment
+    @Builder.Default
+    private int journalIndexIntervalBytes = 4 * 1024;
+
+    // files clients may fetch with "/file <name> [offset]" (null - disabled), sent in chunks of that size,
+    // at most that many at once (server-wide)
+    @Builder.Default
+    private String fileDirectory = null;
+    @Builder.Default
+    private int fileChunkBytes = 256 * 1024;
+    @Builder.Default
+    private int maxFileTransfers = 4;
+
+    // cluster mode (cluster port 0 - single node): nodes form a full mesh over the cluster ports & relay
+    // messages of local clients to each other, "host:port,host:port" are cluster ports of the other nodes.
+    // Node id must be unique in the cluster (0 - generated from host, cluster port & a random part). Relayed messages are batched per peer
+    // up to batch bytes or delay, at most queue capacity of them wait for a peer (the rest is dropped).
+    // Batch bytes must be the same on every node, a message bigger than a batch isn't relayed
+    @Builder.Default
+    private int clusterNodeId = 0;
+    @Builder.Default
+    private int clusterPort = 0;
+    @Builder.Default
+    private String clusterPeers = null;
+    @Builder.Default
+    private int clusterBatchBytes = 64 * 1024;
+    @Builder.Default
+    private long clusterBatchDelayMillis = 1;
+    @Builder.Default
+    private int clusterQueueCapacity = 64 * 1024;
+
+    // heavy hitters: inbound bytes & messages per client host in a Count-Min sketch (width x depth counters)
+    // & its top K per event loop, halved every decay interval. Throttle bytes > 0 feeds them into throttling:
+    // a host above that many recent bytes on a loop gets reading paused for throttle millis
+    @Builder.Default
+    private boolean trafficSketchEnabled = true;
+    @Builder.Default
+    private int trafficSketchWidth = 2048;
+    @Builder.Default
+    private int trafficSketchDepth = 4;
+    @Builder.Default
+    private int trafficTopK = 10;
+    @Builder.Default
+    private long trafficDecayMillis = 10_000;
+    @Builder.Default
+    private long trafficThrottleBytes = 0;
+    @Builder.Default
+    private long trafficThrottleMillis = 1_000;
+
+    // token buckets on decoded messages: per connection & one shared by all connections (rate 0 - unlimited,
+    // burst 0 - a second worth of the rate). A connection out of tokens stops reading till they refill, nothing is
+    // dropped. The pause is a timer tick at least, so burst below rate x tick caps the rate. Changeable at runtime
+    // through SimpleServer.getConnectionRateLimit() / getGlobalRateLimit()
+    @Builder.Default
+    private double connectionMessagesPerSecond = 0;
+    @Builder.Default
+    private int connectionBurst = 0;
+    @Builder.Default
+    private double globalMessagesPerSecond = 0;
+    @Builder.Default
+    private int globalBurst = 0;
+
+    // plaintext metrics on second port (0 - disabled) & the same metrics as JMX MBean
+    @Builder.Default
+    private int adminPort = 0;
+    @Builder.Default
+    private boolean jmxEnabled = true;
+
+    // count bytes allocated while processing each message (see AllocationTest)
+    @Builder.Default
+    private boolean profileAllocations = false;
+
+    // "[System]: ... connected!" notices & console lines per connection (turn off for load tests)
+    @Builder.Default
+    private boolean announceConnections = true;
+
+    // line-based by default (works with telnet/netcat), use LengthField* codecs for binary clients
+    @Builder.Default
+    private FrameDecoder frameDecoder = DelimiterFrameDecoder.lines(8 * 1024);
+    @Builder.Default
+    private FrameEncoder frameEncoder = DelimiterFrameEncoder.lines();
+
+    // every connection is handed to the handler as Reactive Streams (on its worker thread, must not block)
+    // instead of being served by the chat protocol, null - chat server
+    @Builder.Default
+    private Consumer<ReactiveConnection> reactiveHandler = null;
+}
@@ -0,0 +1,100 @@
+package org.example.server;
+
+import org.example.server.metrics.Counter;
+import org.example.server.metrics.Histogram;
+import org.example.server.metrics.MetricsRegistry;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Metrics recorded by {@link SimpleServer} & its event loops, held as direct references (no lookup by name
+ * on the hot path). Gauges reading server state (connections, queues, buffers) are registered by the server.
+ */
+public final class ServerMetrics {
+    private final MetricsRegistry registry;
+
+    final Counter accepted;
+    // a pending connection left in the backlog because maxConnections was reached
+    final Counter deferred;
+    final Counter closed;
+    final Map<CloseReason, Counter> closedBy = new EnumMap<>(CloseReason.class);
+    final Counter bytesIn;
+    final Counter bytesOut;
+    // busy part of the loop iteration (after select returns), microseconds
+    final Histogram loopIteration;
+    final Histogram selectedKeys;
+    // encode + enqueue to every subscriber, microseconds
+    final Histogram fanout;
+    final Counter processed;
+    // write coalescing: write syscalls vs frames they carried & selector wakeups by producers
+    final Counter writeSyscalls;
+    final Counter framesWritten;
+    final Counter wakeups;
+    // reading stopped because connection's mailbox was full
+    final Counter mailboxSuspended;
+    // reading paused because the client's host is a heavy hitter above the throttle limit
+    final Counter trafficThrottled;
+    // reading paused because the connection's / the global token bucket ran out of messages
+    final Counter rateLimitedConnection;
+    final Counter rateLimitedGlobal;
+    // bytes allocated by processing threads per message, only with ServerConfig.profileAllocations
+    final Counter allocatedBytes;
+
+    ServerMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+        this.accepted = registry.counter("connections.accepted");
+        this.deferred = registry.counter("connections.deferred");
+        this.closed = registry.counter("connections.closed");
+        for (CloseReason reason : CloseReason.values()) {
+            closedBy.put(reason, registry.counter("connections.closed." + reason.name().toLowerCase()));
+        }
+        this.bytesIn = registry.counter("bytes.in");
+        this.bytesOut = registry.counter("bytes.out");
+        this.loopIteration = registry.histogram("loop.iteration.us");
+        this.selectedKeys = registry.histogram("loop.selectedKeys");
+        this.fanout = registry.histogram("broadcast.fanout.us");
+        this.processed = registry.counter("messages.processed");
+        this.writeSyscalls = registry.counter("writes.syscalls");
+        this.framesWritten = registry.counter("writes.frames");
+        this.wakeups = registry.counter("loop.wakeups");
+        // gauges are integral, so per thousand messages (during the last sampling interval)
+        registry.gauge("writes.syscallsPer1000Messages", () -> framesWritten.rate() == 0
+                ? 0
+                : Math.round(writeSyscalls.rate() * 1000 / framesWritten.rate()));
+        this.mailboxSuspended = registry.counter("mailbox.readsSuspended");
+        this.trafficThrottled = registry.counter("traffic.throttled");
+        this.rateLimitedConnection = registry.counter("ratelimit.paused.connection");
+        this.rateLimitedGlobal = registry.counter("ratelimit.paused.global");
+        this.allocatedBytes = registry.counter("messages.allocatedBytes");
+    }
+
+    public MetricsRegistry registry() {
+        return registry;
+    }
+
+    void onClosed(CloseReason reason) {
+        closed.increment();
+        closedBy.get(reason).increment();
+    }
+
+    public long processedMessages() {
+        return processed.count();
+    }
+
+    public long writeSyscalls() {
+        return writeSyscalls.count();
+    }
+
+    public long framesWritten() {
+        return framesWritten.count();
+    }
+
+    public long allocatedBytes() {
+        return allocatedBytes.count();
+    }
+
+    public long closeCount(CloseReason reason) {
+        return closedBy.get(reason).count();
+    }
+}
@@ -1,11 +1,21 @@
 package org.example.server;
 
+import org.example.server.codec.DelimiterFrameDecoder;
+import org.example.server.codec.DelimiterFrameEncoder;
+import org.example.server.codec.FrameDecoder;
+import org.example.server.codec.FrameEncoder;
+
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
 import java.util.Iterator;
 import java.util.Scanner;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -13,20 +23,36 @@ import java.util.concurrent.BlockingQueue;
 
 import static java.nio.channels.SelectionKey.OP_CONNECT;
 import static java.nio.channels.SelectionKey.OP_WRITE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.example.server.FileTransfer.CHUNK_COMMAND;
 import static org.example.server.SimpleServer.EXIT_CODE;
+import static org.example.server.SimpleServer.PING_COMMAND;
+import static org.example.server.SimpleServer.PONG_COMMAND;
 
 public class SimpleClient {
     private static final String DEFAULT_HOST = "localhost";
     private static final int DEFAULT_PORT = 8080;
-    private ByteBuffer buffer = ByteBuffer.allocate(1024);
-
-    private final String host;
-    private final int port;
+    private static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+    // must match server framing
+    private final FrameDecoder frameDecoder = DelimiterFrameDecoder.lines(DEFAULT_BUFFER_SIZE);
+    private final FrameEncoder frameEncoder = DelimiterFrameEncoder.lines();
+    private ByteBuffer buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+    // raw file bytes after a /chunk header: not lines, they go to the file as they come
+    private FileChannel download;
+    private long downloadPosition;
+    private long rawRemaining;
+
+    // InetSocketAddress for TCP, UnixDomainSocketAddress for a server listening on a socket file
+    private final SocketAddress address;
+
+    public SimpleClient(SocketAddress address) {
+        this.address = address;
+        initClient();
+    }
 
     public SimpleClient(String host, int port) {
-        this.host = host;
-        this.port = port;
-        initClient();
+        this(new InetSocketAddress(host, port));
     }
 
     public SimpleClient(int port) {
@@ -46,12 +72,15 @@ public class SimpleClient {
     }
 
     public void run() throws IOException {
-        SocketChannel channel = SocketChannel.open();
+        // the rest doesn't depend on the transport
+        SocketChannel channel = address instanceof UnixDomainSocketAddress
+                ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                : SocketChannel.open();
         channel.configureBlocking(false);
 
         Selector selector = Selector.open();
         channel.register(selector, OP_CONNECT);
-        channel.connect(new InetSocketAddress(host, port));
+        channel.connect(address);
         final BlockingQueue<String> queue = new ArrayBlockingQueue<>(2);
 
         new Thread(() -> {
@@ -81,16 +110,48 @@ public class SimpleClient {
                         channel.finishConnect();
                         key.interestOps(OP_WRITE);
                     } else if (key.isReadable()) {
-//                        buffer.clear();
-                        channel.read(buffer);
+                        if (channel.read(buffer) == -1) {
+                            channel.close();
+                            break;
+                        }
                         buffer.flip();
-                        String message = new String(buffer.array(), 0, buffer.limit());
-                        System.out.println(message);
-                        buffer.clear();
+                        // print every complete message, keep partial one till the next read
+                        ByteBuffer frame;
+                        while (true) {
+                            if (rawRemaining > 0) {
+                                if (!buffer.hasRemaining()) {
+                                    break;
+                                }
+                                receiveChunk();
+                                continue;
+                            }
+                            if ((frame = frameDecoder.decode(buffer)) == null) {
+                                break;
+                            }
+                            byte[] bytes = new byte[frame.remaining()];
+                            frame.get(bytes);
+                            final String message = new String(bytes);
+                            if (message.startsWith(PING_COMMAND + " ")) {
+                                // heartbeat: echo server's timestamp back, nothing to show to the user
+                                final String pong = PONG_COMMAND + message.substring(PING_COMMAND.length());
+                                final ByteBuffer reply = frameEncoder.encode(ByteBuffer.wrap(pong.getBytes()));
+                                while (reply.hasRemaining()) {
+                                    channel.write(reply);
+                                }
+                            } else if (message.startsWith(CHUNK_COMMAND + " ")) {
+                                startChunk(message);
+                            } else {
+                                System.out.println(message);
+                            }
+                        }
+                        buffer.compact();
                     } else if (key.isWritable()) {
                         final String line = queue.poll();
                         if (line != null) {
-                            channel.write(ByteBuffer.wrap(line.getBytes()));
+                            final ByteBuffer frame = frameEncoder.encode(ByteBuffer.wrap(line.getBytes()));
+                            while (frame.hasRemaining()) {
+                                channel.write(frame);
+                            }
                             if (line.equals(EXIT_CODE)) {
                                 System.exit(0);
                             }
@@ -102,9 +163,56 @@ public class SimpleClient {
         }
     }
 
+    // "/chunk <offset> <length> <size> <name>": exactly length raw bytes follow, saved to ./<name> at offset
+    private void startChunk(String header) throws IOException {
+        final String[] parts = header.split(" ", 5);
+        final long offset = Long.parseLong(parts[1]);
+        final long length = Long.parseLong(parts[2]);
+        final long size = Long.parseLong(parts[3]);
+        // only the file name, the server must not pick where it is written
+        final Path target = Path.of(parts[4]).getFileName();
+        System.out.printf("%s: %d..%d of %d%n", target, offset, offset + length, size);
+        if (download != null) {
+            download.close();
+        }
+        download = FileChannel.open(target, CREATE, WRITE);
+        downloadPosition = offset;
+        rawRemaining = length;
+        if (rawRemaining == 0) {
+            finishChunk();
+        }
+    }
+
+    private void receiveChunk() throws IOException {
+        final int length = (int) Math.min(rawRemaining, buffer.remaining());
+        final ByteBuffer bytes = buffer.slice(buffer.position(), length);
+        while (bytes.hasRemaining()) {
+            downloadPosition += download.write(bytes, downloadPosition);
+        }
+        buffer.position(buffer.position() + length);
+        rawRemaining -= length;
+        if (rawRemaining == 0) {
+            finishChunk();
+        }
+    }
+
+    private void finishChunk() throws IOException {
+        download.close();
+        download = null;
+    }
+
+    // no arguments: localhost:8020, a number: that port, anything else: path of the server's unix socket
     public static void main(String[] args) {
         try {
-            new SimpleClient(8020).run();
+            final SimpleClient client;
+            if (args.length == 0) {
+                client = new SimpleClient(8020);
+            } else if (args[0].chars().allMatch(Character::isDigit)) {
+                client = new SimpleClient(Integer.parseInt(args[0]));
+            } else {
+                client = new SimpleClient(UnixDomainSocketAddress.of(args[0]));
+            }
+            client.run();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -1,120 +1,351 @@
 package org.example.server;
 
+import org.example.server.buffer.BufferPool;
+import org.example.server.buffer.BufferPoolExhaustedException;
+import org.example.server.buffer.SharedBuffer;
+import org.example.server.cluster.ClusterNode;
+import org.example.server.codec.CorruptedFrameException;
+import org.example.server.codec.FrameDecoder;
+import org.example.server.codec.FrameEncoder;
+import org.example.server.journal.Journal;
+import org.example.server.metrics.AdminEndpoint;
+import org.example.server.metrics.Counter;
+import org.example.server.metrics.HeavyHitters;
+import org.example.server.metrics.MetricsRegistry;
+import org.example.server.timer.HashedWheelTimer;
+
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.util.Iterator;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static java.lang.Runtime.getRuntime;
 import static java.lang.String.format;
-import static java.nio.ByteBuffer.allocate;
 import static java.nio.ByteBuffer.wrap;
-import static java.nio.channels.SelectionKey.OP_READ;
+import static java.nio.charset.StandardCharsets.US_ASCII;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 
-public class SimpleServer {
+public class SimpleServer implements ChatServer {
     public static final String EXIT_CODE = "q";
-    private static final int DEFAULT_PORT = 8020;
-    private static final int DEFAULT_MAX_CONNECTIONS = 1000;
-    private static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+    // control frames: "/sub room", "/unsub room", "/pub room message"
+    public static final String SUBSCRIBE_COMMAND = "/sub";
+    public static final String UNSUBSCRIBE_COMMAND = "/unsub";
+    public static final String PUBLISH_COMMAND = "/pub";
+    // every client joins it on connect, plain messages are published there
+    public static final String DEFAULT_TOPIC = "general";
+    // heartbeat: server sends "/ping <nanos>", client answers "/pong <nanos>" with the same value
+    public static final String PING_COMMAND = "/ping";
+    public static final String PONG_COMMAND = "/pong";
+    // "/replay <offset>", "/replay -<last count>", "/replay @<epoch millis>", plain "/replay" tells journal offsets
+    public static final String REPLAY_COMMAND = "/replay";
+    // "/file <name> [offset]": file from the server's file directory as "/chunk ..." headers & raw bytes
+    public static final String FILE_COMMAND = "/file";
+    private static final byte[] EXIT_BYTES = EXIT_CODE.getBytes(US_ASCII);
+    private static final byte[] PONG_BYTES = (PONG_COMMAND + " ").getBytes(US_ASCII);
+    private static final byte[] NO_PREFIX = new byte[0];
+    // per-thread allocation counter (HotSpot), used when allocation profiling is on
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
 
 
-    private final ExecutorService threadPool = newFixedThreadPool(getRuntime().availableProcessors() * 2);;
-    // in huge apps better dynamically resize the buffer pool & check shutdown
-    private final Map<SocketChannel, ByteBuffer> clientBufferMap = new ConcurrentHashMap<>();
+    private final ExecutorService threadPool = newFixedThreadPool(getRuntime().availableProcessors() * 2, processorThreads());
+    private final ServerConfig config;
     private final int bufferSize;
     private final int port;
+    private final int workerCount;
+    private final int acceptorCount;
+    // admission control: connections accepted & not closed yet (including those being handed over to a worker),
+    // accepting is paused at the limit till one of them closes
+    private final int maxConnections;
+    private final int maxAcceptsPerIteration;
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicBoolean acceptPaused = new AtomicBoolean();
+    // direct buffers leased for the time of reading & processing only, idle connections hold nothing
+    private final BufferPool bufferPool;
+    private final FrameDecoder frameDecoder;
+    private final FrameEncoder frameEncoder;
+    // watermarks & slow-consumer counters
+    private final Backpressure backpressure;
+    private final TopicRegistry<Connection> topics = new TopicRegistry<>(Connection[]::new);
+    private final boolean announceConnections;
+    // connections served as Reactive Streams by the application (null - chat protocol)
+    private final Consumer<ReactiveConnection> reactiveHandler;
+    // 0 disables the corresponding timer
+    private final long idleTimeoutMillis;
+    private final long readTimeoutMillis;
+    private final long heartbeatIntervalMillis;
+    // measure bytes allocated by every processed message (allocation check, costs a native call per message)
+    private final boolean profileAllocations;
+    private final int mailboxCapacity;
+    private final int mailboxThroughput;
+    // heavy hitters above that many recent bytes get reading paused (0 - never)
+    private final long trafficThrottleBytes;
+    private final long trafficThrottleMillis;
+    // messages per second of every connection (a bucket each) & of all of them (one bucket shared by the workers)
+    private final RateLimit connectionRateLimit;
+    private final RateLimit globalRateLimit;
+    private final TokenBucket globalRateLimiter;
+    // history of the default topic (null - disabled)
+    private final Journal journal;
+    // served files (null - disabled) & permits of concurrent transfers
+    private final Path fileDirectory;
+    private final Semaphore fileTransfers;
+    // relay to the other nodes of the cluster (null - single node)
+    private final ClusterNode cluster;
+    // counters & histograms exported over JMX & admin port
+    private final ServerMetrics metrics = new ServerMetrics(new MetricsRegistry());
+    private AdminEndpoint adminEndpoint;
 
-    private ServerSocketChannel serverSocketChannel;
-    private Selector selector;
+    // one listening channel per acceptor, all bound to the same port with SO_REUSEPORT if there are several
+    private ServerSocketChannel[] serverSocketChannels;
+    // Unix domain socket listener (null - TCP only), served by the first acceptor next to its TCP listener
+    private final Path unixSocketPath;
+    private ServerSocketChannel unixSocketChannel;
+    // Unix domain socket peers are unnamed, they are told apart by the number of the accepted connection
+    private final AtomicInteger unixClients = new AtomicInteger();
+    // acceptor (boss) loops, the first one runs on the thread calling startServer()
+    private EventLoop[] acceptors;
+    // each worker has its own selector, thread & connection registry
+    private EventLoop[] workers;
+    // round-robin over workers, shared by acceptors
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private volatile boolean running = true;
 
 //    private final ReentrantLock shutdownLock = new ReentrantLock();;
-//    private ByteBuffer[] bufferPool;
-//    private boolean[] availableBuffers;
+
+    public SimpleServer(ServerConfig config) {
+        this.config = config;
+        this.port = config.getPort();
+        this.bufferSize = config.getBufferSize();
+        this.workerCount = config.getWorkerCount();
+        this.maxConnections = config.getMaxConnections();
+        this.maxAcceptsPerIteration = config.getMaxAcceptsPerIteration();
+        this.acceptorCount = acceptorCount(config);
+        this.bufferPool = new BufferPool(
+                config.getMinBufferSize(),
+                bufferSize,
+                config.getBuffersPerSlab(),
+                config.getMaxConnections(),
+                config.getExhaustionPolicy(),
+                config.getBufferWaitMillis(),
+                // one view slot per loop writing to clients
+                workerCount > 0 ? workerCount : acceptorCount);
+        this.frameDecoder = config.getFrameDecoder();
+        this.frameEncoder = config.getFrameEncoder();
+        this.announceConnections = config.isAnnounceConnections();
+        this.reactiveHandler = config.getReactiveHandler();
+        this.idleTimeoutMillis = config.getIdleTimeoutMillis();
+        this.readTimeoutMillis = config.getReadTimeoutMillis();
+        this.heartbeatIntervalMillis = config.getHeartbeatIntervalMillis();
+        this.profileAllocations = config.isProfileAllocations();
+        this.mailboxCapacity = config.getMailboxCapacity();
+        this.mailboxThroughput = config.getMailboxThroughput();
+        this.trafficThrottleBytes = config.getTrafficThrottleBytes();
+        this.trafficThrottleMillis = config.getTrafficThrottleMillis();
+        this.connectionRateLimit = new RateLimit(config.getConnectionMessagesPerSecond(), config.getConnectionBurst());
+        this.globalRateLimit = new RateLimit(config.getGlobalMessagesPerSecond(), config.getGlobalBurst());
+        this.globalRateLimiter = new TokenBucket(globalRateLimit);
+        this.journal = config.getJournalDirectory() == null ? null : new Journal(
+                Path.of(config.getJournalDirectory()),
+                config.getJournalSegmentBytes(),
+                config.getJournalRetentionBytes(),
+                config.getJournalRetentionMillis(),
+                config.getJournalIndexIntervalBytes());
+        this.fileDirectory = config.getFileDirectory() == null
+                ? null
+                : Path.of(config.getFileDirectory()).toAbsolutePath().normalize();
+        this.fileTransfers = new Semaphore(config.getMaxFileTransfers());
+        this.unixSocketPath = config.getUnixSocketPath() == null ? null : Path.of(config.getUnixSocketPath());
+        this.backpressure = new Backpressure(
+                config.getHighWatermark(),
+                config.getLowWatermark(),
+                config.getSlowConsumerPolicy());
+        this.cluster = config.getClusterPort() == 0 ? null : new ClusterNode(
+                config.getClusterNodeId() != 0
+                        ? config.getClusterNodeId()
+                        : ClusterNode.generateNodeId(config.getClusterPort()),
+                config.getClusterPort(),
+                ClusterNode.parsePeers(config.getClusterPeers()),
+                config.getClusterBatchBytes(),
+                config.getClusterBatchDelayMillis(),
+                config.getClusterQueueCapacity(),
+                metrics.registry(),
+                this::deliverRelayed);
+        initServer(port);
+        initMetrics();
+    }
+
+    public SimpleServer(int port, int bufferSize, int maxConnections, int workerCount) {
+        this(ServerConfig.builder()
+                .port(port)
+                .bufferSize(bufferSize)
+                .maxConnections(maxConnections)
+                .workerCount(workerCount)
+                .build());
+    }
 
     public SimpleServer(int port, int bufferSize, int maxConnections) {
-        this.port = port;
-        this.bufferSize = bufferSize;
-        initServer(port, maxConnections);
+        this(ServerConfig.builder()
+                .port(port)
+                .bufferSize(bufferSize)
+                .maxConnections(maxConnections)
+                .build());
     }
 
     public SimpleServer(int port, int bufferSize) {
-        this(port, bufferSize, DEFAULT_MAX_CONNECTIONS);
+        this(ServerConfig.builder()
+                .port(port)
+                .bufferSize(bufferSize)
+                .build());
     }
 
     public SimpleServer(int port) {
-        this(port, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_CONNECTIONS);
+        this(ServerConfig.builder()
+                .port(port)
+                .build());
     }
 
     public SimpleServer() {
-        this(DEFAULT_PORT, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_CONNECTIONS);
+        this(ServerConfig.builder().build());
     }
 
-    private void initServer(int port, int maxConnections) {
+    private void initServer(int port) {
         try {
-            serverSocketChannel = ServerSocketChannel.open();
-            serverSocketChannel.bind(new InetSocketAddress(port));
-            // Activate non-blocking mode
-            serverSocketChannel.configureBlocking(false);
-
-            // Create Selector for managing I/O events
-            selector = Selector.open();
-            // Register channel into selector for acceptable keys (IO events)
-            serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
-
-//            bufferPool = new ByteBuffer[maxConnections];
-//            for (int i = 0; i < maxConnections; i++) {
-//                bufferPool[i] = ByteBuffer.allocate(bufferSize);
-//            }
-//            availableBuffers = new boolean[maxConnections];
-//            Arrays.fill(availableBuffers, true); // Initially all buffers available
+            serverSocketChannels = new ServerSocketChannel[acceptorCount];
+            acceptors = new EventLoop[acceptorCount];
+            int boundPort = port;
+            for (int i = 0; i < acceptorCount; i++) {
+                serverSocketChannels[i] = openListener(boundPort);
+                // port 0: the rest of listeners join the port picked for the first one
+                boundPort = ((InetSocketAddress) serverSocketChannels[i].getLocalAddress()).getPort();
+
+                // Create acceptor loop (with own Selector) for managing accept events
+                acceptors[i] = new EventLoop(acceptorCount == 1 ? "acceptor" : "acceptor-" + i, i, this, newTimer());
+                // Register channel into selector for acceptable keys (IO events)
+                serverSocketChannels[i].register(acceptors[i].selector(), SelectionKey.OP_ACCEPT);
+            }
+            if (unixSocketPath != null) {
+                // same selector as TCP: acceptConnection() doesn't care which listener the key belongs to
+                unixSocketChannel = openUnixListener(unixSocketPath);
+                unixSocketChannel.register(acceptors[0].selector(), SelectionKey.OP_ACCEPT);
+            }
+
+            // without workers acceptors serve clients themselves
+            if (workerCount > 0) {
+                workers = new EventLoop[workerCount];
+                for (int i = 0; i < workerCount; i++) {
+                    workers[i] = new EventLoop("worker-" + i, i, this, newTimer());
+                }
+            } else {
+                workers = acceptors;
+            }
 
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private ServerSocketChannel openListener(int port) throws IOException {
+        final ServerSocketChannel channel = ServerSocketChannel.open();
+        if (acceptorCount > 1) {
+            // kernel spreads incoming connections over all listeners of the port (by hash of the 4-tuple)
+            channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        }
+        if (config.getReceiveBufferSize() > 0) {
+            // accepted sockets inherit it, must be set before listen to take effect on the TCP window scale
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, config.getReceiveBufferSize());
+        }
+        channel.bind(new InetSocketAddress(port), config.getBacklog());
+        // Activate non-blocking mode
+        channel.configureBlocking(false);
+        return channel;
+    }
+
+    private ServerSocketChannel openUnixListener(Path path) throws IOException {
+        // socket file outlives a crashed server, bind fails while it exists
+        Files.deleteIfExists(path);
+        final ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        channel.bind(UnixDomainSocketAddress.of(path), config.getBacklog());
+        channel.configureBlocking(false);
+        return channel;
+    }
+
+    // several listeners need SO_REUSEPORT (Linux 3.9+, BSD), otherwise fall back to one acceptor
+    private static int acceptorCount(ServerConfig config) {
+        final int count = Math.max(1, config.getAcceptorCount());
+        if (count == 1) {
+            return 1;
+        }
+        try (ServerSocketChannel probe = ServerSocketChannel.open()) {
+            if (probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                return count;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        System.err.println("SO_REUSEPORT is not supported, using single acceptor instead of " + count);
+        return 1;
+    }
+
+    // per accepted channel, before it is registered with a worker
+    private void configureClient(SocketChannel client) throws IOException {
+        // there is no Nagle on Unix domain sockets, buffer sizes apply to both
+        if (client.supportedOptions().contains(StandardSocketOptions.TCP_NODELAY)) {
+            client.setOption(StandardSocketOptions.TCP_NODELAY, config.isTcpNoDelay());
+        }
+        if (config.getReceiveBufferSize() > 0) {
+            client.setOption(StandardSocketOptions.SO_RCVBUF, config.getReceiveBufferSize());
+        }
+        if (config.getSendBufferSize() > 0) {
+            client.setOption(StandardSocketOptions.SO_SNDBUF, config.getSendBufferSize());
+        }
+    }
+
+    @Override
     public void startServer() {
-        System.out.printf("Server listening on port %s...%n", port);
+        System.out.printf("Server listening on port %s with %d acceptor(s) & %d worker(s)...%n",
+                port, acceptorCount, workerCount);
+        if (unixSocketPath != null) {
+            System.out.println("Server listening on unix socket " + unixSocketPath);
+        }
+        if (cluster != null) {
+            cluster.start();
+        }
 
-        // Instead of while(true) for better clarity and graceful shutdown
-        while (serverSocketChannel != null && serverSocketChannel.isOpen()) {
-            int selected = 0;
-            try {
-                // wait for client connection (the only blocking operation)
-                // return number of ready & occurred within timeout events
-                selected = selector.select();
-
-                // avoid unnecessary processing (busy waiting)
-                if (selected > 0) {
-                    // Select ready I/O events
-                    Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
-
-                    while (keyIterator.hasNext()) {
-                        // Iterate each key with all IO-event info & remove it from selector
-                        SelectionKey key = keyIterator.next();
-                        keyIterator.remove();
-                        if (key.isAcceptable()) {
-                            acceptConnection(key);
-                        }
-                        if (key.isReadable()) {
-                            readData(key);
-                        }
-                    }
-                }
-            } catch (IOException e) {
-                System.err.println("Error trying select event by selector");
-                throw new RuntimeException(e);
+        if (workerCount > 0) {
+            for (EventLoop worker : workers) {
+                worker.start();
             }
-            // Check for shutdown signal
+        }
+        for (int i = 1; i < acceptors.length; i++) {
+            acceptors[i].start();
+        }
+        // Instead of while(true) for better clarity and graceful shutdown
+        acceptors[0].run();
+        // Check for shutdown signal
 //            if (shutdownLock.isLocked()) {
 //                try {
 //                    // Graceful shutdown
@@ -130,104 +361,951 @@ public class SimpleServer {
 //                    shutdownLock.unlock();
 //                }
 //            }
+    }
+
+    private void initMetrics() {
+        final MetricsRegistry registry = metrics.registry();
+        registry.gauge("connections.active", () -> {
+            long active = 0;
+            for (EventLoop worker : workers) {
+                active += worker.connections().size();
+            }
+            return active;
+        });
+        registry.gauge("connections.open", connectionCount::get);
+        registry.gauge("connections.acceptPaused", () -> acceptPaused.get() ? 1 : 0);
+        registry.gauge("pool.queue", () -> ((ThreadPoolExecutor) threadPool).getQueue().size());
+        registry.gauge("buffers.leased", bufferPool::leased);
+        registry.gauge("buffers.free", bufferPool::free);
+        registry.gauge("files.transfers", () -> config.getMaxFileTransfers() - fileTransfers.availablePermits());
+        if (config.isTrafficSketchEnabled()) {
+            // "traffic.top.bytes.<host> <recent bytes>", the top K over all loops
+            registry.labeledGauge("traffic.top.bytes", () -> topTalkers(TrafficSketch::bytes));
+            registry.labeledGauge("traffic.top.messages", () -> topTalkers(TrafficSketch::messages));
+        }
+        if (journal != null) {
+            registry.gauge("journal.nextOffset", journal::nextOffset);
+            registry.gauge("journal.bytes", journal::sizeBytes);
+            registry.gauge("journal.segments", journal::segmentCount);
+        }
+        registry.start();
+        if (config.isJmxEnabled()) {
+            registry.registerMBean("org.example.server:type=SimpleServer,port=" + port);
+        }
+        if (config.getAdminPort() > 0) {
+            adminEndpoint = new AdminEndpoint(config.getAdminPort(), registry);
+            adminEndpoint.start();
+        }
+    }
+
+    private static ThreadFactory processorThreads() {
+        final AtomicInteger count = new AtomicInteger();
+        return runnable -> new Thread(runnable, "processor-" + count.getAndIncrement());
+    }
+
+    // each loop has own timer (no locking), driven by the loop itself
+    private HashedWheelTimer newTimer() {
+        return new HashedWheelTimer(config.getTimerTickMillis(), config.getTimerWheelSize());
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    // stop accepting, let every loop close its connections & exit
+    @Override
+    public void shutdown() {
+        running = false;
+        for (ServerSocketChannel serverSocketChannel : serverSocketChannels) {
+            try {
+                serverSocketChannel.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close server channel on port " + port);
+            }
+        }
+        if (unixSocketChannel != null) {
+            try {
+                unixSocketChannel.close();
+                Files.deleteIfExists(unixSocketPath);
+            } catch (IOException e) {
+                System.err.println("Failed to close unix socket " + unixSocketPath);
+            }
+        }
+        for (EventLoop acceptor : acceptors) {
+            acceptor.wakeup();
+        }
+        for (EventLoop worker : workers) {
+            worker.wakeup();
+        }
+        threadPool.shutdown();
+        if (adminEndpoint != null) {
+            adminEndpoint.close();
+        }
+        metrics.registry().close();
+        if (cluster != null) {
+            cluster.close();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Override
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Messages per second of every connection, {@link RateLimit#update(double, int)} applies to the connected
+     * clients at once.
+     */
+    public RateLimit getConnectionRateLimit() {
+        return connectionRateLimit;
+    }
+
+    /**
+     * Messages per second of all connections together.
+     */
+    public RateLimit getGlobalRateLimit() {
+        return globalRateLimit;
+    }
+
+    // null if not clustered
+    public ClusterNode getCluster() {
+        return cluster;
+    }
+
+    // acceptor thread: a burst is accepted up to the ceiling per iteration (other listeners & tasks of the loop get
+    // their turn, the listener is selected again), at the limit accepting pauses & the burst waits in the backlog
+    void acceptConnection(SelectionKey eventKey) {
+        for (int i = 0; i < maxAcceptsPerIteration; i++) {
+            if (!reserveConnection()) {
+                metrics.deferred.increment();
+                pauseAccepting();
+                return;
+            }
+            if (!acceptOne(eventKey)) {
+                releaseConnection();
+                return;
+            }
         }
+        // ceiling reached: not counted, whether more connections wait is only known by accepting them
     }
 
-    private void acceptConnection(SelectionKey eventKey) {
-        SocketChannel client;
+    // @return false if there was nothing to accept or accepting failed (reserved slot is not taken then)
+    private boolean acceptOne(SelectionKey eventKey) {
+        SocketChannel client = null;
         SocketAddress remoteAddress = null;
         try {
             // won't block thread if no connection is available because of configureBlocking(false)
-            client = serverSocketChannel.accept();
-            remoteAddress = client.getRemoteAddress();
+            client = ((ServerSocketChannel) eventKey.channel()).accept();
+            if (client == null) {
+                return false;
+            }
+            remoteAddress = clientAddress(client);
             // Non-blocking mode for client
             client.configureBlocking(false);
+            configureClient(client);
 
-            // allocate separate buffer for each connection
-            client.register(selector, OP_READ);
-            clientBufferMap.put(client, allocate(bufferSize));
-            broadcast("[System]: " + remoteAddress + " connected!");
+            // hand over to worker (round-robin), buffers are leased from the pool on read
+            final SocketAddress address = remoteAddress;
+            nextWorker().register(client, address, connection -> {
+                connection.rateLimiter(new TokenBucket(connectionRateLimit));
+                if (reactiveHandler != null) {
+                    openStreams(connection);
+                    return;
+                }
+                connection.mailbox(newMailbox(connection));
+                topics.subscribe(DEFAULT_TOPIC, connection);
+                startTimers(connection);
+                if (announceConnections) {
+                    broadcast("[System]: " + address + " connected!");
+                }
+            });
 
-            System.out.println("Client connected: " + remoteAddress);
+            metrics.accepted.increment();
+            if (announceConnections) {
+                System.out.println("Client connected: " + remoteAddress);
+            }
+            return true;
         } catch (IOException e) {
             System.err.println("Failed to connect client: " + remoteAddress);
-            closeConnection(eventKey);
+            // not registered anywhere yet, just drop the socket
+            if (client != null) {
+                try {
+                    client.close();
+                } catch (IOException ex) {
+                    System.err.println("Failed to close client: " + remoteAddress);
+                }
+            }
+            return false;
+        }
+    }
+
+    private boolean reserveConnection() {
+        int current;
+        do {
+            current = connectionCount.get();
+            if (current >= maxConnections) {
+                return false;
+            }
+        } while (!connectionCount.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    // any thread: connection closed (or never registered), accepting goes on if it was paused by the limit
+    void releaseConnection() {
+        if (connectionCount.decrementAndGet() < maxConnections && acceptPaused.get()) {
+            resumeAccepting();
+        }
+    }
+
+    private void pauseAccepting() {
+        if (acceptPaused.compareAndSet(false, true)) {
+            updateAcceptInterest();
+            // a connection closed before the flag was set didn't resume
+            if (connectionCount.get() < maxConnections) {
+                resumeAccepting();
+            }
+        }
+    }
+
+    private void resumeAccepting() {
+        if (acceptPaused.compareAndSet(true, false)) {
+            updateAcceptInterest();
+        }
+    }
+
+    // listeners are changed by their acceptor threads, each task applies the flag as it is when the task runs,
+    // so the last one wins however pauses & resumes interleave
+    private void updateAcceptInterest() {
+        for (EventLoop acceptor : acceptors) {
+            acceptor.execute(() -> {
+                final int ops = acceptPaused.get() ? 0 : SelectionKey.OP_ACCEPT;
+                for (SelectionKey key : acceptor.selector().keys()) {
+                    if (key.isValid() && key.channel() instanceof ServerSocketChannel) {
+                        key.interestOps(ops);
+                    }
+                }
+            });
+        }
+    }
+
+    // TCP peer address, or "<socket path>#<n>" for an (always unnamed) Unix domain socket peer
+    private SocketAddress clientAddress(SocketChannel client) throws IOException {
+        final SocketAddress address = client.getRemoteAddress();
+        if (address instanceof UnixDomainSocketAddress) {
+            return UnixDomainSocketAddress.of(unixSocketPath + "#" + unixClients.incrementAndGet());
+        }
+        return address;
+    }
+
+    // worker thread: data already read is processed, the next read waits till the pause is over
+    private void throttle(Connection connection) {
+        if (connection.isReadSuspended(Connection.SUSPEND_THROTTLE)) {
+            return;
         }
+        connection.suspendRead(Connection.SUSPEND_THROTTLE);
+        metrics.trafficThrottled.increment();
+        connection.worker().timer().schedule(trafficThrottleMillis, () -> {
+            if (!connection.isClosed()) {
+                connection.resumeRead(Connection.SUSPEND_THROTTLE);
+            }
+        });
     }
 
-    private void readData(SelectionKey eventKey) {
+    // heaviest hosts over all loops: candidates published by every loop, estimates summed over the loops
+    private Map<String, Long> topTalkers(Function<TrafficSketch, HeavyHitters<String>> dimension) {
+        final Map<String, Long> estimates = new HashMap<>();
+        for (EventLoop worker : workers) {
+            if (worker.traffic() == null) {
+                continue;
+            }
+            dimension.apply(worker.traffic()).forEachCandidate((host, hash) ->
+                    estimates.computeIfAbsent(host, h -> {
+                        long total = 0;
+                        for (EventLoop loop : workers) {
+                            total += dimension.apply(loop.traffic()).estimate(hash);
+                        }
+                        return total;
+                    }));
+        }
+        final Map<String, Long> top = new LinkedHashMap<>();
+        estimates.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(config.getTrafficTopK())
+                .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+        return top;
+    }
+
+    // frames go to & come from the handler, nothing is read until its subscriber requests (worker thread)
+    private void openStreams(Connection connection) {
+        connection.suspendRead(Connection.SUSPEND_DEMAND);
+        final ReactiveConnection streams = new ReactiveConnection(
+                connection,
+                payload -> encode(NO_PREFIX, payload),
+                backpressure.lowWatermark(),
+                () -> connection.worker().execute(() -> resumeReading(connection, Connection.SUSPEND_DEMAND)));
+        connection.streams(streams);
+        try {
+            reactiveHandler.accept(streams);
+        } catch (RuntimeException e) {
+            // subscribers the handler managed to attach get onError on close
+            System.err.printf("Reactive handler failed for %s: %s%n", connection.remoteAddress(), e);
+            closeConnection(connection.key(), CloseReason.INTERNAL_ERROR);
+        }
+    }
+
+    // messages of the connection are processed in order, one at a time, by the pool
+    private Mailbox newMailbox(Connection connection) {
+        final Runnable resume = () -> resumeReading(connection, Connection.SUSPEND_MAILBOX);
+        return new Mailbox(
+                connection,
+                threadPool,
+                this::processData,
+                () -> connection.worker().execute(resume),
+                mailboxCapacity,
+                mailboxThroughput);
+    }
+
+    // runs on connection's worker thread, like every timer task
+    private void startTimers(Connection connection) {
+        final HashedWheelTimer timer = connection.worker().timer();
+        if (idleTimeoutMillis > 0) {
+            connection.idleTimeout(timer.schedule(idleTimeoutMillis, () -> checkIdle(connection)));
+        }
+        if (heartbeatIntervalMillis > 0) {
+            connection.heartbeatTimeout(timer.schedule(heartbeatIntervalMillis, () -> heartbeat(connection)));
+        }
+    }
+
+    // timer isn't touched on every read: when it fires, it is re-armed for the time left since the last read
+    private void checkIdle(Connection connection) {
+        final long idleMillis = (System.nanoTime() - connection.lastReadNanos()) / 1_000_000;
+        if (idleMillis >= idleTimeoutMillis) {
+            closeConnection(connection.key(), CloseReason.IDLE_TIMEOUT);
+        } else {
+            connection.idleTimeout(connection.worker().timer()
+                    .schedule(idleTimeoutMillis - idleMillis, () -> checkIdle(connection)));
+        }
+    }
+
+    // previous ping must be answered till now, otherwise peer is dead (or half-open)
+    private void heartbeat(Connection connection) {
+        if (connection.pingSentNanos() != 0) {
+            closeConnection(connection.key(), CloseReason.HEARTBEAT_TIMEOUT);
+            return;
+        }
+        final long now = System.nanoTime();
+        connection.pingSentNanos(now);
+        send(connection, PING_COMMAND + " " + now);
+        connection.heartbeatTimeout(connection.worker().timer()
+                .schedule(heartbeatIntervalMillis, () -> heartbeat(connection)));
+    }
+
+    // started frame must be completed in time, otherwise client holds the buffer forever (e.g. slowloris)
+    private void updateReadTimeout(Connection connection) {
+        if (readTimeoutMillis <= 0) {
+            return;
+        }
+        // frames held back by the full mailbox, the rate limit, the lack of demand or of buffers aren't client's fault
+        final boolean partial = connection.cumulation() != null && !connection.isReadSuspended(
+                Connection.SUSPEND_MAILBOX | Connection.SUSPEND_RATE_LIMIT | Connection.SUSPEND_DEMAND
+                        | Connection.SUSPEND_BUFFER);
+        if (partial && connection.readTimeout() == null) {
+            connection.readTimeout(connection.worker().timer()
+                    .schedule(readTimeoutMillis, () -> closeConnection(connection.key(), CloseReason.READ_TIMEOUT)));
+        } else if (!partial && connection.readTimeout() != null) {
+            connection.readTimeout().cancel();
+            connection.readTimeout(null);
+        }
+    }
+
+    private EventLoop nextWorker() {
+        return workers[Math.floorMod(nextWorker.getAndIncrement(), workers.length)];
+    }
+
+    void readData(SelectionKey eventKey) {
         SocketAddress remoteAddress = null;
+        final SocketChannel clientChannel = (SocketChannel) eventKey.channel();
+        final Connection connection = (Connection) eventKey.attachment();
+        // take partial frame from previous reads (if any), connection gets it back only if frame is still partial
+        ByteBuffer buffer = connection.cumulation();
+        connection.cumulation(null);
         try {
-            final SocketChannel clientChannel = (SocketChannel) eventKey.channel();
-            remoteAddress = clientChannel.getRemoteAddress();
+            remoteAddress = connection.remoteAddress();
 
-            ByteBuffer buffer = clientBufferMap.get(clientChannel);
+            // lease buffer for this read only (if there is no partial frame to continue)
+            if (buffer == null) {
+                buffer = acquireOnLoop(connection, bufferSize);
+                if (buffer == null) {
+                    return;
+                }
+            } else if (!buffer.hasRemaining()) {
+                throw new CorruptedFrameException("Frame doesn't fit into " + buffer.capacity() + " bytes");
+            }
 
             // write data into buffer (read data from channel to buffer)
             final int bytesRead = clientChannel.read(buffer);
-            if (bytesRead > 0) {
-                // Handle received data (e.g., process message)
-                threadPool.submit(() -> processData(buffer.flip(), eventKey));
-            } else if (bytesRead == -1) {
-                closeConnection(eventKey);
+            if (bytesRead == -1) {
+                closeConnection(eventKey, CloseReason.PEER_CLOSED);
+                return;
             }
+            metrics.bytesIn.add(bytesRead);
+            connection.onRead(bytesRead);
+            final TrafficSketch traffic = connection.worker().traffic();
+            if (traffic != null) {
+                final long recentBytes = traffic.onRead(connection, bytesRead);
+                if (trafficThrottleBytes > 0 && recentBytes > trafficThrottleBytes) {
+                    throttle(connection);
+                }
+            }
+            connection.lastReadNanos(System.nanoTime());
+            buffer.flip();
+            decodeFrames(buffer, connection);
+            if (buffer.hasRemaining()) {
+                // keep partial frame till next read (move it to the buffer start)
+                connection.cumulation(buffer.compact());
+                buffer = null;
+            }
+            updateReadTimeout(connection);
+        } catch (BufferPoolExhaustedException e) {
+            // no memory to serve the client (reject connection)
+            System.err.println(e.getMessage() + ", rejecting client: " + remoteAddress);
+            closeConnection(eventKey, CloseReason.BUFFER_EXHAUSTED);
+        } catch (CorruptedFrameException e) {
+            System.err.printf("Corrupted frame from client %s: %s%n", remoteAddress, e.getMessage());
+            closeConnection(eventKey, CloseReason.PROTOCOL_ERROR);
         } catch (IOException e) {
+            // e.g. connection reset by peer, key would be selected again & again
             System.err.println("Failed to read from client: " + remoteAddress);
+            closeConnection(eventKey, CloseReason.IO_ERROR);
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    // one read may contain several frames (batched clients) & end with the part of the next one,
+    // frames stay in the buffer while the connection's mailbox is full (reading is suspended till it drains)
+    // or it is out of tokens (reading is suspended till they refill) or the reactive subscriber has no demand
+    private void decodeFrames(ByteBuffer in, Connection connection) throws IOException {
+        final Mailbox mailbox = connection.mailbox();
+        final ReactiveConnection streams = connection.streams();
+        while (in.hasRemaining()) {
+            if (streams != null) {
+                if (!streams.hasDemand()) {
+                    // resumed by the next request
+                    connection.suspendRead(Connection.SUSPEND_DEMAND);
+                    return;
+                }
+            } else if (mailbox.isFull() && mailbox.suspend()) {
+                connection.suspendRead(Connection.SUSPEND_MAILBOX);
+                metrics.mailboxSuspended.increment();
+                return;
+            }
+            final int frameStart = in.position();
+            final int limit = in.limit();
+            // no view per frame: in itself is narrowed to the payload till the limit is restored
+            final int nextFrame = frameDecoder.decodePayload(in);
+            if (nextFrame < 0) {
+                return;
+            }
+            if (!in.hasRemaining()) {
+                in.limit(limit).position(nextFrame);
+                continue;
+            }
+            if (!acquireMessage(connection)) {
+                // not taken: the frame is decoded again once tokens refill
+                in.limit(limit).position(frameStart);
+                return;
+            }
+            ByteBuffer dataBuffer = null;
+            if (streams == null) {
+                dataBuffer = acquireOnLoop(connection, in.remaining());
+                if (dataBuffer == null) {
+                    // tokens go back, the frame is decoded again once a buffer is free
+                    refundMessage(connection);
+                    in.limit(limit).position(frameStart);
+                    return;
+                }
+            }
+            final TrafficSketch traffic = connection.worker().traffic();
+            if (traffic != null) {
+                traffic.onMessage(connection);
+            }
+            if (streams != null) {
+                streams.emit(in);
+                in.limit(limit).position(nextFrame);
+                continue;
+            }
+            // copy payload out of read buffer, which is reused for the next frames
+            dataBuffer.put(in).flip();
+            in.limit(limit).position(nextFrame);
+            // Handle received data (e.g., process message) in order, processing returns buffer to the pool
+            mailbox.offer(dataBuffer);
+        }
+    }
+
+    // token of the connection's bucket, then of the global one (given back if the global one is out),
+    // reading is paused until the missing token refills
+    private boolean acquireMessage(Connection connection) {
+        long waitNanos = connection.rateLimiter().tryAcquire(1);
+        if (waitNanos == 0) {
+            waitNanos = globalRateLimiter.tryAcquire(1);
+            if (waitNanos == 0) {
+                return true;
+            }
+            connection.rateLimiter().refund(1);
+            pauseReading(connection, waitNanos, metrics.rateLimitedGlobal);
+        } else {
+            pauseReading(connection, waitNanos, metrics.rateLimitedConnection);
+        }
+        return false;
+    }
+
+    private void refundMessage(Connection connection) {
+        connection.rateLimiter().refund(1);
+        globalRateLimiter.refund(1);
+    }
+
+    // worker thread: pool buffer without waiting, the loop must not stall its other connections (nor the release
+    // of the buffers it would wait for). With WAIT policy an exhausted pool pauses reading the connection & the
+    // timer retries (null is returned), the client is rejected once the wait timeout is over
+    private ByteBuffer acquireOnLoop(Connection connection, int size) throws BufferPoolExhaustedException {
+        final ByteBuffer buffer = bufferPool.tryAcquire(size);
+        if (buffer != null) {
+            connection.bufferWaitStartNanos(0);
+            return buffer;
+        }
+        final long now = System.nanoTime();
+        if (connection.bufferWaitStartNanos() == 0) {
+            connection.bufferWaitStartNanos(now);
+        } else if (now - connection.bufferWaitStartNanos() > TimeUnit.MILLISECONDS.toNanos(bufferPool.waitMillis())) {
+            throw new BufferPoolExhaustedException(format(
+                    "No buffer of %d bytes within %d ms", size, bufferPool.waitMillis()));
+        }
+        if (!connection.isReadSuspended(Connection.SUSPEND_BUFFER)) {
+            connection.suspendRead(Connection.SUSPEND_BUFFER);
+            connection.worker().timer().schedule(1, () -> resumeReading(connection, Connection.SUSPEND_BUFFER));
+        }
+        return null;
+    }
+
+    // worker thread, resumed by the worker's timer (a tick at least), once per pause even if decoded again meanwhile
+    private void pauseReading(Connection connection, long waitNanos, Counter paused) {
+        if (connection.isReadSuspended(Connection.SUSPEND_RATE_LIMIT)) {
+            return;
+        }
+        connection.suspendRead(Connection.SUSPEND_RATE_LIMIT);
+        paused.increment();
+        connection.worker().timer().schedule(
+                Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos)),
+                () -> resumeReading(connection, Connection.SUSPEND_RATE_LIMIT));
+    }
+
+    // mailbox is drained, tokens are refilled, the subscriber requested more or a buffer may be free:
+    // decode frames held back in the cumulation & read from the client again (worker thread)
+    private void resumeReading(Connection connection, int reason) {
+        if (connection.isClosed()) {
+            return;
+        }
+        connection.resumeRead(reason);
+        ByteBuffer buffer = connection.cumulation();
+        connection.cumulation(null);
+        try {
+            if (buffer != null) {
+                buffer.flip();
+                decodeFrames(buffer, connection);
+                if (buffer.hasRemaining()) {
+                    connection.cumulation(buffer.compact());
+                    buffer = null;
+                }
+            }
+            updateReadTimeout(connection);
+        } catch (BufferPoolExhaustedException e) {
+            System.err.println(e.getMessage() + ", rejecting client: " + connection.remoteAddress());
+            closeConnection(connection.key(), CloseReason.BUFFER_EXHAUSTED);
+        } catch (IOException e) {
+            // decoding only, nothing is read from the channel here
+            System.err.printf("Corrupted frame from client %s: %s%n", connection.remoteAddress(), e.getMessage());
+            closeConnection(connection.key(), CloseReason.PROTOCOL_ERROR);
+        } finally {
+            bufferPool.release(buffer);
         }
     }
 
-    private void processData(ByteBuffer dataBuffer, SelectionKey eventKey) {
+    // plain chat message is handled on bytes only (no String, no formatting), commands may allocate
+    private void processData(Connection connection, ByteBuffer dataBuffer) {
+        final long allocatedBefore = profileAllocations ? THREADS.getCurrentThreadAllocatedBytes() : 0;
         try {
-            SocketChannel clientChannel = (SocketChannel) eventKey.channel();
-            final SocketAddress clientName = clientChannel.getRemoteAddress();
-            String message = new String(dataBuffer.array(), 0, dataBuffer.limit());
-            if (message.equals(EXIT_CODE)) {
-                closeConnection(eventKey);
+            if (connection.isClosed()) {
+                // closed while message was waiting in the mailbox (e.g. slow consumer)
+                return;
+            }
+            metrics.processed.increment();
+            if (equalsBytes(dataBuffer, EXIT_BYTES)) {
+                // connection state belongs to worker thread, so close it there
+                connection.worker().execute(() -> closeConnection(connection.key(), CloseReason.CLIENT_EXIT));
+            } else if (startsWithBytes(dataBuffer, PONG_BYTES)) {
+                connection.onPong(parseLong(dataBuffer, PONG_BYTES.length), System.nanoTime());
+            } else if (dataBuffer.get(dataBuffer.position()) != '/') {
+                // hot path: "[address]: " is encoded once per connection & message bytes are copied into the frame
+                publish(DEFAULT_TOPIC, connection.addressPrefix(), dataBuffer);
             } else {
-                // Process message (e.g., parse data, generate response)
-                broadcast(format("[%s]: %s", clientName, message));
-                // Clear buffer for reuse & mark as available
-                dataBuffer.clear();
+                processCommand(connection, dataBuffer);
             }
         } catch (Exception e) {
             // handle potential errors (or send error response to client)
             System.err.println("Error processing message: " + e.getMessage());
+        } finally {
+            // data is consumed, return buffer to the pool
+            bufferPool.release(dataBuffer);
+            if (profileAllocations) {
+                metrics.allocatedBytes.add(THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore);
+            }
+        }
+    }
+
+    private void processCommand(Connection connection, ByteBuffer dataBuffer) {
+        // direct buffer has no backing array, so copy bytes out of native memory
+        final byte[] bytes = new byte[dataBuffer.remaining()];
+        dataBuffer.get(bytes);
+        final String message = new String(bytes);
+        final SocketAddress clientName = connection.remoteAddress();
+        if (message.startsWith(SUBSCRIBE_COMMAND + " ")) {
+            final String topic = message.substring(SUBSCRIBE_COMMAND.length()).trim();
+            topics.subscribe(topic, connection);
+            send(connection, format("[System]: subscribed to #%s", topic));
+        } else if (message.startsWith(UNSUBSCRIBE_COMMAND + " ")) {
+            final String topic = message.substring(UNSUBSCRIBE_COMMAND.length()).trim();
+            topics.unsubscribe(topic, connection);
+            send(connection, format("[System]: unsubscribed from #%s", topic));
+        } else if (message.equals(REPLAY_COMMAND) || message.startsWith(REPLAY_COMMAND + " ")) {
+            replay(connection, message.substring(REPLAY_COMMAND.length()).trim());
+        } else if (message.startsWith(FILE_COMMAND + " ")) {
+            sendFile(connection, message.substring(FILE_COMMAND.length()).trim());
+        } else if (message.startsWith(PUBLISH_COMMAND + " ")) {
+            // "/pub room message" -> topic & message
+            final String[] parts = message.substring(PUBLISH_COMMAND.length()).trim().split(" ", 2);
+            if (parts.length < 2 || parts[0].isEmpty()) {
+                send(connection, "[System]: usage " + PUBLISH_COMMAND + " <topic> <message>");
+            } else {
+                publish(parts[0], format("[#%s][%s]: %s", parts[0], clientName, parts[1]));
+            }
+        } else {
+            // unknown command is just a message starting with '/'
+            broadcast(format("[%s]: %s", clientName, message));
         }
     }
 
+    // "name [offset]": file is opened here, the worker loop streams it between other frames of the connection
+    private void sendFile(Connection connection, String request) {
+        if (fileDirectory == null) {
+            send(connection, "[System]: file transfer is disabled");
+            return;
+        }
+        final String[] parts = request.split(" ", 2);
+        final long offset;
+        try {
+            offset = parts.length > 1 ? Long.parseLong(parts[1].trim()) : 0;
+        } catch (NumberFormatException e) {
+            send(connection, "[System]: usage " + FILE_COMMAND + " <name> [offset]");
+            return;
+        }
+        // no way out of the directory (e.g. "../secret")
+        final Path path = fileDirectory.resolve(parts[0]).normalize();
+        if (!path.startsWith(fileDirectory) || !Files.isRegularFile(path)) {
+            send(connection, "[System]: no such file " + parts[0]);
+            return;
+        }
+        if (!fileTransfers.tryAcquire()) {
+            send(connection, "[System]: too many file transfers, try again later");
+            return;
+        }
+        final FileTransfer transfer;
+        try {
+            final FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+            if (offset < 0 || offset > file.size()) {
+                send(connection, format("[System]: offset %d is out of file %s (%d bytes)", offset, parts[0], file.size()));
+                file.close();
+                fileTransfers.release();
+                return;
+            }
+            transfer = new FileTransfer(parts[0], file, offset, config.getFileChunkBytes(), frameEncoder,
+                    (finished, completed) -> onFileSent(connection, finished, completed));
+        } catch (IOException e) {
+            System.err.println("Failed to open file " + path + ": " + e.getMessage());
+            send(connection, "[System]: failed to open file " + parts[0]);
+            fileTransfers.release();
+            return;
+        }
+        send(connection, format("[System]: sending %s (%d bytes) from offset %d", parts[0], transfer.size(), offset));
+        connection.worker().execute(() -> {
+            if (!connection.startTransfer(transfer)) {
+                // one at a time per connection (or closed meanwhile)
+                send(connection, "[System]: another file is being sent already");
+                transfer.finish(false);
+            }
+        });
+    }
+
+    // worker thread, once per transfer
+    private void onFileSent(Connection connection, FileTransfer transfer, boolean completed) {
+        fileTransfers.release();
+        if (completed) {
+            send(connection, format("[System]: sent %s, %d bytes from offset %d",
+                    transfer.name(), transfer.position() - transfer.startOffset(), transfer.startOffset()));
+        }
+    }
+
+    // replay is served by the worker loop, straight from the journal mappings
+    private void replay(Connection connection, String from) {
+        if (journal == null) {
+            send(connection, "[System]: journal is disabled");
+            return;
+        }
+        if (from.isEmpty()) {
+            send(connection, format("[System]: journal offsets %d..%d", journal.firstOffset(), journal.nextOffset()));
+            return;
+        }
+        final Journal.Cursor cursor;
+        try {
+            if (from.startsWith("@")) {
+                cursor = journal.cursorAt(Long.parseLong(from.substring(1)));
+            } else if (from.startsWith("-")) {
+                cursor = journal.cursor(Math.max(0, journal.nextOffset() - Long.parseLong(from.substring(1))));
+            } else {
+                cursor = journal.cursor(Long.parseLong(from));
+            }
+        } catch (NumberFormatException e) {
+            send(connection, "[System]: usage " + REPLAY_COMMAND + " <offset> | -<count> | @<epoch millis>");
+            return;
+        }
+        // up to the current end, live messages keep coming as usual meanwhile
+        final long endOffset = journal.nextOffset();
+        send(connection, format("[System]: replaying offsets %d..%d", cursor.offset(), endOffset));
+        connection.worker().execute(() -> {
+            // one replay per connection: the previous one stops where it got to
+            final Journal.Cursor previous = connection.replay();
+            if (previous != null) {
+                send(connection, "[System]: replay superseded at offset " + previous.offset());
+            }
+            connection.replay(cursor);
+            replay(connection, cursor, endOffset);
+        });
+    }
+
+    // paced by the client: frames are queued up to the low watermark, the rest follows once they are written
+    private void replay(Connection connection, Journal.Cursor cursor, long endOffset) {
+        if (connection.isClosed() || connection.replay() != cursor) {
+            // closed or superseded (its drain listener may still come)
+            return;
+        }
+        while (cursor.offset() < endOffset) {
+            if (connection.pendingBytes() >= backpressure.lowWatermark()) {
+                connection.onDrained(() -> replay(connection, cursor, endOffset));
+                return;
+            }
+            final ByteBuffer payload = cursor.next();
+            if (payload == null) {
+                // message below the end is still being appended: the loop must not wait, next timer tick then
+                connection.worker().timer().schedule(1, () -> replay(connection, cursor, endOffset));
+                return;
+            }
+            // journal keeps payloads, framed by the current codec
+            send(connection, payload);
+        }
+        connection.replay(null);
+        send(connection, "[System]: replay done, next offset " + cursor.offset());
+    }
+
+    private static boolean equalsBytes(ByteBuffer buffer, byte[] bytes) {
+        return buffer.remaining() == bytes.length && startsWithBytes(buffer, bytes);
+    }
+
+    private static boolean startsWithBytes(ByteBuffer buffer, byte[] prefix) {
+        if (buffer.remaining() < prefix.length) {
+            return false;
+        }
+        final int position = buffer.position();
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(position + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // decimal digits after offset, without String (NumberFormatException for anything else)
+    private static long parseLong(ByteBuffer buffer, int offset) {
+        final int end = buffer.limit();
+        int i = buffer.position() + offset;
+        if (i >= end) {
+            throw new NumberFormatException("No digits");
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            final byte digit = buffer.get(i);
+            if (digit < '0' || digit > '9') {
+                throw new NumberFormatException("Not a digit: " + (char) digit);
+            }
+            value = value * 10 + (digit - '0');
+        }
+        return value;
+    }
+
+    void writeData(SelectionKey eventKey) {
+        final Connection connection = (Connection) eventKey.attachment();
+        connection.worker().flush(connection);
+    }
+
     private void broadcast(String message) {
-        final ByteBuffer buffer = wrap(message.getBytes());
-        clientBufferMap.keySet().forEach(client -> {
+        publish(DEFAULT_TOPIC, message);
+    }
+
+    private void publish(String topic, String message) {
+        publish(topic, NO_PREFIX, wrap(message.getBytes()));
+    }
+
+    // fan-out to subscribers of the topic only (not to every connected client)
+    private void publish(String topic, byte[] prefix, ByteBuffer payload) {
+        final Connection[] subscribers = topics.subscribers(topic);
+        if (subscribers.length == 0 && cluster == null) {
+            return;
+        }
+        final long start = System.nanoTime();
+        // encode once for all recipients, each of them gets read-only view & releases it when written
+        final SharedBuffer frame = encode(prefix, payload);
+        try {
+            deliver(topic, subscribers, frame);
+            if (cluster != null) {
+                // clients of the other nodes get it too (only messages of local clients, relayed ones stop here)
+                cluster.relay(topic, frame.content());
+            }
+        } finally {
+            frame.release();
+        }
+        metrics.fanout.record((System.nanoTime() - start) / 1_000);
+    }
+
+    private void deliver(String topic, Connection[] subscribers, SharedBuffer frame) {
+        for (Connection connection : subscribers) {
+            // only enqueue here, worker loop writes when socket is ready (slow client doesn't stall others)
+            connection.send(frame);
+        }
+        if (journal != null && DEFAULT_TOPIC.equals(topic)) {
+            // after delivery, so failing journal doesn't cost anybody the live message
+            journal(frame);
+        }
+    }
+
+    // the payload without framing (local & relayed frames alike), replays frame it with the codec of their time
+    private void journal(SharedBuffer frame) {
+        final ByteBuffer payload;
+        try {
+            payload = frameDecoder.decode(frame.content().duplicate());
+        } catch (CorruptedFrameException e) {
+            System.err.println("Not journaled, frame is corrupted: " + e.getMessage());
+            return;
+        }
+        if (payload != null) {
+            journal.append(payload, System.currentTimeMillis());
+        }
+    }
+
+    // cluster link thread: message of a client of another node, already encoded there
+    private void deliverRelayed(String topic, ByteBuffer encoded) {
+        final Connection[] subscribers = topics.subscribers(topic);
+        if (subscribers.length == 0 && (journal == null || !DEFAULT_TOPIC.equals(topic))) {
+            return;
+        }
+        final SharedBuffer frame = copy(encoded);
+        try {
+            deliver(topic, subscribers, frame);
+        } finally {
+            frame.release();
+        }
+    }
+
+    private SharedBuffer copy(ByteBuffer encoded) {
+        if (encoded.remaining() <= bufferPool.maxSize()) {
             try {
-                client.write(buffer);
-                buffer.flip();
-            } catch (IOException e) {
-                try {
-                    System.err.println("Can't send message to: " + client.getRemoteAddress());
-                } catch (IOException ex) {
-                    System.err.println("No client for send message: " + client);
-                }
+                final SharedBuffer frame = bufferPool.acquireShared(encoded.remaining());
+                frame.content().put(encoded).flip();
+                return frame;
+            } catch (BufferPoolExhaustedException e) {
+                // fall through to heap copy
             }
-        });
-        buffer.clear();
+        }
+        return SharedBuffer.wrap(ByteBuffer.allocate(encoded.remaining()).put(encoded).flip());
+    }
+
+    private void send(Connection connection, String message) {
+        send(connection, wrap(message.getBytes()));
+    }
+
+    private void send(Connection connection, ByteBuffer payload) {
+        final SharedBuffer frame = encode(NO_PREFIX, payload);
+        connection.send(frame);
+        frame.release();
+    }
+
+    private SharedBuffer encode(byte[] prefix, ByteBuffer payload) {
+        final int frameLength = frameEncoder.frameLength(prefix.length + payload.remaining());
+        if (frameLength > bufferPool.maxSize()) {
+            // too big for any size class, let GC take care of it
+            return SharedBuffer.wrap(frameEncoder.encode(prefix, payload));
+        }
+        try {
+            // never waits (event loops encode too), an unpooled frame is as good
+            final SharedBuffer frame = bufferPool.tryAcquireShared(frameLength);
+            if (frame == null) {
+                return SharedBuffer.wrap(frameEncoder.encode(prefix, payload));
+            }
+            frameEncoder.encode(prefix, payload, frame.content());
+            frame.content().flip();
+            return frame;
+        } catch (BufferPoolExhaustedException e) {
+            return SharedBuffer.wrap(frameEncoder.encode(prefix, payload));
+        }
     }
 
-    private void closeConnection(SelectionKey key) {
+    void closeConnection(SelectionKey key, CloseReason reason) {
         SocketChannel clientChannel = (SocketChannel) key.channel();
         SocketAddress remoteAddress = null;
-        clientBufferMap.get(clientChannel).clear();
-        clientBufferMap.remove(clientChannel);
+        final Connection connection = (Connection) key.attachment();
+        if (connection == null || !connection.worker().connections().remove(connection)) {
+            // already closed
+            return;
+        }
+        metrics.onClosed(reason);
+        releaseConnection();
+        // cancels timers as well, marks the connection closed before it leaves its topics (see TopicRegistry)
+        connection.close();
+        topics.unsubscribeAll(connection);
+        bufferPool.release(connection.cumulation());
+        connection.cumulation(null);
+        if (connection.streams() != null) {
+            connection.streams().onClosed(reason);
+        }
         key.cancel();
         try {
-            remoteAddress = clientChannel.getRemoteAddress();
-            broadcast("[System]: " + remoteAddress + " disconnected.");
+            remoteAddress = connection.remoteAddress();
+            // at shutdown the others are being closed as well, nobody to tell
+            if (announceConnections && reason != CloseReason.SHUTDOWN) {
+                broadcast("[System]: " + remoteAddress + " disconnected.");
+            }
 
             clientChannel.close();
         } catch (IOException e) {
-            System.err.printf("Error closing connection: [%s]", remoteAddress);
-            throw new RuntimeException(e);
+            // connection is discarded anyway, the loop goes on with the others
+            System.err.printf("Error closing connection: [%s] %s%n", remoteAddress, e.getMessage());
+        }
+        if (announceConnections) {
+            System.out.printf("Client disconnected: [%s] (%s, rtt %.3fms, in %d bytes, out %d bytes)%n",
+                    remoteAddress, reason, connection.smoothedRttNanos() / 1_000_000.0,
+                    connection.bytesRead(), connection.bytesWritten());
         }
-        System.out.printf("Client disconnected: [%s]%n", remoteAddress);
     }
 
 //    private void closeConnection(SocketChannel clientChannel, SelectionKey key) throws IOException {
@@ -285,25 +1363,36 @@ public class SimpleServer {
 //        shutdownLock.lock();
 //    }
 
-//    private int getNextBufferIndex() throws IOException {
-//        int index = nextBufferIndex.getAndIncrement() % bufferPool.length;
-//        // Handle potential buffer exhaustion (reject connection)
-//        if (!availableBuffers[index]) {
-//            throw new IOException("Buffer pool exhausted"); // Indicate connection rejection
-//        }
-//        // Handle potential buffer exhaustion (wait connection)
-////        while (!availableBuffers[index]) {
-////            System.err.println("Warning: Buffer pool exhausted, retrying...");
-////            Thread.sleep(100); // Simulate waiting for buffer availability
-////            index = nextBufferIndex.getAndIncrement() % bufferPool.length;
-////        }
-//        // Mark buffer as unavailable
-//        availableBuffers[index] = false;
-//        return index;
-//    }
 
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    public ServerConfig getConfig() {
+        return config;
+    }
+
+    public Backpressure getBackpressure() {
+        return backpressure;
+    }
+
+    public long getCloseCount(CloseReason reason) {
+        return metrics.closeCount(reason);
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
 
+    // "[port=8020] [cluster port] [peer cluster ports as host:port,...]", admin port is the next one after port,
+    // e.g. a local 2-node cluster: "8020 9020 localhost:9030" & "8030 9030 localhost:9020"
     public static void main(String[] args) {
-        new SimpleServer(8020).startServer();
+        final int port = args.length > 0 ? Integer.parseInt(args[0]) : 8020;
+        new SimpleServer(ServerConfig.builder()
+                .port(port)
+                .adminPort(port + 1)
+                .clusterPort(args.length > 1 ? Integer.parseInt(args[1]) : 0)
+                .clusterPeers(args.length > 2 ? args[2] : null)
+                .build()).startServer();
     }
 }
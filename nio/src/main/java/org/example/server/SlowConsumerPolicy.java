@@ -0,0 +1,14 @@
+package org.example.server;
+
+/**
+ * What to do with client whose queued outbound bytes exceed the high watermark
+ * (reading from such client is suspended in any case, till the queue drains below the low watermark).
+ */
+public enum SlowConsumerPolicy {
+    // discard oldest frames not yet started to be written, keep the new one
+    DROP_OLDEST,
+    // discard frames which don't fit under the high watermark
+    DROP_NEWEST,
+    // close the connection
+    DISCONNECT
+}
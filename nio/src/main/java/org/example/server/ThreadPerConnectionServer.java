@@ -0,0 +1,325 @@
+package org.example.server;
+
+import org.example.server.codec.CorruptedFrameException;
+import org.example.server.codec.FrameDecoder;
+import org.example.server.codec.FrameEncoder;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.String.format;
+import static java.nio.ByteBuffer.wrap;
+import static org.example.server.SimpleServer.DEFAULT_TOPIC;
+import static org.example.server.SimpleServer.EXIT_CODE;
+import static org.example.server.SimpleServer.PUBLISH_COMMAND;
+import static org.example.server.SimpleServer.SUBSCRIBE_COMMAND;
+import static org.example.server.SimpleServer.UNSUBSCRIBE_COMMAND;
+
+/**
+ * Same chat protocol as {@link SimpleServer}, but with plain blocking I/O: one thread per connection
+ * reads the socket & queues frames for recipients, a writer thread per connection writes its queue,
+ * no selector & no thread pool. The queue is bounded by the high watermark, above it the slow consumer
+ * policy applies (like in SimpleServer), so a client that stops reading never blocks the senders.
+ * Cheap with virtual threads (Java 21+), where blocked thread just unmounts from its carrier,
+ * expensive with platform threads (stack & kernel thread per client).
+ */
+public class ThreadPerConnectionServer implements ChatServer {
+    private final int port;
+    private final int bufferSize;
+    private final FrameDecoder frameDecoder;
+    private final FrameEncoder frameEncoder;
+    private final boolean announceConnections;
+    private final long highWatermark;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final ThreadFactory threadFactory;
+    private final TopicRegistry<Session> topics = new TopicRegistry<>(Session[]::new);
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+
+    private ServerSocketChannel serverSocketChannel;
+
+    public ThreadPerConnectionServer(ServerConfig config, ThreadFactory threadFactory) {
+        this.port = config.getPort();
+        this.bufferSize = config.getBufferSize();
+        this.frameDecoder = config.getFrameDecoder();
+        this.frameEncoder = config.getFrameEncoder();
+        this.announceConnections = config.isAnnounceConnections();
+        this.highWatermark = config.getHighWatermark();
+        this.slowConsumerPolicy = config.getSlowConsumerPolicy();
+        this.threadFactory = threadFactory;
+        initServer();
+    }
+
+    public ThreadPerConnectionServer(ServerConfig config) {
+        this(config, virtualThreadFactory());
+    }
+
+    private void initServer() {
+        try {
+            serverSocketChannel = ServerSocketChannel.open();
+            serverSocketChannel.bind(new InetSocketAddress(port));
+            // blocking mode (default) - accept() parks the thread till next client
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Virtual threads via reflection, so the module still compiles for Java 17.
+     * Falls back to platform threads on older runtimes.
+     */
+    public static ThreadFactory virtualThreadFactory() {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Virtual threads are not available, falling back to platform threads");
+            return runnable -> {
+                final Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    @Override
+    public void startServer() {
+        System.out.printf("Server listening on port %s (thread per connection)...%n", port);
+
+        while (serverSocketChannel.isOpen()) {
+            try {
+                final SocketChannel client = serverSocketChannel.accept();
+                final Session session = new Session(client);
+                sessions.add(session);
+                topics.subscribe(DEFAULT_TOPIC, session);
+                threadFactory.newThread(() -> serve(session)).start();
+                threadFactory.newThread(() -> write(session)).start();
+            } catch (IOException e) {
+                if (serverSocketChannel.isOpen()) {
+                    System.err.println("Failed to accept client: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        try {
+            serverSocketChannel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close server channel on port " + port);
+        }
+        sessions.forEach(this::closeSession);
+    }
+
+    @Override
+    public int getPort() {
+        return port;
+    }
+
+    // connection thread: blocking read -> decode frames -> handle each of them right here
+    private void serve(Session session) {
+        final SocketChannel channel = session.channel;
+        final ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        try {
+            session.remoteAddress = channel.getRemoteAddress();
+            if (announceConnections) {
+                broadcast("[System]: " + session.remoteAddress + " connected!");
+                System.out.println("Client connected: " + session.remoteAddress);
+            }
+            while (channel.isOpen()) {
+                if (!buffer.hasRemaining()) {
+                    throw new CorruptedFrameException("Frame doesn't fit into " + bufferSize + " bytes");
+                }
+                if (channel.read(buffer) == -1) {
+                    break;
+                }
+                buffer.flip();
+                ByteBuffer frame;
+                while (channel.isOpen() && (frame = frameDecoder.decode(buffer)) != null) {
+                    if (frame.hasRemaining()) {
+                        final byte[] bytes = new byte[frame.remaining()];
+                        frame.get(bytes);
+                        processMessage(session, new String(bytes));
+                    }
+                }
+                buffer.compact();
+            }
+        } catch (IOException e) {
+            if (channel.isOpen()) {
+                System.err.println("Failed to read from client: " + session.remoteAddress);
+            }
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    private void processMessage(Session session, String message) {
+        if (message.equals(EXIT_CODE)) {
+            closeSession(session);
+        } else if (message.startsWith(SUBSCRIBE_COMMAND + " ")) {
+            final String topic = message.substring(SUBSCRIBE_COMMAND.length()).trim();
+            topics.subscribe(topic, session);
+            send(session, encode(format("[System]: subscribed to #%s", topic)));
+        } else if (message.startsWith(UNSUBSCRIBE_COMMAND + " ")) {
+            final String topic = message.substring(UNSUBSCRIBE_COMMAND.length()).trim();
+            topics.unsubscribe(topic, session);
+            send(session, encode(format("[System]: unsubscribed from #%s", topic)));
+        } else if (message.startsWith(PUBLISH_COMMAND + " ")) {
+            final String[] parts = message.substring(PUBLISH_COMMAND.length()).trim().split(" ", 2);
+            if (parts.length < 2 || parts[0].isEmpty()) {
+                send(session, encode("[System]: usage " + PUBLISH_COMMAND + " <topic> <message>"));
+            } else {
+                publish(parts[0], format("[#%s][%s]: %s", parts[0], session.remoteAddress, parts[1]));
+            }
+        } else {
+            broadcast(format("[%s]: %s", session.remoteAddress, message));
+        }
+    }
+
+    private void broadcast(String message) {
+        publish(DEFAULT_TOPIC, message);
+    }
+
+    // sender's thread queues the frame for every recipient, their writer threads write it
+    private void publish(String topic, String message) {
+        final ByteBuffer frame = encode(message);
+        for (Session session : topics.subscribers(topic)) {
+            send(session, frame.duplicate());
+        }
+    }
+
+    private ByteBuffer encode(String message) {
+        return frameEncoder.encode(wrap(message.getBytes()));
+    }
+
+    private void send(Session session, ByteBuffer frame) {
+        boolean slow = false;
+        long queued;
+        // ReentrantLock instead of synchronized: it doesn't pin virtual thread to its carrier
+        session.lock.lock();
+        try {
+            if (session.closed) {
+                return;
+            }
+            if (session.queuedBytes + frame.remaining() > highWatermark) {
+                switch (slowConsumerPolicy) {
+                    case DISCONNECT -> slow = true;
+                    case DROP_NEWEST -> {
+                        return;
+                    }
+                    case DROP_OLDEST -> {
+                        while (!session.outbound.isEmpty() && session.queuedBytes + frame.remaining() > highWatermark) {
+                            session.queuedBytes -= session.outbound.poll().remaining();
+                        }
+                    }
+                }
+            }
+            if (!slow) {
+                session.outbound.add(frame);
+                session.queuedBytes += frame.remaining();
+                session.pending.signal();
+            }
+            queued = session.queuedBytes;
+        } finally {
+            session.lock.unlock();
+        }
+        // closed without holding the lock: closing broadcasts, which takes the locks of the others
+        if (slow) {
+            System.err.printf("Slow consumer: [%s] has %d bytes queued%n", session.remoteAddress, queued);
+            closeSession(session);
+        }
+    }
+
+    // writer thread of the connection: blocks on its own socket only, till the session is closed
+    private void write(Session session) {
+        try {
+            while (true) {
+                final ByteBuffer frame;
+                session.lock.lock();
+                try {
+                    while (session.outbound.isEmpty() && !session.closed) {
+                        session.pending.awaitUninterruptibly();
+                    }
+                    if (session.closed) {
+                        return;
+                    }
+                    frame = session.outbound.poll();
+                    session.queuedBytes -= frame.remaining();
+                } finally {
+                    session.lock.unlock();
+                }
+                while (frame.hasRemaining()) {
+                    session.channel.write(frame);
+                }
+            }
+        } catch (IOException e) {
+            closeSession(session);
+        }
+    }
+
+    private void closeSession(Session session) {
+        if (!sessions.remove(session)) {
+            return;
+        }
+        // before leaving the topics, so a concurrent subscribe undoes itself (see TopicRegistry)
+        session.lock.lock();
+        try {
+            session.closed = true;
+            session.outbound.clear();
+            session.pending.signal();
+        } finally {
+            session.lock.unlock();
+        }
+        topics.unsubscribeAll(session);
+        try {
+            session.channel.close();
+        } catch (IOException e) {
+            System.err.printf("Error closing connection: [%s]", session.remoteAddress);
+        }
+        if (announceConnections) {
+            // own thread: the caller may be in the middle of somebody else's publish (slow consumer closed by send)
+            threadFactory.newThread(() -> broadcast("[System]: " + session.remoteAddress + " disconnected.")).start();
+            System.out.printf("Client disconnected: [%s]%n", session.remoteAddress);
+        }
+    }
+
+    private static final class Session implements TopicRegistry.Subscriber {
+        private final SocketChannel channel;
+        // guards the outbound queue & closed flag, the writer waits for frames on pending
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition pending = lock.newCondition();
+        private final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+        private long queuedBytes;
+        private final Set<String> topics = ConcurrentHashMap.newKeySet();
+        private volatile SocketAddress remoteAddress;
+        private volatile boolean closed;
+
+        private Session(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public Set<String> topics() {
+            return topics;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+    }
+
+    public static void main(String[] args) {
+        new ThreadPerConnectionServer(ServerConfig.builder().port(8020).build()).startServer();
+    }
+}
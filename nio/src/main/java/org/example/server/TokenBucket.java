@@ -0,0 +1,50 @@
+package org.example.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket in a single atomic: the time the bucket would be full again ("theoretical arrival
+ * time" of the generic cell rate algorithm). Taking n tokens moves it n intervals ahead, refill is just time
+ * passing, so there is no refill thread & no lock: one CAS per acquire, shared safely by any threads
+ * (a connection's worker, or all workers for the global bucket).
+ */
+final class TokenBucket {
+    private final RateLimit limit;
+    // nanoTime based, far in the past: a new bucket is full
+    private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+
+    TokenBucket(RateLimit limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * @return 0 if the tokens are taken, otherwise nanos until they will be available (nothing is taken)
+     */
+    long tryAcquire(int tokens) {
+        final RateLimit.Settings settings = limit.settings();
+        if (settings.unlimited()) {
+            return 0;
+        }
+        final long now = System.nanoTime();
+        while (true) {
+            final long current = fullAt.get();
+            final long next = Math.max(current, now) + tokens * settings.intervalNanos();
+            // more than burst ahead of now: not enough tokens yet
+            final long wait = next - now - settings.burstNanos();
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    // give back tokens taken for nothing (e.g. the other bucket said no)
+    void refund(int tokens) {
+        final RateLimit.Settings settings = limit.settings();
+        if (!settings.unlimited()) {
+            fullAt.addAndGet(-tokens * settings.intervalNanos());
+        }
+    }
+}
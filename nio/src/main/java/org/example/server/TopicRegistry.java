@@ -0,0 +1,100 @@
+package org.example.server;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * Topic (room) -> subscribers index, so publishing costs O(subscribers of topic) instead of O(all clients).
+ * Safe for concurrent subscribe/publish from worker & pool threads, also with the close of the subscriber.
+ * <p>
+ * Subscribers of a topic are kept as copy-on-write array: subscriptions change rarely, while publishing
+ * iterates them for every message & must not allocate (no iterator, no snapshot copy).
+ */
+final class TopicRegistry<S extends TopicRegistry.Subscriber> {
+    private final Map<String, S[]> subscribers = new ConcurrentHashMap<>();
+    private final IntFunction<S[]> arrayFactory;
+    private final S[] none;
+
+    TopicRegistry(IntFunction<S[]> arrayFactory) {
+        this.arrayFactory = arrayFactory;
+        this.none = arrayFactory.apply(0);
+    }
+
+    void subscribe(String topic, S connection) {
+        // compute is atomic per topic, concurrent (un)subscribers of the same topic don't lose each other
+        subscribers.compute(topic, (t, current) -> {
+            if (current == null) {
+                final S[] single = arrayFactory.apply(1);
+                single[0] = connection;
+                return single;
+            }
+            if (indexOf(current, connection) >= 0) {
+                return current;
+            }
+            final S[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = connection;
+            return updated;
+        });
+        connection.topics().add(topic);
+        // closing marks the connection closed before unsubscribeAll(): either that sees the topic or this sees
+        // the mark, a closed connection doesn't stay in the topic
+        if (connection.isClosed()) {
+            unsubscribe(topic, connection);
+        }
+    }
+
+    void unsubscribe(String topic, S connection) {
+        connection.topics().remove(topic);
+        // atomically drop topic without subscribers, so many short-living rooms don't leak
+        subscribers.computeIfPresent(topic, (t, current) -> {
+            final int index = indexOf(current, connection);
+            if (index < 0) {
+                return current;
+            }
+            if (current.length == 1) {
+                return null;
+            }
+            final S[] updated = arrayFactory.apply(current.length - 1);
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            return updated;
+        });
+    }
+
+    void unsubscribeAll(S connection) {
+        for (String topic : connection.topics()) {
+            unsubscribe(topic, connection);
+        }
+    }
+
+    /**
+     * Snapshot of the topic subscribers, shared by all callers - must not be modified.
+     */
+    S[] subscribers(String topic) {
+        return subscribers.getOrDefault(topic, none);
+    }
+
+    int topicCount() {
+        return subscribers.size();
+    }
+
+    private static <S> int indexOf(S[] subscribers, S connection) {
+        for (int i = 0; i < subscribers.length; i++) {
+            if (subscribers[i] == connection) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    interface Subscriber {
+        // topics the client is subscribed to (to unsubscribe on close)
+        Set<String> topics();
+
+        // set before the connection is unsubscribed from all topics
+        boolean isClosed();
+    }
+}
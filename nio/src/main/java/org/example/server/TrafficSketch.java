@@ -0,0 +1,51 @@
+package org.example.server;
+
+import org.example.server.metrics.HeavyHitters;
+
+/**
+ * Inbound bytes & messages per client host seen by one event loop: Count-Min sketches with their top K
+ * ({@link HeavyHitters}), so a flooding client shows up in constant memory however many clients there are.
+ * Hosts rather than connections: a flood spread over many connections of one client adds up.
+ * <p>
+ * Updated by the loop thread on every read & decoded frame. Counts are halved every decay interval, so they
+ * reflect recent traffic (about two intervals' worth).
+ */
+final class TrafficSketch {
+    private final HeavyHitters<String> bytes;
+    private final HeavyHitters<String> messages;
+
+    TrafficSketch(int width, int depth, int topK) {
+        this.bytes = new HeavyHitters<>(width, depth, topK);
+        this.messages = new HeavyHitters<>(width, depth, topK);
+    }
+
+    /**
+     * @return recent bytes of the connection's host (estimate, this loop only)
+     */
+    long onRead(Connection connection, int bytesRead) {
+        return bytes.add(connection.host(), connection.hostHash(), bytesRead);
+    }
+
+    void onMessage(Connection connection) {
+        messages.add(connection.host(), connection.hostHash(), 1);
+    }
+
+    void decay() {
+        bytes.decay();
+        messages.decay();
+    }
+
+    // top K visible to the metrics readers
+    void publish() {
+        bytes.publish();
+        messages.publish();
+    }
+
+    HeavyHitters<String> bytes() {
+        return bytes;
+    }
+
+    HeavyHitters<String> messages() {
+        return messages;
+    }
+}
@@ -0,0 +1,348 @@
+package org.example.server.bench;
+
+import org.example.server.ServerConfig;
+import org.example.server.SimpleServer;
+import org.example.server.cluster.ClusterNode;
+import org.example.server.codec.DelimiterFrameDecoder;
+import org.example.server.codec.DelimiterFrameEncoder;
+import org.example.server.codec.FrameDecoder;
+import org.example.server.codec.FrameEncoder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.lang.String.format;
+import static java.nio.ByteBuffer.wrap;
+import static java.nio.channels.SelectionKey.OP_READ;
+
+/**
+ * Throughput of a {@link SimpleServer} cluster vs its node count: every node is a separate JVM process on this
+ * host (the cluster mesh over loopback), the same number of clients is spread evenly over the nodes
+ * & one client per node publishes at fixed rate, so every client has to receive the messages of all nodes.
+ * <p>
+ * Reports delivered messages per second (expected: sent * connections), fan-out latency percentiles
+ * (publish -> receive, across nodes included) & CPU time of the node processes, which gives throughput per
+ * core-second. All nodes share the cores of one host, so the numbers show the relay overhead, not the scaling
+ * of real separate machines.
+ * <p>
+ * Usage: {@code ClusterBenchmark [nodes=1,2,3,4] [connections=1000] [seconds=10] [messagesPerSecondPerNode=50]}.
+ */
+public final class ClusterBenchmark {
+    private static final int[] DEFAULT_NODES = {1, 2, 3, 4};
+    private static final int DEFAULT_CONNECTIONS = 1_000;
+    private static final int DEFAULT_DURATION_SECONDS = 10;
+    private static final int DEFAULT_RATE = 50;
+    private static final int BASE_PORT = 9200;
+    // cluster port of a node is its client port + offset
+    private static final int CLUSTER_PORT_OFFSET = 100;
+    private static final int READER_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private static final long DRAIN_MILLIS = 2_000;
+    private static final long READY_TIMEOUT_MILLIS = 30_000;
+    private static final String READY = "READY";
+    private static final String NODE_COMMAND = "node";
+    private static final String BENCH_PREFIX = "bench ";
+    private static final long EPOCH = System.nanoTime();
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals(NODE_COMMAND)) {
+            runNode(Integer.parseInt(args[1]), Integer.parseInt(args[2]), args.length > 3 ? args[3] : null);
+            return;
+        }
+        final int[] nodes = args.length > 0
+                ? Arrays.stream(args[0].split(",")).mapToInt(Integer::parseInt).toArray()
+                : DEFAULT_NODES;
+        final int connections = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CONNECTIONS;
+        final int durationSeconds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DURATION_SECONDS;
+        final int rate = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_RATE;
+
+        int basePort = BASE_PORT;
+        for (int count : nodes) {
+            System.out.println(run(count, connections, durationSeconds, rate, basePort));
+            // fresh ports for every run, the previous ones may still be in TIME_WAIT
+            basePort += 2 * CLUSTER_PORT_OFFSET;
+        }
+    }
+
+    // child process: one node, "READY" on stdout once the mesh is formed, runs till the parent kills it
+    private static void runNode(int port, int clusterPort, String peers) throws InterruptedException {
+        final SimpleServer server = new SimpleServer(ServerConfig.builder()
+                .port(port)
+                .clusterPort(clusterPort)
+                .clusterPeers(peers)
+                .announceConnections(false)
+                .jmxEnabled(false)
+                // benchmark readers may lag behind without being taken for slow consumers
+                .highWatermark(64 * 1024 * 1024)
+                .lowWatermark(32 * 1024 * 1024)
+                .build());
+        final Thread serverThread = new Thread(server::startServer, "server");
+        serverThread.start();
+        final ClusterNode cluster = server.getCluster();
+        while (cluster.connectedPeers() < cluster.peerCount()) {
+            Thread.sleep(50);
+        }
+        System.out.println(READY);
+        serverThread.join();
+    }
+
+    private static String run(int nodeCount, int connections, int durationSeconds, int rate, int basePort)
+            throws IOException, InterruptedException {
+        final List<Process> nodes = new ArrayList<>();
+        final Clients clients = new Clients(nodeCount, basePort);
+        try {
+            for (int i = 0; i < nodeCount; i++) {
+                nodes.add(startNode(i, nodeCount, basePort));
+            }
+            for (Process node : nodes) {
+                awaitReady(node);
+            }
+            clients.connect(connections);
+            // let the nodes finish registration of the last clients
+            Thread.sleep(1_000);
+
+            final long cpuBefore = cpuNanos(nodes);
+            final long sent = clients.publish(rate, durationSeconds);
+            Thread.sleep(DRAIN_MILLIS);
+            final double cpuSeconds = (cpuNanos(nodes) - cpuBefore) / 1e9;
+            final LatencyHistogram latency = clients.stop();
+
+            return format("nodes=%d connections=%d sent=%d delivered=%d expected=%d throughput=%.0f msg/s " +
+                            "nodeCpu=%.1fs perCoreSecond=%.0f msg p50=%dus p99=%dus max=%dus",
+                    nodeCount, connections, sent, latency.totalCount(), sent * connections,
+                    (double) latency.totalCount() / durationSeconds,
+                    cpuSeconds, latency.totalCount() / Math.max(cpuSeconds, 0.001),
+                    latency.percentile(50), latency.percentile(99), latency.max());
+        } finally {
+            clients.close();
+            for (Process node : nodes) {
+                node.destroy();
+                node.waitFor();
+            }
+        }
+    }
+
+    // same JVM & classpath as this one, every node lists all the others as peers
+    private static Process startNode(int index, int nodeCount, int basePort) throws IOException {
+        final List<String> peers = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            if (i != index) {
+                peers.add("localhost:" + (basePort + CLUSTER_PORT_OFFSET + i));
+            }
+        }
+        final List<String> command = new ArrayList<>(List.of(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-cp", System.getProperty("java.class.path"),
+                ClusterBenchmark.class.getName(), NODE_COMMAND,
+                String.valueOf(basePort + index),
+                String.valueOf(basePort + CLUSTER_PORT_OFFSET + index)));
+        if (!peers.isEmpty()) {
+            command.add(String.join(",", peers));
+        }
+        return new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    private static void awaitReady(Process node) throws IOException {
+        final BufferedReader out = new BufferedReader(new InputStreamReader(node.getInputStream()));
+        final long deadline = System.currentTimeMillis() + READY_TIMEOUT_MILLIS;
+        String line;
+        while ((line = out.readLine()) != null) {
+            if (line.equals(READY)) {
+                // keep draining the node's console, a full pipe would block it
+                final Thread drain = new Thread(() -> out.lines().forEach(ignored -> { }), "node-out");
+                drain.setDaemon(true);
+                drain.start();
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                break;
+            }
+        }
+        throw new IOException("Cluster node didn't start: " + node);
+    }
+
+    private static long cpuNanos(List<Process> nodes) {
+        long total = 0;
+        for (Process node : nodes) {
+            total += node.info().totalCpuDuration().map(Duration::toNanos).orElse(0L);
+        }
+        return total;
+    }
+
+    /**
+     * Clients spread round-robin over the nodes, served by a few selector threads. Client i % nodes of every
+     * node publishes.
+     */
+    private static final class Clients {
+        private final int nodeCount;
+        private final int basePort;
+        private final FrameEncoder encoder = DelimiterFrameEncoder.lines();
+        private final Reader[] readers = new Reader[READER_THREADS];
+        private SocketChannel[] channels = new SocketChannel[0];
+
+        private Clients(int nodeCount, int basePort) {
+            this.nodeCount = nodeCount;
+            this.basePort = basePort;
+        }
+
+        private void connect(int count) throws IOException {
+            channels = new SocketChannel[count];
+            for (int i = 0; i < readers.length; i++) {
+                readers[i] = new Reader(Selector.open());
+            }
+            for (int i = 0; i < count; i++) {
+                final SocketChannel channel = SocketChannel.open(
+                        new InetSocketAddress("127.0.0.1", basePort + i % nodeCount));
+                channel.configureBlocking(false);
+                channel.register(readers[i % readers.length].selector, OP_READ);
+                channels[i] = channel;
+            }
+            for (Reader reader : readers) {
+                reader.thread.start();
+            }
+        }
+
+        // one message per node per interval, scheduled send time is the timestamp (open model)
+        private long publish(int rate, int durationSeconds) throws IOException {
+            final long interval = 1_000_000_000L / rate;
+            final long start = System.nanoTime();
+            final long end = start + durationSeconds * 1_000_000_000L;
+            long sent = 0;
+            for (long next = start; next < end; next += interval) {
+                long now;
+                while ((now = System.nanoTime()) < next) {
+                    LockSupport.parkNanos(next - now);
+                }
+                for (int node = 0; node < nodeCount && node < channels.length; node++) {
+                    final ByteBuffer frame = encoder.encode(wrap((BENCH_PREFIX + (next - EPOCH)).getBytes()));
+                    while (frame.hasRemaining()) {
+                        channels[node].write(frame);
+                    }
+                    sent++;
+                }
+            }
+            return sent;
+        }
+
+        private LatencyHistogram stop() throws InterruptedException {
+            final LatencyHistogram total = new LatencyHistogram();
+            for (Reader reader : readers) {
+                if (reader != null) {
+                    reader.running = false;
+                    reader.selector.wakeup();
+                    reader.thread.join();
+                    total.add(reader.latency);
+                }
+            }
+            return total;
+        }
+
+        private void close() {
+            for (Reader reader : readers) {
+                if (reader != null && reader.running) {
+                    reader.running = false;
+                    reader.selector.wakeup();
+                }
+            }
+            for (SocketChannel channel : channels) {
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                        // nothing to do with it in benchmark
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Reader implements Runnable {
+        private final Selector selector;
+        private final Thread thread = new Thread(this, "bench-reader");
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final FrameDecoder decoder = DelimiterFrameDecoder.lines(16 * 1024);
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        private volatile boolean running = true;
+
+        private Reader(Selector selector) {
+            this.selector = selector;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select(100);
+                    final Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                    while (iterator.hasNext()) {
+                        final SelectionKey key = iterator.next();
+                        iterator.remove();
+                        if (key.isValid() && key.isReadable()) {
+                            read(key);
+                        }
+                    }
+                }
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Benchmark reader failed: " + e.getMessage());
+            }
+        }
+
+        private void read(SelectionKey key) throws IOException {
+            final SocketChannel channel = (SocketChannel) key.channel();
+            buffer.clear();
+            final ByteBuffer partial = (ByteBuffer) key.attachment();
+            if (partial != null) {
+                buffer.put(partial);
+                key.attach(null);
+            }
+            if (channel.read(buffer) == -1) {
+                key.cancel();
+                return;
+            }
+            buffer.flip();
+            ByteBuffer frame;
+            while ((frame = decoder.decode(buffer)) != null) {
+                final long sentAt = parseTimestamp(frame);
+                if (sentAt > 0) {
+                    latency.record((System.nanoTime() - EPOCH - sentAt) / 1_000);
+                }
+            }
+            if (buffer.hasRemaining()) {
+                key.attach(ByteBuffer.allocate(buffer.remaining()).put(buffer).flip());
+            }
+        }
+
+        // "[address]: bench <nanos>" -> nanos
+        private static long parseTimestamp(ByteBuffer frame) {
+            long value = 0;
+            long multiplier = 1;
+            for (int i = frame.limit() - 1; i >= frame.position(); i--) {
+                final byte b = frame.get(i);
+                if (b == ' ') {
+                    return multiplier > 1 ? value : -1;
+                }
+                if (b < '0' || b > '9') {
+                    return -1;
+                }
+                value += (b - '0') * multiplier;
+                multiplier *= 10;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,526 @@
+package org.example.server.bench;
+
+import org.example.server.codec.DelimiterFrameDecoder;
+import org.example.server.codec.DelimiterFrameEncoder;
+import org.example.server.codec.FrameDecoder;
+import org.example.server.codec.FrameEncoder;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static java.lang.String.format;
+import static java.nio.ByteBuffer.wrap;
+import static java.nio.channels.SelectionKey.OP_CONNECT;
+import static java.nio.channels.SelectionKey.OP_READ;
+import static java.nio.channels.SelectionKey.OP_WRITE;
+import static org.example.server.SimpleServer.PING_COMMAND;
+import static org.example.server.SimpleServer.PONG_COMMAND;
+
+/**
+ * Load generator for a running chat server: {@link org.example.server.SimpleClient} protocol & framing,
+ * but thousands of non-blocking connections served by a few selector threads instead of one interactive client.
+ * <p>
+ * Some of the connections publish at fixed total rate (open model: send times are scheduled in advance,
+ * a late send still carries its intended time, so a stalled server can't hide latency - no coordinated omission).
+ * Every message embeds its intended send time & every connection receives the broadcast,
+ * so each delivery is one end-to-end latency sample (publish -> receive).
+ * <p>
+ * Progress goes to stderr every second, final result is one line on stdout ({@code format=json} or {@code text}).
+ * <p>
+ * Usage: {@code LoadGenerator [host=localhost] [port=8020] [connections=1000] [senders=1] [rate=100]
+ * [duration=10] [warmup=2] [size=0] [connectRate=5000] [selectors=cores/2] [format=json]}
+ */
+public final class LoadGenerator {
+    private static final String LOAD_PREFIX = "load ";
+    // loopback has ~28k ephemeral ports per source address, so clients are spread over 127.0.0.x
+    private static final int CONNECTIONS_PER_ADDRESS = 20_000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long CONNECT_TIMEOUT_SECONDS = 30;
+    private static final long DRAIN_MILLIS = 2_000;
+    // timestamps are sent relative to it (nanoTime itself may be negative)
+    private static final long EPOCH = System.nanoTime();
+
+    private final Options options;
+    private final Worker[] workers;
+    private final CountDownLatch connected;
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    // set once every connection is up, relative to EPOCH
+    private volatile long startNanos = Long.MAX_VALUE;
+    private volatile long measureFromNanos = Long.MAX_VALUE;
+    private volatile long endNanos = Long.MAX_VALUE;
+
+    public LoadGenerator(Options options) {
+        this.options = options;
+        this.workers = new Worker[options.selectors];
+        this.connected = new CountDownLatch(options.connections);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final Options options = Options.parse(args);
+        final Result result = new LoadGenerator(options).run();
+        System.out.println("json".equals(options.format) ? result.toJson() : result.toText());
+    }
+
+    public Result run() throws IOException, InterruptedException {
+        final InetSocketAddress server = new InetSocketAddress(options.host, options.port);
+        final boolean loopback = server.getAddress().isLoopbackAddress();
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(i, Selector.open());
+        }
+        // round-robin over workers, first connections are the senders
+        for (int i = 0; i < options.connections; i++) {
+            final InetSocketAddress local = loopback
+                    ? new InetSocketAddress(InetAddress.getByName("127.0.0." + (1 + i / CONNECTIONS_PER_ADDRESS)), 0)
+                    : null;
+            workers[i % workers.length].clients.add(new Client(server, local, i < options.senders));
+        }
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+
+        final long connectStart = System.nanoTime();
+        if (!connected.await(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            System.err.printf("Only %d of %d connections are established, going on with them%n",
+                    options.connections - connected.getCount(), options.connections);
+        }
+        final long connectMillis = (System.nanoTime() - connectStart) / 1_000_000;
+
+        final long start = System.nanoTime() - EPOCH;
+        measureFromNanos = start + options.warmupSeconds * 1_000_000_000L;
+        endNanos = measureFromNanos + options.durationSeconds * 1_000_000_000L;
+        startNanos = start;
+        for (Worker worker : workers) {
+            worker.selector.wakeup();
+        }
+
+        long lastSent = 0;
+        long lastDelivered = 0;
+        for (int second = 1; System.nanoTime() - EPOCH < endNanos + DRAIN_MILLIS * 1_000_000; second++) {
+            Thread.sleep(1_000);
+            final long sentNow = sent.sum();
+            final long deliveredNow = delivered.sum();
+            System.err.printf("t=%ds sent=%d/s delivered=%d/s errors=%d%n",
+                    second, sentNow - lastSent, deliveredNow - lastDelivered, errors.sum());
+            lastSent = sentNow;
+            lastDelivered = deliveredNow;
+        }
+
+        final LatencyHistogram latency = new LatencyHistogram();
+        long measuredSent = 0;
+        int open = 0;
+        int silent = 0;
+        for (Worker worker : workers) {
+            worker.running = false;
+            worker.selector.wakeup();
+            worker.thread.join();
+            latency.add(worker.latency);
+            measuredSent += worker.measuredSent;
+            open += worker.open;
+            silent += worker.silent;
+        }
+        return new Result(options, open, silent, connectMillis, measuredSent, latency, errors.sum());
+    }
+
+    /**
+     * One selector thread: connects its share of clients, publishes for its senders on schedule
+     * & reads broadcasts of all its clients.
+     */
+    private final class Worker implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final List<Client> clients = new ArrayList<>();
+        private int connectIndex;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final FrameDecoder decoder = DelimiterFrameDecoder.lines(BUFFER_SIZE);
+        private final FrameEncoder encoder = DelimiterFrameEncoder.lines();
+        // shared by all channels of this worker, partial frame is moved to the client
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private Client[] senders = new Client[0];
+        private int nextSender;
+        private long measuredSent;
+        private int open;
+        private int silent;
+        private volatile boolean running = true;
+
+        private Worker(int index, Selector selector) {
+            this.selector = selector;
+            this.thread = new Thread(this, "load-" + index);
+        }
+
+        @Override
+        public void run() {
+            try {
+                prepareSenders();
+                // connections are opened at limited rate, so server's accept backlog doesn't overflow
+                final long connectInterval = options.connectRate == 0
+                        ? 0
+                        : 1_000_000_000L * options.selectors / options.connectRate;
+                long nextConnect = System.nanoTime() - EPOCH;
+                long interval = 0;
+                long next = 0;
+                while (running) {
+                    final long now = System.nanoTime() - EPOCH;
+                    while (connectIndex < clients.size() && nextConnect <= now) {
+                        connect(clients.get(connectIndex++));
+                        nextConnect += connectInterval;
+                    }
+                    if (interval == 0 && now >= startNanos && senders.length > 0) {
+                        // this worker's share of the total rate
+                        interval = 1_000_000_000L * options.senders / (options.rate * senders.length);
+                        next = startNanos;
+                    }
+                    // catch up on every send that is due (late ones still carry intended time)
+                    while (interval > 0 && next <= now && next < endNanos) {
+                        publish(senders[nextSender], next);
+                        nextSender = (nextSender + 1) % senders.length;
+                        next += interval;
+                    }
+                    long waitNanos = interval > 0 && next < endNanos ? next - now : 100_000_000L;
+                    if (connectIndex < clients.size()) {
+                        waitNanos = Math.min(waitNanos, nextConnect - now);
+                    }
+                    selector.select(Math.max(1, waitNanos / 1_000_000));
+                    final Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                    while (iterator.hasNext()) {
+                        final SelectionKey key = iterator.next();
+                        iterator.remove();
+                        handle(key);
+                    }
+                }
+                silent = silent();
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Load worker failed: " + e.getMessage());
+            }
+        }
+
+        private void prepareSenders() {
+            senders = clients.stream().filter(client -> client.sender).toArray(Client[]::new);
+        }
+
+        private void connect(Client client) throws IOException {
+            final SocketChannel channel = SocketChannel.open();
+            client.channel = channel;
+            try {
+                channel.configureBlocking(false);
+                if (client.local != null) {
+                    channel.bind(client.local);
+                }
+                client.key = channel.register(selector, OP_CONNECT, client);
+                if (channel.connect(client.remote)) {
+                    onConnected(client);
+                }
+            } catch (IOException e) {
+                fail(client, e);
+            }
+        }
+
+        // connected, but never got anything (e.g. dropped from server's accept backlog or not subscribed)
+        private int silent() {
+            int silent = 0;
+            for (Client client : clients) {
+                if (client.connected && client.channel.isOpen() && !client.received) {
+                    silent++;
+                }
+            }
+            return silent;
+        }
+
+        private void handle(SelectionKey key) {
+            final Client client = (Client) key.attachment();
+            try {
+                if (key.isConnectable() && client.channel.finishConnect()) {
+                    onConnected(client);
+                    return;
+                }
+                if (key.isReadable()) {
+                    read(client);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    write(client);
+                }
+            } catch (IOException e) {
+                fail(client, e);
+            }
+        }
+
+        private void onConnected(Client client) {
+            client.connected = true;
+            client.key.interestOps(OP_READ);
+            open++;
+            connected.countDown();
+        }
+
+        // "load [padding ]<nanos>", server prefixes it with sender's address
+        private void publish(Client client, long intendedNanos) {
+            if (!client.channel.isOpen()) {
+                return;
+            }
+            final String message = options.padding.isEmpty()
+                    ? LOAD_PREFIX + intendedNanos
+                    : LOAD_PREFIX + options.padding + " " + intendedNanos;
+            client.outbound.add(encoder.encode(wrap(message.getBytes())));
+            sent.increment();
+            if (intendedNanos >= measureFromNanos) {
+                measuredSent++;
+            }
+            try {
+                write(client);
+            } catch (IOException e) {
+                fail(client, e);
+            }
+        }
+
+        // never blocks: what doesn't fit into socket buffer waits for OP_WRITE (& keeps its timestamp)
+        private void write(Client client) throws IOException {
+            ByteBuffer frame;
+            while ((frame = client.outbound.peek()) != null) {
+                client.channel.write(frame);
+                if (frame.hasRemaining()) {
+                    client.key.interestOps(OP_READ | OP_WRITE);
+                    return;
+                }
+                client.outbound.poll();
+            }
+            client.key.interestOps(OP_READ);
+        }
+
+        private void read(Client client) throws IOException {
+            buffer.clear();
+            if (client.partial != null) {
+                buffer.put(client.partial);
+                client.partial = null;
+            }
+            if (client.channel.read(buffer) == -1) {
+                throw new IOException("Connection closed by server");
+            }
+            buffer.flip();
+            ByteBuffer frame;
+            while ((frame = decoder.decode(buffer)) != null) {
+                onFrame(client, frame);
+            }
+            if (buffer.hasRemaining()) {
+                client.partial = ByteBuffer.allocate(buffer.remaining()).put(buffer).flip();
+            }
+        }
+
+        private void onFrame(Client client, ByteBuffer frame) throws IOException {
+            final long now = System.nanoTime() - EPOCH;
+            if (startsWith(frame, PING_COMMAND)) {
+                // heartbeat: echo timestamp back like SimpleClient does
+                final byte[] bytes = new byte[frame.remaining()];
+                frame.get(bytes);
+                final String pong = PONG_COMMAND + new String(bytes).substring(PING_COMMAND.length());
+                client.outbound.add(encoder.encode(wrap(pong.getBytes())));
+                write(client);
+                return;
+            }
+            final long sentAt = parseTimestamp(frame);
+            if (sentAt >= 0) {
+                client.received = true;
+                delivered.increment();
+                if (sentAt >= measureFromNanos && sentAt < endNanos) {
+                    latency.record((now - sentAt) / 1_000);
+                }
+            }
+        }
+
+        private void fail(Client client, IOException e) {
+            if (!client.channel.isOpen()) {
+                return;
+            }
+            errors.increment();
+            if (running) {
+                System.err.printf("Load connection %s failed: %s%n", client.remote, e.getMessage());
+            }
+            try {
+                client.channel.close();
+            } catch (IOException ignored) {
+                // nothing to do with it in load test
+            }
+            if (client.connected) {
+                open--;
+            } else {
+                // never connected, don't keep the others waiting for it
+                connected.countDown();
+            }
+        }
+    }
+
+    private static boolean startsWith(ByteBuffer frame, String prefix) {
+        if (frame.remaining() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (frame.get(frame.position() + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // "[address]: load ... <nanos>" -> nanos, parsed from bytes to keep the reader cheap (-1 if it isn't load message)
+    private static long parseTimestamp(ByteBuffer frame) {
+        long value = 0;
+        long multiplier = 1;
+        for (int i = frame.limit() - 1; i >= frame.position(); i--) {
+            final byte b = frame.get(i);
+            if (b == ' ') {
+                return multiplier > 1 && containsLoadPrefix(frame, i) ? value : -1;
+            }
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value += (b - '0') * multiplier;
+            multiplier *= 10;
+        }
+        return -1;
+    }
+
+    private static boolean containsLoadPrefix(ByteBuffer frame, int end) {
+        outer:
+        for (int i = frame.position(); i + LOAD_PREFIX.length() <= end + 1; i++) {
+            for (int j = 0; j < LOAD_PREFIX.length(); j++) {
+                if (frame.get(i + j) != LOAD_PREFIX.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static final class Client {
+        private final InetSocketAddress remote;
+        // source address to bind to (null - any)
+        private final InetSocketAddress local;
+        private final boolean sender;
+        private final Queue<ByteBuffer> outbound = new ArrayDeque<>();
+        private SocketChannel channel;
+        private SelectionKey key;
+        private boolean connected;
+        private boolean received;
+        // bytes of incomplete frame carried to the next read
+        private ByteBuffer partial;
+
+        private Client(InetSocketAddress remote, InetSocketAddress local, boolean sender) {
+            this.remote = remote;
+            this.local = local;
+            this.sender = sender;
+        }
+    }
+
+    public static final class Options {
+        private String host = "localhost";
+        private int port = 8020;
+        private int connections = 1_000;
+        private int senders = 1;
+        // messages per second, all senders together
+        private int rate = 100;
+        private int durationSeconds = 10;
+        // sent but not measured (JIT, connection buffers, ...)
+        private int warmupSeconds = 2;
+        private String padding = "";
+        // new connections per second, 0 - all at once
+        private int connectRate = 5_000;
+        private int selectors = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        private String format = "json";
+
+        public static Options parse(String[] args) {
+            final Options options = new Options();
+            for (String arg : args) {
+                final String[] pair = arg.split("=", 2);
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("Expected key=value, got: " + arg);
+                }
+                final String value = pair[1];
+                switch (pair[0]) {
+                    case "host" -> options.host = value;
+                    case "port" -> options.port = Integer.parseInt(value);
+                    case "connections" -> options.connections = Integer.parseInt(value);
+                    case "senders" -> options.senders = Integer.parseInt(value);
+                    case "rate" -> options.rate = Integer.parseInt(value);
+                    case "duration" -> options.durationSeconds = Integer.parseInt(value);
+                    case "warmup" -> options.warmupSeconds = Integer.parseInt(value);
+                    case "size" -> options.padding = "x".repeat(Integer.parseInt(value));
+                    case "connectRate" -> options.connectRate = Integer.parseInt(value);
+                    case "selectors" -> options.selectors = Integer.parseInt(value);
+                    case "format" -> options.format = value;
+                    default -> throw new IllegalArgumentException("Unknown option: " + pair[0]);
+                }
+            }
+            if (options.senders < 1 || options.senders > options.connections || options.rate < 1) {
+                throw new IllegalArgumentException("Need 1 <= senders <= connections & rate >= 1");
+            }
+            options.selectors = Math.min(options.selectors, options.connections);
+            return options;
+        }
+    }
+
+    public static final class Result {
+        private final Map<String, Object> values = new LinkedHashMap<>();
+
+        private Result(Options options, int open, int silent, long connectMillis, long sent, LatencyHistogram latency, long errors) {
+            values.put("host", options.host);
+            values.put("port", options.port);
+            values.put("connections", options.connections);
+            values.put("open", open);
+            values.put("silent", silent);
+            values.put("connectMillis", connectMillis);
+            values.put("senders", options.senders);
+            values.put("rate", options.rate);
+            values.put("durationSeconds", options.durationSeconds);
+            values.put("padding", options.padding.length());
+            values.put("sent", sent);
+            // every open connection gets every message back
+            values.put("expected", sent * open);
+            values.put("delivered", latency.totalCount());
+            values.put("throughput", Math.round((double) latency.totalCount() / options.durationSeconds));
+            values.put("p50", latency.percentile(50));
+            values.put("p90", latency.percentile(90));
+            values.put("p99", latency.percentile(99));
+            values.put("p999", latency.percentile(99.9));
+            values.put("max", latency.max());
+            values.put("mean", Math.round(latency.mean()));
+            values.put("errors", errors);
+        }
+
+        public Map<String, Object> values() {
+            return values;
+        }
+
+        // latencies are in microseconds, throughput in deliveries per second
+        public String toJson() {
+            return values.entrySet().stream()
+                    .map(e -> format(e.getValue() instanceof String ? "\"%s\":\"%s\"" : "\"%s\":%s", e.getKey(), e.getValue()))
+                    .collect(Collectors.joining(",", "{", "}"));
+        }
+
+        public String toText() {
+            return values.entrySet().stream()
+                    .map(e -> e.getKey() + "=" + e.getValue())
+                    .collect(Collectors.joining(" "));
+        }
+    }
+}
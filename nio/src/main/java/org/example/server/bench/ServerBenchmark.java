@@ -0,0 +1,303 @@
+package org.example.server.bench;
+
+import org.example.server.ChatServer;
+import org.example.server.ProactorServer;
+import org.example.server.ServerConfig;
+import org.example.server.SimpleServer;
+import org.example.server.ThreadPerConnectionServer;
+import org.example.server.codec.DelimiterFrameDecoder;
+import org.example.server.codec.DelimiterFrameEncoder;
+import org.example.server.codec.FrameDecoder;
+import org.example.server.codec.FrameEncoder;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+import static java.nio.ByteBuffer.wrap;
+import static java.nio.channels.SelectionKey.OP_READ;
+
+/**
+ * Selector + thread pool ({@link SimpleServer}) vs completion handlers ({@link ProactorServer}) vs blocking thread
+ * per connection ({@link ThreadPerConnectionServer}) with N connected clients, one of which publishes to everybody at fixed rate (open model: send time is
+ * scheduled, not driven by responses, so a stalled server can't hide its latency).
+ * <p>
+ * Reports delivered messages per second, fan-out latency percentiles (publish -> receive by every client)
+ * & memory growth of the process (server + same harness for every engine). CPU time of the process during
+ * the run gives throughput per core-second: the harness costs the same for every engine, so the difference
+ * between engines is theirs.
+ * <p>
+ * Usage: {@code ServerBenchmark [connections=1000,10000,50000] [seconds=10] [messagesPerSecond=20]}.
+ * Needs enough file descriptors ({@code ulimit -n}) for 2 * connections.
+ */
+public final class ServerBenchmark {
+    private static final int[] DEFAULT_CONNECTIONS = {1_000, 10_000, 50_000};
+    private static final int DEFAULT_DURATION_SECONDS = 10;
+    private static final int DEFAULT_RATE = 20;
+    private static final int BASE_PORT = 9100;
+    // loopback has ~28k ephemeral ports per source address, so clients are spread over 127.0.0.x
+    private static final int CONNECTIONS_PER_ADDRESS = 20_000;
+    private static final int READER_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private static final long DRAIN_MILLIS = 2_000;
+    private static final String BENCH_PREFIX = "bench ";
+    // timestamps are sent relative to it (nanoTime itself may be negative)
+    private static final long EPOCH = System.nanoTime();
+
+    public static void main(String[] args) throws InterruptedException {
+        final int[] connections = args.length > 0
+                ? Arrays.stream(args[0].split(",")).mapToInt(Integer::parseInt).toArray()
+                : DEFAULT_CONNECTIONS;
+        final int durationSeconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_DURATION_SECONDS;
+        final int rate = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_RATE;
+
+        final Map<String, Function<ServerConfig, ChatServer>> engines = new LinkedHashMap<>();
+        engines.put("selector", SimpleServer::new);
+        engines.put("proactor", ProactorServer::new);
+        engines.put("thread-per-connection", ThreadPerConnectionServer::new);
+
+        int port = BASE_PORT;
+        for (Map.Entry<String, Function<ServerConfig, ChatServer>> engine : engines.entrySet()) {
+            for (int count : connections) {
+                final String result = run(engine.getKey(), engine.getValue(), count, durationSeconds, rate, port++);
+                System.out.println(result);
+            }
+        }
+    }
+
+    private static String run(
+            String engine,
+            Function<ServerConfig, ChatServer> factory,
+            int connections,
+            int durationSeconds,
+            int rate,
+            int port
+    ) throws InterruptedException {
+        final long memoryBefore = usedMemory();
+        final ChatServer server = factory.apply(ServerConfig.builder()
+                .port(port)
+                .maxConnections(connections)
+                .announceConnections(false)
+                .build());
+        final Thread serverThread = new Thread(server::startServer, engine);
+        serverThread.start();
+
+        final Clients clients = new Clients(port);
+        try {
+            clients.connect(connections);
+            // let the server finish registration of the last clients
+            Thread.sleep(1_000);
+
+            final long cpuBefore = cpuNanos();
+            final long sent = clients.publish(rate, durationSeconds);
+            Thread.sleep(DRAIN_MILLIS);
+            final double cpuSeconds = (cpuNanos() - cpuBefore) / 1e9;
+            final long memory = usedMemory() - memoryBefore;
+            final int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+            final LatencyHistogram latency = clients.stop();
+
+            return format("engine=%s connections=%d sent=%d delivered=%d throughput=%.0f msg/s " +
+                            "cpu=%.1fs perCoreSecond=%.0f msg p50=%dus p99=%dus max=%dus memory=%.1fMB threads=%d",
+                    engine, connections, sent, latency.totalCount(),
+                    (double) latency.totalCount() / durationSeconds,
+                    cpuSeconds, latency.totalCount() / Math.max(cpuSeconds, 0.001),
+                    latency.percentile(50), latency.percentile(99), latency.max(),
+                    memory / (1024.0 * 1024), threads);
+        } catch (IOException e) {
+            return format("engine=%s connections=%d failed: %s", engine, connections, e);
+        } finally {
+            clients.close();
+            server.shutdown();
+            serverThread.join(5_000);
+        }
+    }
+
+    // all threads of the process, server & harness
+    private static long cpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+
+    // heap after GC + direct buffers
+    private static long usedMemory() {
+        System.gc();
+        long direct = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            direct += pool.getMemoryUsed();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() + direct;
+    }
+
+    /**
+     * Client side of the benchmark: all channels are served by a few selector threads.
+     */
+    private static final class Clients {
+        private final int port;
+        private final FrameEncoder encoder = DelimiterFrameEncoder.lines();
+        private final Reader[] readers = new Reader[READER_THREADS];
+        private SocketChannel[] channels = new SocketChannel[0];
+
+        private Clients(int port) {
+            this.port = port;
+        }
+
+        private void connect(int count) throws IOException {
+            channels = new SocketChannel[count];
+            for (int i = 0; i < readers.length; i++) {
+                readers[i] = new Reader(Selector.open());
+            }
+            for (int i = 0; i < count; i++) {
+                final SocketChannel channel = SocketChannel.open();
+                channel.bind(new InetSocketAddress("127.0.0." + (1 + i / CONNECTIONS_PER_ADDRESS), 0));
+                channel.connect(new InetSocketAddress("127.0.0.1", port));
+                channel.configureBlocking(false);
+                channel.register(readers[i % readers.length].selector, OP_READ);
+                channels[i] = channel;
+            }
+            for (Reader reader : readers) {
+                reader.thread.start();
+            }
+        }
+
+        // first client publishes (& receives its own message back like everybody else)
+        private long publish(int rate, int durationSeconds) throws IOException {
+            final SocketChannel sender = channels[0];
+            final long interval = 1_000_000_000L / rate;
+            final long start = System.nanoTime();
+            final long end = start + durationSeconds * 1_000_000_000L;
+            long sent = 0;
+            for (long next = start; next < end; next += interval) {
+                long now;
+                while ((now = System.nanoTime()) < next) {
+                    LockSupport.parkNanos(next - now);
+                }
+                // intended send time, not actual one: delay of the sender itself counts as latency too
+                final ByteBuffer frame = encoder.encode(wrap((BENCH_PREFIX + (next - EPOCH)).getBytes()));
+                while (frame.hasRemaining()) {
+                    sender.write(frame);
+                }
+                sent++;
+            }
+            return sent;
+        }
+
+        private LatencyHistogram stop() throws InterruptedException {
+            final LatencyHistogram total = new LatencyHistogram();
+            for (Reader reader : readers) {
+                if (reader != null) {
+                    reader.running = false;
+                    reader.selector.wakeup();
+                    reader.thread.join();
+                    total.add(reader.latency);
+                }
+            }
+            return total;
+        }
+
+        private void close() {
+            for (Reader reader : readers) {
+                if (reader != null && reader.running) {
+                    reader.running = false;
+                    reader.selector.wakeup();
+                }
+            }
+            for (SocketChannel channel : channels) {
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                        // nothing to do with it in benchmark
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Reader implements Runnable {
+        private final Selector selector;
+        private final Thread thread = new Thread(this, "bench-reader");
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final FrameDecoder decoder = DelimiterFrameDecoder.lines(16 * 1024);
+        // shared by all channels of this reader, partial frame is moved to the key attachment
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        private volatile boolean running = true;
+
+        private Reader(Selector selector) {
+            this.selector = selector;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select(100);
+                    final Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                    while (iterator.hasNext()) {
+                        final SelectionKey key = iterator.next();
+                        iterator.remove();
+                        if (key.isValid() && key.isReadable()) {
+                            read(key);
+                        }
+                    }
+                }
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Benchmark reader failed: " + e.getMessage());
+            }
+        }
+
+        private void read(SelectionKey key) throws IOException {
+            final SocketChannel channel = (SocketChannel) key.channel();
+            buffer.clear();
+            final ByteBuffer partial = (ByteBuffer) key.attachment();
+            if (partial != null) {
+                buffer.put(partial);
+                key.attach(null);
+            }
+            if (channel.read(buffer) == -1) {
+                key.cancel();
+                return;
+            }
+            buffer.flip();
+            ByteBuffer frame;
+            while ((frame = decoder.decode(buffer)) != null) {
+                final long sentAt = parseTimestamp(frame);
+                if (sentAt > 0) {
+                    latency.record((System.nanoTime() - EPOCH - sentAt) / 1_000);
+                }
+            }
+            if (buffer.hasRemaining()) {
+                key.attach(ByteBuffer.allocate(buffer.remaining()).put(buffer).flip());
+            }
+        }
+
+        // "[address]: bench <nanos>" -> nanos, parsed from bytes to keep the reader cheap
+        private static long parseTimestamp(ByteBuffer frame) {
+            long value = 0;
+            long multiplier = 1;
+            for (int i = frame.limit() - 1; i >= frame.position(); i--) {
+                final byte b = frame.get(i);
+                if (b == ' ') {
+                    return multiplier > 1 ? value : -1;
+                }
+                if (b < '0' || b > '9') {
+                    return -1;
+                }
+                value += (b - '0') * multiplier;
+                multiplier *= 10;
+            }
+            return -1;
+        }
+    }
+}
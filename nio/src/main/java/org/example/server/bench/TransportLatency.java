@@ -0,0 +1,128 @@
+package org.example.server.bench;
+
+import org.example.server.ServerConfig;
+import org.example.server.SimpleServer;
+import org.example.server.codec.DelimiterFrameDecoder;
+import org.example.server.codec.DelimiterFrameEncoder;
+import org.example.server.codec.FrameDecoder;
+import org.example.server.codec.FrameEncoder;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.lang.String.format;
+import static java.nio.ByteBuffer.wrap;
+
+/**
+ * Round-trip latency of the same {@link SimpleServer} over loopback TCP vs Unix domain socket: the server listens
+ * on both at once, a single client sends a message & waits for its own broadcast back before sending the next one
+ * (closed loop, so the numbers are pure request-response latency, not queueing).
+ * <p>
+ * Transports are measured one after another with a fresh client, so the other one never gets the broadcasts.
+ * <p>
+ * Usage: {@code TransportLatency [messages=100000] [payloadBytes=64]}.
+ */
+public final class TransportLatency {
+    private static final int PORT = 9095;
+    private static final int WARMUP_MESSAGES = 20_000;
+    private static final int MAX_FRAME = 64 * 1024;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final int messages = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        final int payloadBytes = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        final Path socketPath = Files.createTempDirectory("chat").resolve("chat.sock");
+
+        final SimpleServer server = new SimpleServer(ServerConfig.builder()
+                .port(PORT)
+                .unixSocketPath(socketPath.toString())
+                .announceConnections(false)
+                .jmxEnabled(false)
+                .build());
+        final Thread serverThread = new Thread(server::startServer, "server");
+        serverThread.start();
+
+        final byte[] payload = "x".repeat(payloadBytes).getBytes();
+        try {
+            System.out.println(run("tcp", new InetSocketAddress("localhost", PORT), payload, messages));
+            System.out.println(run("unix", UnixDomainSocketAddress.of(socketPath), payload, messages));
+        } finally {
+            server.shutdown();
+            serverThread.join(5_000);
+            Files.deleteIfExists(socketPath.getParent());
+        }
+    }
+
+    private static String run(String transport, SocketAddress address, byte[] payload, int messages)
+            throws IOException, InterruptedException {
+        try (Client client = new Client(address)) {
+            // let the server finish registration, otherwise the first broadcast misses the client
+            Thread.sleep(500);
+            for (int i = 0; i < WARMUP_MESSAGES; i++) {
+                client.roundTrip(payload);
+            }
+            final LatencyHistogram latency = new LatencyHistogram();
+            final long start = System.nanoTime();
+            for (int i = 0; i < messages; i++) {
+                final long sent = System.nanoTime();
+                client.roundTrip(payload);
+                latency.record((System.nanoTime() - sent) / 1_000);
+            }
+            final double seconds = (System.nanoTime() - start) / 1e9;
+
+            return format("transport=%s messages=%d payload=%dB throughput=%.0f msg/s " +
+                            "mean=%.1fus p50=%dus p99=%dus p99.9=%dus max=%dus",
+                    transport, messages, payload.length, messages / seconds,
+                    latency.mean(), latency.percentile(50), latency.percentile(99), latency.percentile(99.9),
+                    latency.max());
+        }
+    }
+
+    // blocking client: one message in flight
+    private static final class Client implements AutoCloseable {
+        private final FrameDecoder decoder = DelimiterFrameDecoder.lines(MAX_FRAME);
+        private final FrameEncoder encoder = DelimiterFrameEncoder.lines();
+        private final ByteBuffer in = ByteBuffer.allocateDirect(MAX_FRAME);
+        private final SocketChannel channel;
+
+        Client(SocketAddress address) throws IOException {
+            if (address instanceof UnixDomainSocketAddress) {
+                channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            } else {
+                channel = SocketChannel.open();
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+            channel.connect(address);
+        }
+
+        void roundTrip(byte[] payload) throws IOException {
+            final ByteBuffer frame = encoder.encode(wrap(payload));
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            while (true) {
+                in.flip();
+                final ByteBuffer reply = decoder.decode(in);
+                in.compact();
+                if (reply != null) {
+                    return;
+                }
+                if (channel.read(in) == -1) {
+                    throw new IOException("Server closed the connection");
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
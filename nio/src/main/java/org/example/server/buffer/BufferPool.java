@@ -0,0 +1,279 @@
+package org.example.server.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.String.format;
+
+/**
+ * Slab-style pool of direct buffers split into power-of-two size classes (from minSize up to maxSize).
+ * Each slab is one big direct allocation sliced into equal buffers, so native memory is requested rarely
+ * & buffers of one class never fragment each other.
+ * Buffers are leased only for the time data is in flight, so idle connections hold no memory at all.
+ * <p>
+ * Free lists are fixed arrays, so acquire & release allocate nothing in steady state. Buffers grown beyond
+ * the limit ({@link ExhaustionPolicy#GROW}) don't fit into them & are left to GC when returned.
+ */
+public final class BufferPool {
+    private static final long WAIT_SLICE_MILLIS = 10;
+
+    private final SizeClass[] sizeClasses;
+    private final int minSize;
+    private final int maxSize;
+    private final int buffersPerSlab;
+    private final int maxBuffersPerClass;
+    private final ExhaustionPolicy policy;
+    private final long waitMillis;
+    // reader slots of every shared buffer (see SharedBuffer#view(int))
+    private final int readers;
+
+    private final AtomicInteger leased = new AtomicInteger();
+    private final AtomicInteger highWater = new AtomicInteger();
+
+    public BufferPool(
+            int minSize,
+            int maxSize,
+            int buffersPerSlab,
+            int maxBuffersPerClass,
+            ExhaustionPolicy policy,
+            long waitMillis,
+            int readers
+    ) {
+        if (Integer.bitCount(minSize) != 1 || minSize > maxSize) {
+            throw new IllegalArgumentException(format("Invalid size classes: %d..%d", minSize, maxSize));
+        }
+        this.minSize = minSize;
+        this.maxSize = roundUp(maxSize);
+        this.buffersPerSlab = buffersPerSlab;
+        this.maxBuffersPerClass = maxBuffersPerClass;
+        this.policy = policy;
+        this.waitMillis = waitMillis;
+        this.readers = readers;
+
+        final int classCount = indexOf(this.maxSize) + 1;
+        sizeClasses = new SizeClass[classCount];
+        for (int i = 0; i < classCount; i++) {
+            sizeClasses[i] = new SizeClass(minSize << i);
+        }
+    }
+
+    public BufferPool(
+            int minSize,
+            int maxSize,
+            int buffersPerSlab,
+            int maxBuffersPerClass,
+            ExhaustionPolicy policy,
+            long waitMillis
+    ) {
+        this(minSize, maxSize, buffersPerSlab, maxBuffersPerClass, policy, waitMillis, 1);
+    }
+
+    /**
+     * Lease buffer with capacity of at least {@code size} bytes (position = 0, limit = size).
+     * Must be returned by {@link #release(ByteBuffer)} once its data is consumed.
+     */
+    public ByteBuffer acquire(int size) throws BufferPoolExhaustedException {
+        return acquire(size, true);
+    }
+
+    /**
+     * Like {@link #acquire(int)}, but never blocks: null where the {@link ExhaustionPolicy#WAIT} policy would wait
+     * (event loop threads, which must not stall their other connections, retry later themselves).
+     */
+    public ByteBuffer tryAcquire(int size) throws BufferPoolExhaustedException {
+        return acquire(size, false);
+    }
+
+    private ByteBuffer acquire(int size, boolean wait) throws BufferPoolExhaustedException {
+        if (size > maxSize) {
+            throw new IllegalArgumentException(format("Buffer of %d bytes exceeds max size class %d", size, maxSize));
+        }
+        final SizeClass sizeClass = sizeClasses[indexOf(size)];
+        ByteBuffer buffer = sizeClass.free.poll();
+        if (buffer == null) {
+            buffer = sizeClass.allocateOrWait(wait);
+            if (buffer == null) {
+                return null;
+            }
+        }
+        onLeased();
+
+        buffer.clear().limit(size);
+        return buffer;
+    }
+
+    /**
+     * Lease buffer wrapped into {@link SharedBuffer} (reference count 1, content position = 0, limit = size).
+     * Wrappers are recycled together with their content, so sharing allocates nothing in steady state.
+     */
+    public SharedBuffer acquireShared(int size) throws BufferPoolExhaustedException {
+        return acquireShared(size, true);
+    }
+
+    /**
+     * Like {@link #acquireShared(int)}, but never blocks: null where the {@link ExhaustionPolicy#WAIT} policy
+     * would wait.
+     */
+    public SharedBuffer tryAcquireShared(int size) throws BufferPoolExhaustedException {
+        return acquireShared(size, false);
+    }
+
+    private SharedBuffer acquireShared(int size, boolean wait) throws BufferPoolExhaustedException {
+        if (size > maxSize) {
+            throw new IllegalArgumentException(format("Buffer of %d bytes exceeds max size class %d", size, maxSize));
+        }
+        final SharedBuffer shared = sizeClasses[indexOf(size)].sharedFree.poll();
+        if (shared == null) {
+            final ByteBuffer content = acquire(size, wait);
+            return content == null ? null : new SharedBuffer(content, this, readers);
+        }
+        onLeased();
+        shared.reuse(size);
+        return shared;
+    }
+
+    // last reference is released: keep the wrapper (with its views) for the next acquireShared()
+    void releaseShared(SharedBuffer shared) {
+        final ByteBuffer content = shared.content();
+        final SizeClass sizeClass = sizeClasses[indexOf(content.capacity())];
+        leased.decrementAndGet();
+        if (!sizeClass.sharedFree.offer(shared)) {
+            sizeClass.offer(content.clear());
+        }
+    }
+
+    private void onLeased() {
+        final int nowLeased = leased.incrementAndGet();
+        highWater.accumulateAndGet(nowLeased, Math::max);
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        final int index = indexOf(buffer.capacity());
+        if (!buffer.isDirect() || index >= sizeClasses.length || sizeClasses[index].size != buffer.capacity()) {
+            throw new IllegalArgumentException("Buffer doesn't belong to the pool: " + buffer);
+        }
+        leased.decrementAndGet();
+        sizeClasses[index].offer(buffer.clear());
+    }
+
+    public int leased() {
+        return leased.get();
+    }
+
+    public int free() {
+        int free = 0;
+        for (SizeClass sizeClass : sizeClasses) {
+            free += sizeClass.free.size() + sizeClass.sharedFree.size();
+        }
+        return free;
+    }
+
+    public int highWater() {
+        return highWater.get();
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    public ExhaustionPolicy policy() {
+        return policy;
+    }
+
+    public long waitMillis() {
+        return waitMillis;
+    }
+
+    @Override
+    public String toString() {
+        return format("BufferPool[leased=%d, free=%d, highWater=%d]", leased(), free(), highWater());
+    }
+
+    private int indexOf(int size) {
+        final int rounded = roundUp(Math.max(size, minSize));
+        return Integer.numberOfTrailingZeros(rounded) - Integer.numberOfTrailingZeros(minSize);
+    }
+
+    private static int roundUp(int size) {
+        return size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+    }
+
+    private final class SizeClass {
+        private final int size;
+        private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(maxBuffersPerClass);
+        private final BlockingQueue<SharedBuffer> sharedFree = new ArrayBlockingQueue<>(maxBuffersPerClass);
+        // number of buffers sliced so far (leased + free)
+        private final AtomicInteger allocated = new AtomicInteger();
+
+        private SizeClass(int size) {
+            this.size = size;
+        }
+
+        // @return null if the caller doesn't wait & the WAIT policy would
+        private ByteBuffer allocateOrWait(boolean wait) throws BufferPoolExhaustedException {
+            synchronized (this) {
+                // somebody could already add the slab while we were waiting for the lock
+                ByteBuffer buffer = free.poll();
+                if (buffer != null) {
+                    return buffer;
+                }
+                if (allocated.get() < maxBuffersPerClass || policy == ExhaustionPolicy.GROW) {
+                    return allocateSlab();
+                }
+                // limit is reached: content of cached shared buffer is as good as any other (wrapper is dropped)
+                final SharedBuffer shared = sharedFree.poll();
+                if (shared != null) {
+                    return shared.content();
+                }
+            }
+            if (policy == ExhaustionPolicy.WAIT && !wait) {
+                return null;
+            }
+            if (policy == ExhaustionPolicy.WAIT) {
+                final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+                try {
+                    // released buffer may come back as raw one or inside shared wrapper
+                    for (long left = waitMillis; left > 0; left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) {
+                        final ByteBuffer buffer = free.poll(Math.min(left, WAIT_SLICE_MILLIS), TimeUnit.MILLISECONDS);
+                        if (buffer != null) {
+                            return buffer;
+                        }
+                        final SharedBuffer shared = sharedFree.poll();
+                        if (shared != null) {
+                            return shared.content();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            throw new BufferPoolExhaustedException(format(
+                    "Buffer pool exhausted for size class %d (%d buffers)", size, allocated.get()));
+        }
+
+        // surplus of grown class doesn't fit into free list, GC frees the slab after its last slice
+        private void offer(ByteBuffer buffer) {
+            if (!free.offer(buffer)) {
+                allocated.decrementAndGet();
+            }
+        }
+
+        // slice one direct chunk into equal buffers, keep the first one for the caller
+        private ByteBuffer allocateSlab() {
+            final int left = maxBuffersPerClass - allocated.get();
+            final int count = left > 0 ? Math.min(buffersPerSlab, left) : buffersPerSlab;
+            final ByteBuffer slab = ByteBuffer.allocateDirect(size * count);
+            for (int i = 1; i < count; i++) {
+                offer(slab.slice(i * size, size));
+            }
+            allocated.addAndGet(count);
+            return slab.slice(0, size);
+        }
+    }
+}
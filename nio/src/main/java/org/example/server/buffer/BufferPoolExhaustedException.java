@@ -0,0 +1,11 @@
+package org.example.server.buffer;
+
+import java.io.IOException;
+
+public class BufferPoolExhaustedException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public BufferPoolExhaustedException(String message) {
+        super(message);
+    }
+}
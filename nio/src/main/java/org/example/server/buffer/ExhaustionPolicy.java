@@ -0,0 +1,14 @@
+package org.example.server.buffer;
+
+/**
+ * What {@link BufferPool} does when a size class has no free buffers and its limit is reached.
+ */
+public enum ExhaustionPolicy {
+    // fail fast, caller decides what to do (e.g. reject connection)
+    REJECT,
+    // block caller until some buffer is returned or wait timeout is elapsed (event loops don't block: they pause
+    // reading the connection & retry till the timeout, see BufferPool#tryAcquire)
+    WAIT,
+    // allocate one more slab beyond the limit
+    GROW
+}
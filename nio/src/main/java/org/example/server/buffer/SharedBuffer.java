@@ -0,0 +1,100 @@
+package org.example.server.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Immutable, reference-counted content shared by many readers (e.g. one encoded broadcast frame for all recipients).
+ * Content goes back to the pool when the last reference is released.
+ * <p>
+ * Pooled instances are recycled by {@link BufferPool#acquireShared(int)} together with their content
+ * & per-reader views, so a broadcast allocates nothing in steady state.
+ */
+public final class SharedBuffer {
+    private static final AtomicIntegerFieldUpdater<SharedBuffer> REF_COUNT =
+            AtomicIntegerFieldUpdater.newUpdater(SharedBuffer.class, "refCount");
+
+    private final ByteBuffer content;
+    // null for content allocated outside of the pool
+    private final BufferPool pool;
+    // reusable read-only view per reader slot (e.g. worker loop), each slot is touched by its own thread only
+    private final ByteBuffer[] views;
+    private volatile int refCount = 1;
+
+    SharedBuffer(ByteBuffer content, BufferPool pool, int readers) {
+        this.content = content;
+        this.pool = pool;
+        this.views = new ByteBuffer[readers];
+    }
+
+    /**
+     * @param content filled buffer in read mode, must not be changed afterwards (not pooled)
+     */
+    public static SharedBuffer wrap(ByteBuffer content) {
+        return new SharedBuffer(content, null, 0);
+    }
+
+    /**
+     * Content to fill (& flip) by the owner before the buffer is shared with anybody.
+     */
+    public ByteBuffer content() {
+        return content;
+    }
+
+    /**
+     * Read-only view of the content (no copy of the bytes) with own position & limit.
+     * View of the given slot is created once & handed out again on every call, so the caller must reset
+     * its position before use & a slot must not be used by two threads (or for two pending writes) at once.
+     * Slots beyond the pool's readers get a fresh view every time.
+     */
+    public ByteBuffer view(int slot) {
+        if (slot >= views.length) {
+            return content.asReadOnlyBuffer();
+        }
+        ByteBuffer view = views[slot];
+        if (view == null) {
+            view = content.asReadOnlyBuffer();
+            views[slot] = view;
+        }
+        return view.limit(content.limit()).position(content.position());
+    }
+
+    public int size() {
+        return content.remaining();
+    }
+
+    public SharedBuffer retain() {
+        if (REF_COUNT.getAndIncrement(this) <= 0) {
+            REF_COUNT.getAndDecrement(this);
+            throw new IllegalStateException("Buffer is already released");
+        }
+        return this;
+    }
+
+    /**
+     * @return true if this was the last reference & content is returned to the pool
+     */
+    public boolean release() {
+        final int count = REF_COUNT.decrementAndGet(this);
+        if (count == 0) {
+            if (pool != null) {
+                pool.releaseShared(this);
+            }
+            return true;
+        }
+        if (count < 0) {
+            throw new IllegalStateException("Buffer is released more times than retained");
+        }
+        return false;
+    }
+
+    public int refCount() {
+        return refCount;
+    }
+
+    // back from the pool's cache for the next owner
+    void reuse(int size) {
+        content.clear().limit(size);
+        refCount = 1;
+    }
+}
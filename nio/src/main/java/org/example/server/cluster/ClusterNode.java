@@ -0,0 +1,315 @@
+package org.example.server.cluster;
+
+import org.example.server.metrics.Counter;
+import org.example.server.metrics.MetricsRegistry;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * One node of a full mesh of chat servers: every node dials every peer (outbound {@link PeerLink}s) & accepts
+ * a link from every peer on the cluster port. Messages published by local clients are relayed once to every
+ * peer, which delivers them to its own local subscribers only (no forwarding, the mesh is full).
+ * <p>
+ * Wire format, big-endian: handshake {@code [int magic][int node id]} once per link, then batches
+ * {@code [int body length][int record count]} of records
+ * {@code [int origin node][long sequence][short topic length][int frame length][topic][encoded frame]}.
+ * The frame is relayed as encoded by the origin (every node uses the same codec), so peers copy it to
+ * their subscribers without encoding it again. Every node must use the same batch bytes: a body is at most
+ * the record count & batch bytes of records, a bigger length drops the link (a record that doesn't fit into
+ * a batch isn't relayed).
+ * <p>
+ * Every record has an id (origin node, sequence), duplicates are dropped on receipt: a batch resent after
+ * a reconnect may have been delivered before the link broke.
+ * <p>
+ * Blocking I/O, a thread per link: a handful of peers & the relay must not touch the event loops.
+ */
+public final class ClusterNode implements AutoCloseable {
+    static final int MAGIC = 0x43484154;
+    static final int HANDSHAKE_BYTES = 2 * Integer.BYTES;
+    static final int BATCH_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int RECORD_HEADER_BYTES = Integer.BYTES + Long.BYTES + Short.BYTES + Integer.BYTES;
+
+    /**
+     * Receives every message relayed by a peer (once), on the link's thread. The frame is valid during
+     * the call only.
+     */
+    public interface Listener {
+        void onRelayed(String topic, ByteBuffer frame);
+    }
+
+    private final int nodeId;
+    private final int port;
+    private final int batchBytes;
+    private final Listener listener;
+    private final ServerSocketChannel serverChannel;
+    private final Thread acceptor;
+    private final List<PeerLink> links = new ArrayList<>();
+    private final Set<SocketChannel> inbound = ConcurrentHashMap.newKeySet();
+    // starts at the start time (in millionths of a millisecond), so a restarted node with the same id continues
+    // above the ids peers have seen before instead of being taken for duplicates
+    private final AtomicLong sequence = new AtomicLong(System.currentTimeMillis() * 1_000_000);
+    private final Deduplicator deduplicator;
+    private volatile boolean running = true;
+
+    private final Counter relayedOut;
+    private final Counter relayedIn;
+    private final Counter duplicates;
+    private final Counter batchesIn;
+    private final Counter dropped;
+
+    public ClusterNode(
+            int nodeId,
+            int port,
+            List<InetSocketAddress> peers,
+            int batchBytes,
+            long batchDelayMillis,
+            int queueCapacity,
+            MetricsRegistry registry,
+            Listener listener
+    ) {
+        this.nodeId = nodeId;
+        this.port = port;
+        this.batchBytes = batchBytes;
+        this.listener = listener;
+        // as many records as fit into a batch: a whole resent batch is within the window
+        this.deduplicator = new Deduplicator(batchBytes / RECORD_HEADER_BYTES + 1);
+        this.relayedOut = registry.counter("cluster.relayed.out");
+        this.relayedIn = registry.counter("cluster.relayed.in");
+        this.duplicates = registry.counter("cluster.duplicates");
+        this.batchesIn = registry.counter("cluster.batches.in");
+        final Counter batchesOut = registry.counter("cluster.batches.out");
+        final Counter bytesOut = registry.counter("cluster.bytes.out");
+        this.dropped = registry.counter("cluster.dropped");
+        for (InetSocketAddress peer : peers) {
+            links.add(new PeerLink(nodeId, peer, batchBytes, batchDelayMillis, queueCapacity,
+                    batchesOut, bytesOut, dropped));
+        }
+        registry.gauge("cluster.peers.connected", this::connectedPeers);
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.acceptor = new Thread(this::accept, "cluster-accept-" + port);
+        acceptor.setDaemon(true);
+    }
+
+    /**
+     * Id of a node that wasn't given one: host:port keeps the nodes of one host apart, the random part nodes
+     * of different hosts on the same cluster port (the usual deployment). Never 0, differs on every start.
+     */
+    public static int generateNodeId(int port) {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "localhost";
+        }
+        final SecureRandom random = new SecureRandom();
+        int id;
+        do {
+            id = 31 * (host + ":" + port).hashCode() + random.nextInt();
+        } while (id == 0);
+        return id;
+    }
+
+    /**
+     * "host:port,host:port" -> addresses, empty for null or blank.
+     */
+    public static List<InetSocketAddress> parsePeers(String peers) {
+        final List<InetSocketAddress> addresses = new ArrayList<>();
+        if (peers == null || peers.isBlank()) {
+            return addresses;
+        }
+        for (String peer : peers.split(",")) {
+            final int colon = peer.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Peer address is not host:port: " + peer);
+            }
+            addresses.add(new InetSocketAddress(peer.substring(0, colon).trim(),
+                    Integer.parseInt(peer.substring(colon + 1).trim())));
+        }
+        return addresses;
+    }
+
+    public void start() {
+        acceptor.start();
+        for (PeerLink link : links) {
+            link.start();
+        }
+        System.out.printf("Cluster node %d listening on port %d, %d peer(s)%n", nodeId, port, links.size());
+    }
+
+    /**
+     * Queue the message for every peer (frame position..limit is copied, not changed). Never blocks.
+     */
+    public void relay(String topic, ByteBuffer frame) {
+        if (links.isEmpty()) {
+            return;
+        }
+        final byte[] topicBytes = topic.getBytes(UTF_8);
+        final int frameLength = frame.remaining();
+        if (RECORD_HEADER_BYTES + topicBytes.length + frameLength > batchBytes) {
+            // peers would take a batch this big for a corrupted one
+            dropped.increment();
+            return;
+        }
+        // one immutable record shared by all links
+        final byte[] record = new byte[RECORD_HEADER_BYTES + topicBytes.length + frameLength];
+        ByteBuffer.wrap(record)
+                .putInt(nodeId)
+                .putLong(sequence.incrementAndGet())
+                .putShort((short) topicBytes.length)
+                .putInt(frameLength)
+                .put(topicBytes)
+                .put(frame.duplicate());
+        for (PeerLink link : links) {
+            link.offer(record);
+        }
+        relayedOut.increment();
+    }
+
+    public int connectedPeers() {
+        int connected = 0;
+        for (PeerLink link : links) {
+            if (link.isConnected()) {
+                connected++;
+            }
+        }
+        return connected;
+    }
+
+    public int peerCount() {
+        return links.size();
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                final SocketChannel channel = serverChannel.accept();
+                inbound.add(channel);
+                final Thread reader = new Thread(() -> receive(channel), "cluster-in-" + port);
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Failed to accept cluster peer: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // inbound link thread: batches until the peer goes away
+    private void receive(SocketChannel channel) {
+        int peer = -1;
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(Math.max(HANDSHAKE_BYTES, BATCH_HEADER_BYTES));
+            readFully(channel, header.clear().limit(HANDSHAKE_BYTES));
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a cluster peer: " + channel.getRemoteAddress());
+            }
+            peer = header.getInt(Integer.BYTES);
+            if (peer == nodeId) {
+                // its records would all be taken for our own: misconfigured ids (or a node dialling itself)
+                throw new IOException(format("Peer %s has the same node id %d as this node",
+                        channel.getRemoteAddress(), nodeId));
+            }
+            // the length comes from the peer: a bad one must not size the buffer
+            final ByteBuffer body = ByteBuffer.allocateDirect(Integer.BYTES + batchBytes);
+            while (running) {
+                readFully(channel, header.clear().limit(Integer.BYTES));
+                final int length = header.getInt(0);
+                if (length < Integer.BYTES || length > body.capacity()) {
+                    throw new IOException(format("Corrupted batch: body of %d bytes, %d at most", length,
+                            body.capacity()));
+                }
+                readFully(channel, body.clear().limit(length));
+                deliver(body);
+                batchesIn.increment();
+            }
+        } catch (EOFException e) {
+            // peer closed the link, it reconnects when it is back
+        } catch (IOException e) {
+            if (running) {
+                System.err.printf("Cluster link from node %d failed: %s%n", peer, e.getMessage());
+            }
+        } finally {
+            inbound.remove(channel);
+            closeQuietly(channel);
+        }
+    }
+
+    private void deliver(ByteBuffer body) throws IOException {
+        final int count = body.getInt(0);
+        int position = Integer.BYTES;
+        for (int i = 0; i < count; i++) {
+            if (position + RECORD_HEADER_BYTES > body.limit()) {
+                throw new IOException(format("Corrupted batch: record %d of %d is truncated", i, count));
+            }
+            final int origin = body.getInt(position);
+            final long id = body.getLong(position + Integer.BYTES);
+            final int topicLength = body.getShort(position + Integer.BYTES + Long.BYTES);
+            final int frameLength = body.getInt(position + Integer.BYTES + Long.BYTES + Short.BYTES);
+            final int topicStart = position + RECORD_HEADER_BYTES;
+            final int frameStart = topicStart + topicLength;
+            position = frameStart + frameLength;
+            if (topicLength < 0 || frameLength < 0 || position > body.limit()) {
+                throw new IOException(format("Corrupted batch: record %d of %d is truncated", i, count));
+            }
+            if (origin == nodeId || !deduplicator.firstSeen(origin, id)) {
+                duplicates.increment();
+                continue;
+            }
+            final byte[] topic = new byte[topicLength];
+            body.get(topicStart, topic);
+            listener.onRelayed(new String(topic, UTF_8), body.slice(frameStart, frameLength));
+            relayedIn.increment();
+        }
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        closeQuietly(serverChannel);
+        for (PeerLink link : links) {
+            link.close();
+        }
+        for (SocketChannel channel : inbound) {
+            closeQuietly(channel);
+        }
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close cluster channel: " + e.getMessage());
+        }
+    }
+}
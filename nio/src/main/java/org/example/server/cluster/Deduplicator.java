@@ -0,0 +1,90 @@
+package org.example.server.cluster;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Message ids (origin node, sequence) seen recently: per origin the highest sequence & a ring bitmap of the
+ * window of sequences below it. Sequences of one origin arrive in order (one link per origin), out of order
+ * only when a batch is resent after a reconnect, so the window covers the records of a whole batch: every
+ * resent record is within it & told apart from the ones that really arrived.
+ */
+final class Deduplicator {
+    private final int window;
+    private final Map<Integer, Window> windows = new ConcurrentHashMap<>();
+
+    /**
+     * @param window sequences below the highest one that are remembered (rounded up to a multiple of 64)
+     */
+    Deduplicator(int window) {
+        this.window = Math.max(Long.SIZE, (window + Long.SIZE - 1) / Long.SIZE * Long.SIZE);
+    }
+
+    int window() {
+        return window;
+    }
+
+    /**
+     * @return true the first time the id is seen, false for a duplicate (or one too old to tell)
+     */
+    boolean firstSeen(int origin, long sequence) {
+        return windows.computeIfAbsent(origin, o -> new Window(window)).mark(sequence);
+    }
+
+    private static final class Window {
+        // bit (sequence % size): the sequence was seen, for the size sequences up to highest
+        private final long[] seen;
+        private final int size;
+        // 0 - nothing seen yet (sequences start above 0)
+        private long highest;
+
+        Window(int size) {
+            this.size = size;
+            this.seen = new long[size / Long.SIZE];
+        }
+
+        synchronized boolean mark(long sequence) {
+            if (sequence > highest) {
+                // slots of the skipped sequences are reused, forget what they held
+                if (sequence - highest >= size) {
+                    Arrays.fill(seen, 0);
+                } else {
+                    for (long skipped = highest + 1; skipped < sequence; skipped++) {
+                        clear(skipped);
+                    }
+                }
+                highest = sequence;
+                set(sequence);
+                return true;
+            }
+            if (highest - sequence >= size) {
+                return false;
+            }
+            if (isSet(sequence)) {
+                return false;
+            }
+            set(sequence);
+            return true;
+        }
+
+        private int slot(long sequence) {
+            return (int) Math.floorMod(sequence, (long) size);
+        }
+
+        private boolean isSet(long sequence) {
+            final int slot = slot(sequence);
+            return (seen[slot >>> 6] & (1L << slot)) != 0;
+        }
+
+        private void set(long sequence) {
+            final int slot = slot(sequence);
+            seen[slot >>> 6] |= 1L << slot;
+        }
+
+        private void clear(long sequence) {
+            final int slot = slot(sequence);
+            seen[slot >>> 6] &= ~(1L << slot);
+        }
+    }
+}
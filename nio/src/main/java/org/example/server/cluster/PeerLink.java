@@ -0,0 +1,186 @@
+package org.example.server.cluster;
+
+import org.example.server.metrics.Counter;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outbound side of the mesh towards one peer: its own thread & blocking channel (like the admin endpoint,
+ * the relay must not touch the event loops). Records queued by {@link #offer(byte[])} are packed into one
+ * batch per write: everything queued until the batch is full or the batch delay after its first record.
+ * <p>
+ * The link reconnects while the node is running. The batch being written when the connection broke is
+ * written again on the new connection (the peer may have got it already, it drops the duplicates).
+ */
+final class PeerLink implements Runnable {
+    private static final long RECONNECT_MILLIS = 500;
+    private static final long POLL_MILLIS = 100;
+
+    private final int nodeId;
+    private final InetSocketAddress address;
+    private final long batchDelayNanos;
+    private final BlockingQueue<byte[]> queue;
+    private final Thread thread;
+    private final Counter batches;
+    private final Counter bytesOut;
+    private final Counter dropped;
+    private volatile boolean running = true;
+    private volatile SocketChannel channel;
+
+    // [int body length][int record count][records...], body starts after the length
+    private final ByteBuffer batch;
+    private int batchCount;
+    // record that didn't fit into the previous batch, first one of the next
+    private byte[] carry;
+
+    PeerLink(
+            int nodeId,
+            InetSocketAddress address,
+            int batchBytes,
+            long batchDelayMillis,
+            int queueCapacity,
+            Counter batches,
+            Counter bytesOut,
+            Counter dropped
+    ) {
+        this.nodeId = nodeId;
+        this.address = address;
+        this.batchDelayNanos = TimeUnit.MILLISECONDS.toNanos(batchDelayMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batch = ByteBuffer.allocateDirect(ClusterNode.BATCH_HEADER_BYTES + batchBytes);
+        this.batches = batches;
+        this.bytesOut = bytesOut;
+        this.dropped = dropped;
+        this.thread = new Thread(this, "cluster-link-" + address.getPort());
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    boolean isConnected() {
+        return channel != null;
+    }
+
+    InetSocketAddress address() {
+        return address;
+    }
+
+    // any thread, never blocks: a peer that can't keep up loses messages instead of stalling local clients
+    void offer(byte[] record) {
+        if (!queue.offer(record)) {
+            dropped.increment();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                // connected before anything is sent, so isConnected() tells the mesh is formed
+                if (channel == null) {
+                    channel = connect();
+                }
+                if (batchCount == 0 && !fillBatch()) {
+                    continue;
+                }
+                write();
+            } catch (IOException e) {
+                if (running) {
+                    // peer not up (yet) is expected while the cluster starts, a broken link isn't
+                    if (channel != null) {
+                        System.err.printf("Cluster link to %s failed: %s%n", address, e.getMessage());
+                    }
+                    closeChannel();
+                    sleep(RECONNECT_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        closeChannel();
+    }
+
+    private SocketChannel connect() throws IOException {
+        final SocketChannel connected = SocketChannel.open(address);
+        connected.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        final ByteBuffer handshake = ByteBuffer.allocate(ClusterNode.HANDSHAKE_BYTES)
+                .putInt(ClusterNode.MAGIC)
+                .putInt(nodeId)
+                .flip();
+        while (handshake.hasRemaining()) {
+            connected.write(handshake);
+        }
+        System.out.printf("Cluster link to %s connected%n", address);
+        return connected;
+    }
+
+    // @return false if nothing was queued meanwhile
+    private boolean fillBatch() throws InterruptedException {
+        byte[] record = carry != null ? carry : queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        carry = null;
+        if (record == null) {
+            return false;
+        }
+        batch.clear().position(ClusterNode.BATCH_HEADER_BYTES);
+        final long deadline = System.nanoTime() + batchDelayNanos;
+        while (record != null) {
+            // a record always fits into an empty batch (bigger ones aren't relayed)
+            if (batch.remaining() < record.length) {
+                carry = record;
+                break;
+            }
+            batch.put(record);
+            batchCount++;
+            final long wait = deadline - System.nanoTime();
+            record = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+        }
+        batch.putInt(0, batch.position() - Integer.BYTES).putInt(Integer.BYTES, batchCount).flip();
+        return true;
+    }
+
+    // whole batch from its start (again after a reconnect)
+    private void write() throws IOException {
+        batch.position(0);
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+        batches.increment();
+        bytesOut.add(batch.limit());
+        batchCount = 0;
+    }
+
+    void close() {
+        running = false;
+        thread.interrupt();
+        closeChannel();
+    }
+
+    private void closeChannel() {
+        final SocketChannel current = channel;
+        channel = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close cluster link to " + address);
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
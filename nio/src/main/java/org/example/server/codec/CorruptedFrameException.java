@@ -0,0 +1,11 @@
+package org.example.server.codec;
+
+import java.io.IOException;
+
+public class CorruptedFrameException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public CorruptedFrameException(String message) {
+        super(message);
+    }
+}
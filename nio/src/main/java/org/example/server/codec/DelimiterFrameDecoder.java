@@ -0,0 +1,48 @@
+package org.example.server.codec;
+
+import java.nio.ByteBuffer;
+
+import static java.lang.String.format;
+
+/**
+ * Frame = payload + delimiter byte (e.g. '\n' for line-based clients like telnet or netcat).
+ * Trailing '\r' before '\n' is stripped as well.
+ */
+public class DelimiterFrameDecoder implements FrameDecoder {
+    public static final byte LINE_DELIMITER = '\n';
+
+    private final byte delimiter;
+    private final int maxFrameLength;
+
+    public DelimiterFrameDecoder(byte delimiter, int maxFrameLength) {
+        this.delimiter = delimiter;
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    public static DelimiterFrameDecoder lines(int maxFrameLength) {
+        return new DelimiterFrameDecoder(LINE_DELIMITER, maxFrameLength);
+    }
+
+    @Override
+    public int decodePayload(ByteBuffer in) throws CorruptedFrameException {
+        final int start = in.position();
+        final int end = in.limit();
+        for (int i = start; i < end; i++) {
+            if (in.get(i) == delimiter) {
+                int length = i - start;
+                if (delimiter == LINE_DELIMITER && length > 0 && in.get(i - 1) == '\r') {
+                    length--;
+                }
+                if (length > maxFrameLength) {
+                    throw new CorruptedFrameException(format("Frame length %d exceeds %d bytes", length, maxFrameLength));
+                }
+                in.limit(start + length);
+                return i + 1;
+            }
+        }
+        if (end - start > maxFrameLength) {
+            throw new CorruptedFrameException(format("Frame exceeds %d bytes without delimiter", maxFrameLength));
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,34 @@
+package org.example.server.codec;
+
+import java.nio.ByteBuffer;
+
+import static org.example.server.codec.DelimiterFrameDecoder.LINE_DELIMITER;
+
+public class DelimiterFrameEncoder implements FrameEncoder {
+    private final byte delimiter;
+
+    public DelimiterFrameEncoder(byte delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    public static DelimiterFrameEncoder lines() {
+        return new DelimiterFrameEncoder(LINE_DELIMITER);
+    }
+
+    @Override
+    public int frameLength(int payloadLength) {
+        return payloadLength + 1;
+    }
+
+    @Override
+    public void encode(ByteBuffer payload, ByteBuffer out) {
+        out.put(payload);
+        out.put(delimiter);
+    }
+
+    @Override
+    public void encode(byte[] prefix, ByteBuffer payload, ByteBuffer out) {
+        out.put(prefix);
+        encode(payload, out);
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.server.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Splits inbound byte stream into frames. TCP has no message boundaries: one read can bring half of frame
+ * or several frames at once, so decoder is called in a loop over accumulated bytes.
+ */
+public interface FrameDecoder {
+
+    /**
+     * Allocation-free form of {@link #decode(ByteBuffer)} for the read path: narrows {@code in} to the payload
+     * of the next complete frame (position..limit), the caller restores the limit & continues at the returned
+     * position.
+     *
+     * @param in accumulated bytes in read mode
+     * @return position of the next frame, -1 if there is no complete frame yet ({@code in} unchanged)
+     */
+    int decodePayload(ByteBuffer in) throws CorruptedFrameException;
+
+    /**
+     * @param in accumulated bytes in read mode
+     * @return payload of the next complete frame (view of {@code in}, valid until {@code in} is changed)
+     * with {@code in} position moved past the frame, or null if there is no complete frame yet
+     */
+    default ByteBuffer decode(ByteBuffer in) throws CorruptedFrameException {
+        final int limit = in.limit();
+        final int next = decodePayload(in);
+        if (next < 0) {
+            return null;
+        }
+        final ByteBuffer payload = in.slice();
+        in.limit(limit).position(next);
+        return payload;
+    }
+}
@@ -0,0 +1,32 @@
+package org.example.server.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wraps payload into frame recognized by the paired {@link FrameDecoder}.
+ */
+public interface FrameEncoder {
+
+    int frameLength(int payloadLength);
+
+    // write frame of remaining payload bytes into out (out must have frameLength() bytes remaining)
+    void encode(ByteBuffer payload, ByteBuffer out);
+
+    // frame of prefix followed by payload, without joining them into one buffer first (e.g. sender's address + message)
+    default void encode(byte[] prefix, ByteBuffer payload, ByteBuffer out) {
+        final ByteBuffer joined = ByteBuffer.allocate(prefix.length + payload.remaining());
+        encode(joined.put(prefix).put(payload).flip(), out);
+    }
+
+    default ByteBuffer encode(byte[] prefix, ByteBuffer payload) {
+        final ByteBuffer out = ByteBuffer.allocate(frameLength(prefix.length + payload.remaining()));
+        encode(prefix, payload, out);
+        return out.flip();
+    }
+
+    default ByteBuffer encode(ByteBuffer payload) {
+        final ByteBuffer out = ByteBuffer.allocate(frameLength(payload.remaining()));
+        encode(payload, out);
+        return out.flip();
+    }
+}
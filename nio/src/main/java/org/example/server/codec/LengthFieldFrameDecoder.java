@@ -0,0 +1,36 @@
+package org.example.server.codec;
+
+import java.nio.ByteBuffer;
+
+import static java.lang.String.format;
+
+/**
+ * Frame = 4-byte big-endian payload length + payload.
+ */
+public class LengthFieldFrameDecoder implements FrameDecoder {
+    static final int LENGTH_FIELD_SIZE = Integer.BYTES;
+
+    private final int maxFrameLength;
+
+    public LengthFieldFrameDecoder(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    @Override
+    public int decodePayload(ByteBuffer in) throws CorruptedFrameException {
+        if (in.remaining() < LENGTH_FIELD_SIZE) {
+            return -1;
+        }
+        // peek length without moving position (header could be followed by partial payload)
+        final int length = in.getInt(in.position());
+        if (length < 0 || length > maxFrameLength) {
+            throw new CorruptedFrameException(format("Invalid frame length %d (max %d)", length, maxFrameLength));
+        }
+        if (in.remaining() < LENGTH_FIELD_SIZE + length) {
+            return -1;
+        }
+        final int start = in.position() + LENGTH_FIELD_SIZE;
+        in.limit(start + length).position(start);
+        return start + length;
+    }
+}
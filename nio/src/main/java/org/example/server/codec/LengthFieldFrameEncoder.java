@@ -0,0 +1,26 @@
+package org.example.server.codec;
+
+import java.nio.ByteBuffer;
+
+import static org.example.server.codec.LengthFieldFrameDecoder.LENGTH_FIELD_SIZE;
+
+public class LengthFieldFrameEncoder implements FrameEncoder {
+
+    @Override
+    public int frameLength(int payloadLength) {
+        return LENGTH_FIELD_SIZE + payloadLength;
+    }
+
+    @Override
+    public void encode(ByteBuffer payload, ByteBuffer out) {
+        out.putInt(payload.remaining());
+        out.put(payload);
+    }
+
+    @Override
+    public void encode(byte[] prefix, ByteBuffer payload, ByteBuffer out) {
+        out.putInt(prefix.length + payload.remaining());
+        out.put(prefix);
+        out.put(payload);
+    }
+}
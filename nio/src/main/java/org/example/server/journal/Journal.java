@@ -0,0 +1,275 @@
+package org.example.server.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+
+/**
+ * Append-only journal of messages in memory-mapped segment files ({@code <base offset>.log}).
+ * Every message gets the next offset (0, 1, 2...) & the append time, so a client can ask for everything since
+ * an offset or a point in time. Messages are stored without framing (the codec may change between runs),
+ * they are read as read-only views of the mappings & encoded for the client at replay time.
+ * <p>
+ * The active segment rolls over when the next frame doesn't fit, old segments are deleted when the journal
+ * is above retention bytes or their last frame is older than retention time (checked on rollover).
+ * Deleting a segment doesn't break replays in progress: their mappings stay valid until collected.
+ * <p>
+ * Appends are serialized by a lock, reads are lock-free (records are published after they are complete).
+ */
+public final class Journal implements Closeable {
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentBytes;
+    // 0 - no limit
+    private final long retentionBytes;
+    private final long retentionMillis;
+    private final int indexIntervalBytes;
+    private final Object appendLock = new Object();
+    // oldest first, the last one is active, replaced as a whole (readers take a snapshot)
+    private volatile Segment[] segments;
+    // guarded by appendLock: appending to a trimmed mapping would crash the process (SIGBUS)
+    private boolean closed;
+
+    public Journal(Path directory, int segmentBytes, long retentionBytes, long retentionMillis, int indexIntervalBytes) {
+        if (segmentBytes <= Segment.HEADER_BYTES) {
+            throw new IllegalArgumentException("Segment is too small: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.retentionBytes = retentionBytes;
+        this.retentionMillis = retentionMillis;
+        this.indexIntervalBytes = indexIntervalBytes;
+        try {
+            Files.createDirectories(directory);
+            this.segments = recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open journal in " + directory, e);
+        }
+    }
+
+    // existing segments in offset order, the last one continues as the active segment
+    private Segment[] recover() throws IOException {
+        final long[] baseOffsets;
+        try (Stream<Path> files = Files.list(directory)) {
+            baseOffsets = files
+                    .map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .mapToLong(name -> Long.parseLong(name.substring(0, name.length() - SUFFIX.length())))
+                    .sorted()
+                    .toArray();
+        }
+        if (baseOffsets.length == 0) {
+            return new Segment[] {openSegment(0, segmentBytes)};
+        }
+        final Segment[] recovered = new Segment[baseOffsets.length];
+        for (int i = 0; i < baseOffsets.length; i++) {
+            // sealed segments are mapped as they are, only the active one needs room to grow
+            recovered[i] = openSegment(baseOffsets[i], i == baseOffsets.length - 1 ? segmentBytes : 0);
+        }
+        return recovered;
+    }
+
+    private Segment openSegment(long baseOffset, int capacity) throws IOException {
+        final Path path = directory.resolve(format("%020d%s", baseOffset, SUFFIX));
+        return Segment.open(path, baseOffset, capacity, indexIntervalBytes);
+    }
+
+    /**
+     * Copy the message (position..limit, not changed) to the end of the journal.
+     *
+     * @return offset of the message
+     */
+    public long append(ByteBuffer frame, long timestampMillis) {
+        final int length = frame.remaining();
+        if (length == 0 || Segment.HEADER_BYTES + length > segmentBytes) {
+            throw new IllegalArgumentException(format("Message of %d bytes doesn't fit into a segment", length));
+        }
+        synchronized (appendLock) {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed: " + directory);
+            }
+            Segment active = segments[segments.length - 1];
+            if (!active.hasRoom(length)) {
+                active = roll(active);
+            }
+            final long offset = active.nextOffset();
+            active.append(frame, timestampMillis);
+            return offset;
+        }
+    }
+
+    // caller holds appendLock
+    private Segment roll(Segment active) {
+        try {
+            final Segment next = openSegment(active.nextOffset(), segmentBytes);
+            active.close(true);
+            final Segment[] rolled = Arrays.copyOf(segments, segments.length + 1);
+            rolled[rolled.length - 1] = next;
+            segments = applyRetention(rolled, System.currentTimeMillis());
+            return next;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll journal segment in " + directory, e);
+        }
+    }
+
+    // the active segment is never deleted
+    private Segment[] applyRetention(Segment[] current, long now) throws IOException {
+        long total = 0;
+        for (Segment segment : current) {
+            total += segment.size();
+        }
+        int first = 0;
+        while (first < current.length - 1) {
+            final Segment oldest = current[first];
+            final boolean tooBig = retentionBytes > 0 && total > retentionBytes;
+            final boolean tooOld = retentionMillis > 0 && oldest.lastTimestamp() < now - retentionMillis;
+            if (!tooBig && !tooOld) {
+                break;
+            }
+            total -= oldest.size();
+            Files.deleteIfExists(oldest.path());
+            first++;
+        }
+        return first == 0 ? current : Arrays.copyOfRange(current, first, current.length);
+    }
+
+    /**
+     * @return cursor at the given offset, at the oldest retained frame if it was deleted already
+     */
+    public Cursor cursor(long offset) {
+        final Segment[] snapshot = segments;
+        for (int i = snapshot.length - 1; i >= 0; i--) {
+            if (snapshot[i].baseOffset() <= offset) {
+                final Segment segment = snapshot[i];
+                final long start = Math.min(offset, segment.nextOffset());
+                return new Cursor(segment, segment.positionOf(start), start);
+            }
+        }
+        return new Cursor(snapshot[0], 0, snapshot[0].baseOffset());
+    }
+
+    /**
+     * @return cursor at the first frame appended at or after the given time
+     */
+    public Cursor cursorAt(long timestampMillis) {
+        final Segment[] snapshot = segments;
+        for (Segment segment : snapshot) {
+            if (segment.count() > 0 && segment.lastTimestamp() >= timestampMillis) {
+                return cursor(segment.baseOffset() + segment.relativeOffsetOf(timestampMillis));
+            }
+        }
+        return cursor(nextOffset());
+    }
+
+    /**
+     * @return offset the next frame will get
+     */
+    public long nextOffset() {
+        final Segment[] snapshot = segments;
+        return snapshot[snapshot.length - 1].nextOffset();
+    }
+
+    public long firstOffset() {
+        return segments[0].baseOffset();
+    }
+
+    public long sizeBytes() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.size();
+        }
+        return total;
+    }
+
+    public int segmentCount() {
+        return segments.length;
+    }
+
+    // next segment after the given one, null if it is the active one (or was deleted meanwhile with the rest)
+    private Segment segmentAfter(Segment segment) {
+        final Segment[] snapshot = segments;
+        for (Segment candidate : snapshot) {
+            if (candidate.baseOffset() > segment.baseOffset()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        synchronized (appendLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            final Segment[] current = segments;
+            for (int i = 0; i < current.length; i++) {
+                try {
+                    // pre-sized active file is trimmed to its records
+                    current[i].close(i == current.length - 1);
+                } catch (IOException e) {
+                    System.err.println("Failed to close journal segment " + current[i].path());
+                }
+            }
+        }
+    }
+
+    /**
+     * Position in the journal, moved by {@link #next()}. Single-threaded, any number of cursors per journal.
+     */
+    public final class Cursor {
+        private Segment segment;
+        private int position;
+        private long offset;
+
+        private Cursor(Segment segment, int position, long offset) {
+            this.segment = segment;
+            this.position = position;
+            this.offset = offset;
+        }
+
+        /**
+         * @return offset of the frame returned by the next call of {@link #next()}
+         */
+        public long offset() {
+            return offset;
+        }
+
+        /**
+         * @return read-only view of the next message in the mapped segment, null if there is nothing more yet
+         * (never waits for an append in progress, the caller tries again later)
+         */
+        public ByteBuffer next() {
+            if (position >= segment.size()) {
+                if (segment.nextOffset() > offset) {
+                    // appended meanwhile, but not published yet
+                    return null;
+                }
+                final Segment next = segmentAfter(segment);
+                if (next == null) {
+                    return null;
+                }
+                // next segment may start later if the rest was deleted by retention
+                segment = next;
+                position = 0;
+                offset = next.baseOffset();
+                if (position >= segment.size()) {
+                    return null;
+                }
+            }
+            final ByteBuffer frame = segment.frame(position);
+            position += Segment.HEADER_BYTES + segment.frameLength(position);
+            offset++;
+            return frame;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package org.example.server.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * One memory-mapped file of the journal: records of consecutive offsets starting at {@link #baseOffset()}.
+ * Record layout: {@code [int frame length][long timestamp millis][frame bytes]}, zero length marks the end
+ * (file is pre-sized, so the rest of it is zeros).
+ * <p>
+ * Single appender (under the journal lock), any number of readers: readers never look past {@link #size()},
+ * which is published after the record is complete.
+ */
+final class Segment {
+    static final int HEADER_BYTES = Integer.BYTES + Long.BYTES;
+    private static final int INITIAL_INDEX_CAPACITY = 64;
+
+    private final long baseOffset;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    // bytes between sparse index entries
+    private final int indexIntervalBytes;
+
+    // written by appender only
+    private volatile int size;
+    private volatile int count;
+    private volatile long firstTimestamp;
+    private volatile long lastTimestamp;
+    private int bytesSinceIndex;
+
+    // sparse index: relative offset, position & timestamp of every record starting a new interval, guarded by this
+    private int[] indexOffsets = new int[INITIAL_INDEX_CAPACITY];
+    private int[] indexPositions = new int[INITIAL_INDEX_CAPACITY];
+    private long[] indexTimestamps = new long[INITIAL_INDEX_CAPACITY];
+    private int indexSize;
+
+    private Segment(long baseOffset, Path path, FileChannel channel, MappedByteBuffer buffer, int indexIntervalBytes) {
+        this.baseOffset = baseOffset;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.indexIntervalBytes = indexIntervalBytes;
+    }
+
+    /**
+     * Map new or existing segment file with the given capacity (existing records are scanned to rebuild
+     * the index & find the end).
+     */
+    static Segment open(Path path, long baseOffset, int capacity, int indexIntervalBytes) throws IOException {
+        final FileChannel channel = FileChannel.open(path, CREATE, READ, WRITE);
+        final int mappedSize = (int) Math.max(capacity, channel.size());
+        final Segment segment = new Segment(baseOffset, path, channel,
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize), indexIntervalBytes);
+        segment.recover();
+        return segment;
+    }
+
+    private void recover() {
+        int position = 0;
+        while (position + HEADER_BYTES <= buffer.capacity()) {
+            final int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > buffer.capacity()) {
+                break;
+            }
+            onAppended(position, length, buffer.getLong(position + Integer.BYTES));
+            position += HEADER_BYTES + length;
+        }
+    }
+
+    boolean hasRoom(int frameLength) {
+        return size + HEADER_BYTES + frameLength <= buffer.capacity();
+    }
+
+    /**
+     * Copy the frame (position..limit, not changed) into the mapped file. Caller checks {@link #hasRoom(int)}.
+     */
+    void append(ByteBuffer frame, long timestamp) {
+        final int position = size;
+        final int length = frame.remaining();
+        // frame first, length last: a record with length set is always complete (even after a crash)
+        buffer.put(position + HEADER_BYTES, frame, frame.position(), length);
+        buffer.putLong(position + Integer.BYTES, timestamp);
+        buffer.putInt(position, length);
+        onAppended(position, length, timestamp);
+    }
+
+    private void onAppended(int position, int length, long timestamp) {
+        if (count == 0) {
+            firstTimestamp = timestamp;
+        }
+        if (count == 0 || bytesSinceIndex >= indexIntervalBytes) {
+            addIndexEntry(count, position, timestamp);
+            bytesSinceIndex = 0;
+        }
+        bytesSinceIndex += HEADER_BYTES + length;
+        lastTimestamp = timestamp;
+        // publishes the record to readers, before count: a reader that sees the offset sees the record as well
+        size = position + HEADER_BYTES + length;
+        count = count + 1;
+    }
+
+    private synchronized void addIndexEntry(int relativeOffset, int position, long timestamp) {
+        if (indexSize == indexOffsets.length) {
+            indexOffsets = Arrays.copyOf(indexOffsets, indexSize * 2);
+            indexPositions = Arrays.copyOf(indexPositions, indexSize * 2);
+            indexTimestamps = Arrays.copyOf(indexTimestamps, indexSize * 2);
+        }
+        indexOffsets[indexSize] = relativeOffset;
+        indexPositions[indexSize] = position;
+        indexTimestamps[indexSize] = timestamp;
+        indexSize++;
+    }
+
+    /**
+     * @return position of the record with the given offset (or of the end if segment doesn't have it yet)
+     */
+    int positionOf(long offset) {
+        final int relative = (int) (offset - baseOffset);
+        int entry;
+        synchronized (this) {
+            entry = Math.max(0, floor(indexOffsets, indexSize, relative));
+        }
+        // scan from the nearest indexed record, at most indexIntervalBytes away
+        int position = indexPositions[entry];
+        for (int current = indexOffsets[entry]; current < relative && position < size; current++) {
+            position += HEADER_BYTES + buffer.getInt(position);
+        }
+        return position;
+    }
+
+    /**
+     * @return relative offset of the first record with timestamp at or after the given one
+     * (count if there is none)
+     */
+    int relativeOffsetOf(long timestamp) {
+        int entry;
+        synchronized (this) {
+            // index timestamps follow append order, the last entry before the time is a safe start
+            entry = 0;
+            while (entry + 1 < indexSize && indexTimestamps[entry + 1] < timestamp) {
+                entry++;
+            }
+        }
+        int position = indexPositions[entry];
+        int relative = indexOffsets[entry];
+        final int end = size;
+        while (position < end && buffer.getLong(position + Integer.BYTES) < timestamp) {
+            position += HEADER_BYTES + buffer.getInt(position);
+            relative++;
+        }
+        return relative;
+    }
+
+    // greatest index entry <= value (-1 if there is none), entries are sorted
+    private static int floor(int[] values, int length, int value) {
+        int low = 0;
+        int high = length - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            if (values[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    int frameLength(int position) {
+        return buffer.getInt(position);
+    }
+
+    /**
+     * Read-only view of the frame stored at position, backed by the mapping itself (no copy).
+     */
+    ByteBuffer frame(int position) {
+        return buffer.slice(position + HEADER_BYTES, buffer.getInt(position)).asReadOnlyBuffer();
+    }
+
+    long baseOffset() {
+        return baseOffset;
+    }
+
+    long nextOffset() {
+        return baseOffset + count;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long firstTimestamp() {
+        return firstTimestamp;
+    }
+
+    long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    // trim pre-sized file to the written records (mapping stays valid for readers still holding views)
+    void close(boolean trim) throws IOException {
+        if (trim) {
+            buffer.force();
+            channel.truncate(size);
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.server.metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Tiny plaintext admin port: every connection gets "name value" lines of the metrics snapshot & is closed.
+ * Works with {@code nc host port} as well as {@code curl http://host:port/} (HTTP/1.0 response if request is GET).
+ * <p>
+ * Blocking I/O on its own daemon thread on purpose: it is scraped rarely & must not touch the event loops.
+ */
+public final class AdminEndpoint implements AutoCloseable {
+    // don't let a client that never sends anything block the endpoint
+    private static final int READ_TIMEOUT_MILLIS = 200;
+
+    private final MetricsRegistry registry;
+    private final ServerSocket serverSocket;
+    private final Thread thread;
+
+    public AdminEndpoint(int port, MetricsRegistry registry) {
+        this.registry = registry;
+        try {
+            this.serverSocket = new ServerSocket();
+            serverSocket.bind(new InetSocketAddress(port));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.thread = new Thread(this::serve, "admin-" + port);
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+        System.out.printf("Admin endpoint listening on port %s...%n", serverSocket.getLocalPort());
+    }
+
+    private void serve() {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+                final boolean http = isHttpRequest(socket.getInputStream());
+                final OutputStream out = socket.getOutputStream();
+                final byte[] body = render(registry.snapshot()).getBytes(StandardCharsets.US_ASCII);
+                if (http) {
+                    out.write(("HTTP/1.0 200 OK\r\nContent-Type: text/plain\r\nContent-Length: " + body.length
+                            + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                }
+                out.write(body);
+                out.flush();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Admin request failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // reads request line if client sends one (nc may send nothing)
+    private static boolean isHttpRequest(InputStream in) {
+        try {
+            final byte[] head = new byte[4];
+            int read = 0;
+            while (read < head.length) {
+                final int n = in.read(head, read, head.length - read);
+                if (n == -1) {
+                    break;
+                }
+                read += n;
+            }
+            return read == head.length && new String(head, StandardCharsets.US_ASCII).equals("GET ");
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static String render(Map<String, Number> snapshot) {
+        final StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Number> entry : snapshot.entrySet()) {
+            text.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        return text.toString();
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close admin endpoint");
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.server.metrics;
+
+import static java.lang.String.format;
+
+/**
+ * Count-Min sketch: approximate counts of any number of keys in fixed memory ({@code depth} rows of
+ * {@code width} counters). Every key adds to one counter per row (different hash per row), its estimate is
+ * the smallest of them: never below the real count, above it by at most {@code e * total / width} with
+ * probability {@code 1 - e^-depth}.
+ * <p>
+ * Keys are given as 64-bit hashes (computed once per key by the caller). Single writer, no allocation;
+ * reads from other threads see slightly stale values, which an estimate tolerates anyway.
+ */
+public final class CountMinSketch {
+    // odd constants, one per row, turn a single key hash into independent row hashes
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x27D4EB2F165667C5L, 0x94D049BB133111EBL
+    };
+
+    private final long[][] rows;
+    private final int mask;
+    private long total;
+
+    public CountMinSketch(int width, int depth) {
+        if (Integer.bitCount(width) != 1 || depth < 1 || depth > SEEDS.length) {
+            throw new IllegalArgumentException(format(
+                    "Width must be a power of two & depth 1..%d: %d x %d", SEEDS.length, width, depth));
+        }
+        this.rows = new long[depth][width];
+        this.mask = width - 1;
+    }
+
+    /**
+     * @return estimate of the key after adding
+     */
+    public long add(long keyHash, long count) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < rows.length; row++) {
+            final int index = index(keyHash, row);
+            final long value = rows[row][index] + count;
+            rows[row][index] = value;
+            estimate = Math.min(estimate, value);
+        }
+        total += count;
+        return estimate;
+    }
+
+    public long estimate(long keyHash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < rows.length; row++) {
+            estimate = Math.min(estimate, rows[row][index(keyHash, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Halve every counter: old traffic fades out, so estimates follow the recent rate rather than all time.
+     */
+    public void decay() {
+        for (long[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>>= 1;
+            }
+        }
+        total >>>= 1;
+    }
+
+    public long total() {
+        return total;
+    }
+
+    private int index(long keyHash, int row) {
+        // murmur3 finalizer
+        long h = keyHash * SEEDS[row];
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
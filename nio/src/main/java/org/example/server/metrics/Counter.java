@@ -0,0 +1,39 @@
+package org.example.server.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic counter, striped ({@link LongAdder}) so threads incrementing it concurrently don't contend
+ * on one cache line. Per-second rate is computed by the registry sampler, not on the hot path.
+ */
+public final class Counter {
+    private final LongAdder count = new LongAdder();
+    // sampler thread only (rate is read by exporters)
+    private long lastCount;
+    private volatile double rate;
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long delta) {
+        count.add(delta);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @return events per second during the last sampling interval
+     */
+    public double rate() {
+        return rate;
+    }
+
+    void sample(long elapsedNanos) {
+        final long current = count.sum();
+        rate = (current - lastCount) * 1_000_000_000.0 / elapsedNanos;
+        lastCount = current;
+    }
+}
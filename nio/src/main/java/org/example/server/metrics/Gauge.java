@@ -0,0 +1,9 @@
+package org.example.server.metrics;
+
+/**
+ * Current value read on demand (e.g. queue size), nothing is recorded.
+ */
+@FunctionalInterface
+public interface Gauge {
+    long value();
+}
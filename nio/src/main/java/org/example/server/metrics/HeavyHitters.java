@@ -0,0 +1,138 @@
+package org.example.server.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Top-K keys by count over a stream ({@link CountMinSketch} + min-heap of the K largest estimates), in memory
+ * that doesn't grow with the number of keys. A key enters the heap once its estimate beats the smallest one
+ * in it.
+ * <p>
+ * Single writer (e.g. an event loop). Other threads read the candidates published by {@link #publish()}
+ * & ask the sketch for their current estimates.
+ */
+public final class HeavyHitters<K> {
+    private final CountMinSketch sketch;
+    private final int k;
+    // min-heap by count: root is the weakest of the top K
+    private final Object[] keys;
+    private final long[] hashes;
+    private final long[] counts;
+    private final Map<K, Integer> positions;
+    private int size;
+    private volatile Candidates candidates = new Candidates(new Object[0], new long[0]);
+
+    public HeavyHitters(int width, int depth, int k) {
+        this.sketch = new CountMinSketch(width, depth);
+        this.k = k;
+        this.keys = new Object[k];
+        this.hashes = new long[k];
+        this.counts = new long[k];
+        this.positions = new HashMap<>(k * 2);
+    }
+
+    /**
+     * @return estimate of the key after adding
+     */
+    public long add(K key, long keyHash, long count) {
+        final long estimate = sketch.add(keyHash, count);
+        final Integer position = positions.get(key);
+        if (position != null) {
+            counts[position] = estimate;
+            siftDown(position);
+        } else if (size < k) {
+            set(size, key, keyHash, estimate);
+            siftUp(size++);
+        } else if (k > 0 && estimate > counts[0]) {
+            positions.remove(keys[0]);
+            set(0, key, keyHash, estimate);
+            siftDown(0);
+        }
+        return estimate;
+    }
+
+    public long estimate(long keyHash) {
+        return sketch.estimate(keyHash);
+    }
+
+    // halving keeps the heap order
+    public void decay() {
+        sketch.decay();
+        for (int i = 0; i < size; i++) {
+            counts[i] >>>= 1;
+        }
+    }
+
+    /**
+     * Make the current top K visible to other threads (writer thread, e.g. once per sampling interval).
+     */
+    public void publish() {
+        final Object[] snapshotKeys = new Object[size];
+        final long[] snapshotHashes = new long[size];
+        System.arraycopy(keys, 0, snapshotKeys, 0, size);
+        System.arraycopy(hashes, 0, snapshotHashes, 0, size);
+        candidates = new Candidates(snapshotKeys, snapshotHashes);
+    }
+
+    /**
+     * Keys of the last published top K (any thread), their counts come from {@link #estimate(long)}.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachCandidate(CandidateConsumer<K> consumer) {
+        final Candidates current = candidates;
+        for (int i = 0; i < current.keys.length; i++) {
+            consumer.accept((K) current.keys[i], current.hashes[i]);
+        }
+    }
+
+    @FunctionalInterface
+    public interface CandidateConsumer<K> {
+        void accept(K key, long keyHash);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void set(int position, Object key, long hash, long count) {
+        keys[position] = key;
+        hashes[position] = hash;
+        counts[position] = count;
+        positions.put((K) key, position);
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            final int parent = (position - 1) >>> 1;
+            if (counts[parent] <= counts[position]) {
+                return;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            final int left = 2 * position + 1;
+            if (left >= size) {
+                return;
+            }
+            final int right = left + 1;
+            final int smallest = right < size && counts[right] < counts[left] ? right : left;
+            if (counts[position] <= counts[smallest]) {
+                return;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        final Object key = keys[a];
+        final long hash = hashes[a];
+        final long count = counts[a];
+        set(a, keys[b], hashes[b], counts[b]);
+        set(b, key, hash, count);
+    }
+
+    private record Candidates(Object[] keys, long[] hashes) {
+    }
+}
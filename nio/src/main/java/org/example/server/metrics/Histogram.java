@@ -0,0 +1,121 @@
+package org.example.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent log-linear histogram (every power-of-two range split into 16 linear sub-buckets, ~6% precision).
+ * Recording threads are spread over stripes by thread hash, recording is a couple of atomic adds
+ * without allocation or locks. Percentiles are reported for the last sampling interval
+ * (difference between two cumulative snapshots taken by the registry sampler).
+ */
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT + 1) * SUB_BUCKETS;
+    // extra slot of every stripe: sum of values
+    private static final int SUM = BUCKETS;
+    private static final int STRIPES = Integer.highestOneBit(Math.min(16, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+    // sampler thread only
+    private final long[] previous = new long[BUCKETS + 1];
+    private volatile Snapshot last = new Snapshot(new long[BUCKETS + 1]);
+
+    public Histogram() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS + 1);
+        }
+    }
+
+    public void record(long value) {
+        final long v = Math.max(0, value);
+        final AtomicLongArray stripe = stripes[Thread.currentThread().hashCode() & (STRIPES - 1)];
+        stripe.incrementAndGet(indexOf(v));
+        stripe.addAndGet(SUM, v);
+    }
+
+    public Snapshot lastInterval() {
+        return last;
+    }
+
+    void sample() {
+        final long[] interval = new long[BUCKETS + 1];
+        for (int i = 0; i <= BUCKETS; i++) {
+            long total = 0;
+            for (AtomicLongArray stripe : stripes) {
+                total += stripe.get(i);
+            }
+            interval[i] = total - previous[i];
+            previous[i] = total;
+        }
+        last = new Snapshot(interval);
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+        final int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return Math.min((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket, BUCKETS - 1);
+    }
+
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long subBucket = index % SUB_BUCKETS;
+        final long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (subBucket + 1) * width - 1;
+    }
+
+    /**
+     * Immutable counts of one interval.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += counts[i];
+            }
+            this.count = total;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public double mean() {
+            return count == 0 ? 0 : (double) counts[SUM] / count;
+        }
+
+        /**
+         * @param percentile 0..100
+         * @return upper bound of the bucket the percentile falls into
+         */
+        public long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return upperBoundOf(i);
+                }
+            }
+            return upperBoundOf(BUCKETS - 1);
+        }
+
+        public long max() {
+            return percentile(100);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.server.metrics;
+
+import java.util.Map;
+
+/**
+ * Values of a changing set of labels read on demand (e.g. top talkers by address), exported as
+ * {@code name.label} each.
+ */
+@FunctionalInterface
+public interface LabeledGauge {
+    Map<String, Long> values();
+}
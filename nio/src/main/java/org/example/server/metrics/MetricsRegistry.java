@@ -0,0 +1,138 @@
+package org.example.server.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.lang.String.format;
+
+/**
+ * Named counters, gauges & histograms of one server. Metrics are created once at startup
+ * & recorded through direct references, so the hot path never looks anything up by name.
+ * <p>
+ * A daemon sampler turns cumulative values into per-second rates & per-interval percentiles,
+ * exporters (JMX, {@link AdminEndpoint}) only read the flattened {@link #snapshot()}.
+ */
+public final class MetricsRegistry implements AutoCloseable {
+    private static final long SAMPLE_INTERVAL_MILLIS = 1_000;
+
+    private final Map<String, Object> metrics = new LinkedHashMap<>();
+    private Thread sampler;
+    private ObjectName objectName;
+
+    public synchronized Counter counter(String name) {
+        return register(name, new Counter());
+    }
+
+    public synchronized Histogram histogram(String name) {
+        return register(name, new Histogram());
+    }
+
+    public synchronized Gauge gauge(String name, Gauge gauge) {
+        return register(name, gauge);
+    }
+
+    public synchronized LabeledGauge labeledGauge(String name, LabeledGauge gauge) {
+        return register(name, gauge);
+    }
+
+    private <M> M register(String name, M metric) {
+        if (metrics.putIfAbsent(name, metric) != null) {
+            throw new IllegalArgumentException("Metric already exists: " + name);
+        }
+        return metric;
+    }
+
+    /**
+     * Every metric flattened to plain values: counter -> total & rate, histogram -> count, mean & percentiles,
+     * labeled gauge -> value per label.
+     */
+    public synchronized Map<String, Number> snapshot() {
+        final Map<String, Number> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            final String name = entry.getKey();
+            if (entry.getValue() instanceof Counter counter) {
+                values.put(name, counter.count());
+                values.put(name + ".rate", Math.round(counter.rate() * 10) / 10.0);
+            } else if (entry.getValue() instanceof Gauge gauge) {
+                values.put(name, gauge.value());
+            } else if (entry.getValue() instanceof LabeledGauge gauge) {
+                gauge.values().forEach((label, value) -> values.put(name + "." + label, value));
+            } else if (entry.getValue() instanceof Histogram histogram) {
+                final Histogram.Snapshot snapshot = histogram.lastInterval();
+                values.put(name + ".count", snapshot.count());
+                values.put(name + ".mean", Math.round(snapshot.mean() * 10) / 10.0);
+                values.put(name + ".p50", snapshot.percentile(50));
+                values.put(name + ".p99", snapshot.percentile(99));
+                values.put(name + ".p999", snapshot.percentile(99.9));
+                values.put(name + ".max", snapshot.max());
+            }
+        }
+        return values;
+    }
+
+    public synchronized void start() {
+        if (sampler != null) {
+            return;
+        }
+        sampler = new Thread(this::sampleLoop, "metrics-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * Expose the snapshot as attributes of a dynamic MBean, e.g. {@code org.example.server:type=SimpleServer,port=8020}.
+     */
+    public synchronized void registerMBean(String name) {
+        try {
+            objectName = new ObjectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(this), objectName);
+        } catch (JMException e) {
+            throw new RuntimeException(format("Failed to register MBean %s", name), e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (sampler != null) {
+            sampler.interrupt();
+            sampler = null;
+        }
+        if (objectName != null) {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                System.err.println("Failed to unregister MBean " + objectName);
+            }
+            objectName = null;
+        }
+    }
+
+    private void sampleLoop() {
+        long last = System.nanoTime();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            final long now = System.nanoTime();
+            sample(now - last);
+            last = now;
+        }
+    }
+
+    private synchronized void sample(long elapsedNanos) {
+        for (Object metric : metrics.values()) {
+            if (metric instanceof Counter counter) {
+                counter.sample(elapsedNanos);
+            } else if (metric instanceof Histogram histogram) {
+                histogram.sample();
+            }
+        }
+    }
+}
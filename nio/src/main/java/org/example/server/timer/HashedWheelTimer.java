@@ -0,0 +1,137 @@
+package org.example.server.timer;
+
+/**
+ * Hashed timing wheel (Varghese & Lauck): circular array of buckets, each covering one tick.
+ * Task due in N ticks goes to bucket (current + N) % wheelSize with N / wheelSize remaining rounds,
+ * so schedule & cancel are O(1) no matter how many timeouts are pending (e.g. one per connection).
+ * <p>
+ * Has no thread of its own: the owner (event loop) calls {@link #tick(long)} after every select,
+ * scheduling, cancellation & tasks happen on the owner thread only.
+ */
+public final class HashedWheelTimer {
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long tickNanos;
+
+    private long tick;
+    private long lastTickNanos;
+    private int pending;
+
+    public HashedWheelTimer(long tickMillis, int wheelSize) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be power of two: " + wheelSize);
+        }
+        this.wheel = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheelSize - 1;
+        this.tickNanos = tickMillis * 1_000_000;
+        this.lastTickNanos = System.nanoTime();
+    }
+
+    public Timeout schedule(long delayMillis, Runnable task) {
+        // counted from the last processed tick (owner may be late with tick()), rounded up:
+        // task never fires earlier than requested
+        final long delayNanos = System.nanoTime() - lastTickNanos + delayMillis * 1_000_000;
+        final long ticks = Math.max(1, (delayNanos + tickNanos - 1) / tickNanos);
+        final Timeout timeout = new Timeout(task, (ticks - 1) / wheel.length);
+        wheel[(int) ((tick + ticks) & mask)].add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Advance the wheel to {@code nowNanos}, running every task due till now.
+     */
+    public void tick(long nowNanos) {
+        while (nowNanos - lastTickNanos >= tickNanos) {
+            lastTickNanos += tickNanos;
+            tick++;
+            wheel[(int) (tick & mask)].expire();
+        }
+    }
+
+    /**
+     * @return how long the owner may block in select (0 = no timeouts pending, block without limit)
+     */
+    public long selectTimeoutMillis() {
+        if (pending == 0) {
+            return 0;
+        }
+        final long untilNextTick = tickNanos - (System.nanoTime() - lastTickNanos);
+        return Math.max(1, untilNextTick / 1_000_000);
+    }
+
+    public int pending() {
+        return pending;
+    }
+
+    final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (tail == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+            pending++;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            pending--;
+        }
+
+        private void expire() {
+            Timeout due = null;
+            Timeout dueTail = null;
+            Timeout timeout = head;
+            while (timeout != null) {
+                final Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    if (dueTail == null) {
+                        due = timeout;
+                    } else {
+                        dueTail.next = timeout;
+                    }
+                    dueTail = timeout;
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+            // run tasks only after the bucket is consistent: a task may cancel or schedule other timeouts
+            while (due != null) {
+                final Timeout next = due.next;
+                due.next = null;
+                if (!due.isCancelled()) {
+                    try {
+                        due.expire();
+                    } catch (RuntimeException e) {
+                        // the other due tasks & the owner's loop go on
+                        System.err.println("Timer task failed: " + e);
+                    }
+                }
+                due = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.server.timer;
+
+/**
+ * Handle of the task scheduled in {@link HashedWheelTimer}, node of the bucket's doubly linked list,
+ * so cancellation is just unlinking (O(1), no search & no garbage left in the wheel).
+ */
+public final class Timeout {
+    private final Runnable task;
+    // full turns of the wheel to wait before the task is due in its bucket
+    long remainingRounds;
+    HashedWheelTimer.Bucket bucket;
+    Timeout prev;
+    Timeout next;
+    private boolean cancelled;
+    private boolean expired;
+
+    Timeout(Runnable task, long remainingRounds) {
+        this.task = task;
+        this.remainingRounds = remainingRounds;
+    }
+
+    /**
+     * Must be called by the timer owner thread.
+     */
+    public void cancel() {
+        if (cancelled || expired) {
+            return;
+        }
+        cancelled = true;
+        if (bucket != null) {
+            bucket.remove(this);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isExpired() {
+        return expired;
+    }
+
+    void expire() {
+        expired = true;
+        task.run();
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.file;
+
+import org.example.file.exception.FileError;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void chunkIsTransferredFromPosition() throws IOException {
+        final byte[] content = content(10_000);
+        final Path source = write("source.bin", content);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (FileChannel channel = FileChannel.open(source, READ);
+             WritableByteChannel target = Channels.newChannel(out)) {
+            assertEquals(1_000, FileService.transferChunk(channel, 500, 1_000, target));
+        }
+
+        assertArrayEquals(Arrays.copyOfRange(content, 500, 1_500), out.toByteArray());
+    }
+
+    @Test
+    public void truncatedSourceEndsTransfer() throws IOException {
+        final Path source = write("source.bin", content(10_000));
+
+        try (FileChannel channel = FileChannel.open(source, READ, WRITE);
+             WritableByteChannel target = Channels.newChannel(new ByteArrayOutputStream())) {
+            channel.truncate(4_000);
+
+            // the rest never comes: EOF instead of 0 bytes again & again
+            assertThrows(EOFException.class, () -> FileService.transferChunk(channel, 4_000, 6_000, target));
+            assertThrows(EOFException.class, () -> FileService.transferChunk(channel, 8_000, 2_000, target));
+            // up to the new end is still fine
+            assertEquals(1_000, FileService.transferChunk(channel, 3_000, 7_000, target));
+        }
+    }
+
+    @Test
+    public void emptyChunkIsNotAnError() throws IOException {
+        final Path source = write("source.bin", content(100));
+
+        try (FileChannel channel = FileChannel.open(source, READ);
+             WritableByteChannel target = Channels.newChannel(new ByteArrayOutputStream())) {
+            assertEquals(0, FileService.transferChunk(channel, 100, 0, target));
+        }
+    }
+
+    @Test
+    public void wholeFileIsTransferred() throws IOException {
+        final byte[] content = content(1024 * 1024 + 7);
+        final Path source = write("source.bin", content);
+        final Path target = directory.resolve("target.bin");
+        final Map<String, List<FileError>> errors = new HashMap<>();
+
+        FileService.transferFile(source.toString(), target.toString(), errors);
+
+        assertTrue(errors.isEmpty(), errors.toString());
+        assertArrayEquals(content, Files.readAllBytes(target));
+    }
+
+    private Path write(String name, byte[] content) throws IOException {
+        return Files.write(directory.resolve(name), content);
+    }
+
+    private static byte[] content(int size) {
+        final byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+}
@@ -0,0 +1,59 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Several acceptors listen on the same port (SO_REUSEPORT), the kernel spreads the clients over them.
+ */
+public class AcceptorShardingTest {
+    private static final int CLIENTS = 50;
+
+    @Test
+    public void clientsOfEveryListenerAreServed() throws IOException, InterruptedException {
+        final List<TestClient> clients = new ArrayList<>();
+        try (TestServer server = TestServer.start(TestServer.config().acceptorCount(3).workerCount(2).build())) {
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.add(server.connect());
+            }
+            server.awaitConnections(CLIENTS);
+
+            clients.get(0).send("to all");
+
+            for (TestClient client : clients) {
+                client.await("]: to all");
+            }
+            assertEquals(CLIENTS, server.metric("connections.accepted"));
+        } finally {
+            for (TestClient client : clients) {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    public void acceptorsServeClientsWithoutWorkers() throws IOException, InterruptedException {
+        final List<TestClient> clients = new ArrayList<>();
+        try (TestServer server = TestServer.start(TestServer.config().acceptorCount(2).workerCount(0).build())) {
+            for (int i = 0; i < 10; i++) {
+                clients.add(server.connect());
+            }
+            server.awaitConnections(10);
+
+            clients.get(9).send("to all");
+
+            for (TestClient client : clients) {
+                client.await("]: to all");
+            }
+        } finally {
+            for (TestClient client : clients) {
+                client.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Connections above maxConnections wait in the listener's backlog (TCP handshake done by the kernel) & are
+ * accepted as others close.
+ */
+public class AdmissionControlTest {
+
+    @Test
+    public void connectionAboveLimitWaitsInBacklog() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config().maxConnections(2).build());
+             TestClient first = server.connect();
+             TestClient second = server.connect();
+             TestClient waiting = server.connect()) {
+            server.awaitMetric("connections.acceptPaused", 1);
+            assertTrue(server.metric("connections.deferred") > 0);
+
+            // the waiting client's message is read only once it is accepted
+            waiting.send("from backlog");
+            first.send("ping");
+            first.await("]: ping");
+            second.await("]: ping");
+            assertEquals(2, server.metric("connections.accepted"));
+            assertEquals(2, server.metric("connections.active"));
+
+            first.send("q");
+            first.awaitClosed();
+
+            server.awaitMetric("connections.accepted", 3);
+            server.awaitMetric("connections.acceptPaused", 1);
+            second.await("]: from backlog");
+            waiting.await("]: from backlog");
+        }
+    }
+
+    @Test
+    public void burstIsAcceptedOverSeveralIterations() throws IOException, InterruptedException {
+        final List<TestClient> clients = new ArrayList<>();
+        try (TestServer server = TestServer.start(TestServer.config().maxAcceptsPerIteration(1).build())) {
+            for (int i = 0; i < 20; i++) {
+                clients.add(server.connect());
+            }
+
+            server.awaitConnections(20);
+            assertEquals(20, server.metric("connections.accepted"));
+            assertEquals(0, server.metric("connections.deferred"));
+        } finally {
+            for (TestClient client : clients) {
+                client.close();
+            }
+        }
+    }
+}
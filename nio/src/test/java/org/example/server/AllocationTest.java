@@ -0,0 +1,210 @@
+package org.example.server;
+
+import org.example.server.codec.DelimiterFrameEncoder;
+import org.example.server.codec.FrameEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static java.lang.String.format;
+import static java.nio.ByteBuffer.wrap;
+import static java.nio.channels.SelectionKey.OP_READ;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Delivery of a chat message (read, decode, parse, route, encode, enqueue to every recipient & flush) allocates
+ * nothing in steady state: one client broadcasts to all the others & the bytes allocated by every thread
+ * the server started (acceptor, worker loops, processors...) are divided by the message count. The processing
+ * part alone is checked as well, with the server's own {@link ServerConfig#isProfileAllocations()} counter.
+ * <p>
+ * Rare one-off allocations (pool & ring growth) are amortized by the message count, so the limits are close
+ * to zero but not zero.
+ */
+public class AllocationTest {
+    private static final int PORT = 9090;
+    private static final int RECIPIENTS = 50;
+    private static final int WARMUP_MESSAGES = 30_000;
+    private static final int MESSAGES = 100_000;
+    private static final int BATCH = 1_000;
+    private static final long DELIVERY_TIMEOUT_MILLIS = 60_000;
+    // processing threads, per message
+    private static final double MAX_PROCESSING_BYTES = 0.1;
+    // every server thread, per message delivered to all recipients: any object per message (or per recipient)
+    // is 16 bytes at least, below that only amortized pool growth & per-second work fit
+    private static final double MAX_DELIVERY_BYTES = 4.0;
+    // samples gauges once a second, not a part of delivery
+    private static final String SAMPLER_THREAD = "metrics-sampler";
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    public void broadcastAllocatesNothingInSteadyState() throws IOException, InterruptedException {
+        final Set<Long> harness = liveThreadIds();
+        final SimpleServer server = new SimpleServer(ServerConfig.builder()
+                .port(PORT)
+                .announceConnections(false)
+                .jmxEnabled(false)
+                .profileAllocations(true)
+                // drain is a single thread, it must lag behind without being taken for a slow consumer
+                .highWatermark(64 * 1024 * 1024)
+                .lowWatermark(32 * 1024 * 1024)
+                .build());
+        final Thread serverThread = new Thread(server::startServer, "server");
+        serverThread.start();
+
+        final Drain drain = new Drain(RECIPIENTS);
+        harness.add(drain.thread.getId());
+        final ServerMetrics metrics = server.getMetrics();
+        try {
+            // let the server finish registration of the last clients, otherwise they miss the first messages
+            Thread.sleep(1_000);
+            // JIT, pools, rings & caches reach their steady state first
+            send(drain, WARMUP_MESSAGES);
+
+            // every thread started since the server was created, except the drain
+            final long[] serverThreads = liveThreadIds().stream()
+                    .filter(id -> !harness.contains(id))
+                    .filter(id -> !SAMPLER_THREAD.equals(THREADS.getThreadInfo(id).getThreadName()))
+                    .mapToLong(Long::longValue)
+                    .toArray();
+            final long[] threadBytesBefore = THREADS.getThreadAllocatedBytes(serverThreads);
+            final long processedBefore = metrics.processedMessages();
+            final long processingBytesBefore = metrics.allocatedBytes();
+            send(drain, MESSAGES);
+            final long[] threadBytesAfter = THREADS.getThreadAllocatedBytes(serverThreads);
+            final long processed = metrics.processedMessages() - processedBefore;
+            final long processingBytes = metrics.allocatedBytes() - processingBytesBefore;
+
+            long deliveryBytes = 0;
+            for (int i = 0; i < serverThreads.length; i++) {
+                // -1: thread has ended meanwhile
+                if (threadBytesBefore[i] >= 0 && threadBytesAfter[i] >= 0) {
+                    deliveryBytes += threadBytesAfter[i] - threadBytesBefore[i];
+                }
+            }
+            final double processingPerMessage = (double) processingBytes / processed;
+            final double deliveryPerMessage = (double) deliveryBytes / processed;
+            System.out.println(format("recipients=%d messages=%d threads=%d processing=%.4f B/msg delivery=%.4f B/msg",
+                    RECIPIENTS, processed, serverThreads.length, processingPerMessage, deliveryPerMessage));
+            assertTrue(processingPerMessage <= MAX_PROCESSING_BYTES, format(
+                    "Processing allocates %.4f bytes per message, %.4f at most", processingPerMessage,
+                    MAX_PROCESSING_BYTES));
+            assertTrue(deliveryPerMessage <= MAX_DELIVERY_BYTES, format(
+                    "Server threads allocate %.4f bytes per message, %.4f at most", deliveryPerMessage,
+                    MAX_DELIVERY_BYTES));
+        } finally {
+            drain.close();
+            server.shutdown();
+            serverThread.join(5_000);
+        }
+    }
+
+    private static Set<Long> liveThreadIds() {
+        return Arrays.stream(THREADS.getAllThreadIds()).boxed().collect(Collectors.toSet());
+    }
+
+    // in batches delivered to everybody before the next one, so queues & pools stay at their steady size
+    private static void send(Drain drain, int count) throws IOException, InterruptedException {
+        final FrameEncoder encoder = DelimiterFrameEncoder.lines();
+        final ByteBuffer frame = encoder.encode(wrap("allocation check message".getBytes()));
+        final long start = drain.delivered;
+        for (int i = 0; i < count; i++) {
+            frame.rewind();
+            while (frame.hasRemaining()) {
+                drain.sender.write(frame);
+            }
+            if ((i + 1) % BATCH == 0 || i == count - 1) {
+                // sender is subscribed too & receives its own messages back
+                awaitDelivered(drain, start + (long) (i + 1) * (drain.recipients + 1));
+            }
+        }
+    }
+
+    private static void awaitDelivered(Drain drain, long count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + DELIVERY_TIMEOUT_MILLIS;
+        while (drain.delivered < count) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException(format("Only %d of %d messages delivered", drain.delivered, count));
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    // recipients (& the sender) read & discard everything, so the server never hits its watermarks
+    private static final class Drain implements Runnable {
+        private final Selector selector;
+        private final Thread thread = new Thread(this, "drain");
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        private final int recipients;
+        // non-blocking, writes spin until the whole frame is accepted
+        private final SocketChannel sender;
+        // complete lines received by all recipients together, drain thread only writes
+        private volatile long delivered;
+        private volatile boolean running = true;
+
+        private Drain(int recipients) throws IOException {
+            this.recipients = recipients;
+            selector = Selector.open();
+            sender = connect();
+            for (int i = 0; i < recipients; i++) {
+                connect();
+            }
+            thread.start();
+        }
+
+        private SocketChannel connect() throws IOException {
+            final SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", PORT));
+            channel.configureBlocking(false);
+            channel.register(selector, OP_READ);
+            return channel;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select(100);
+                    final Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                    while (iterator.hasNext()) {
+                        final SelectionKey key = iterator.next();
+                        iterator.remove();
+                        buffer.clear();
+                        if (((SocketChannel) key.channel()).read(buffer) == -1) {
+                            key.cancel();
+                        }
+                        buffer.flip();
+                        long lines = 0;
+                        while (buffer.hasRemaining()) {
+                            if (buffer.get() == '\n') {
+                                lines++;
+                            }
+                        }
+                        delivered += lines;
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Drain failed: " + e.getMessage());
+            }
+        }
+
+        private void close() throws IOException, InterruptedException {
+            running = false;
+            selector.wakeup();
+            thread.join();
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+import static org.example.server.OutboundQueueTest.publish;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Slow consumers above the high watermark: disconnected or their frames dropped, the publisher isn't affected.
+ */
+public class BackpressureTest {
+    private static final int MESSAGES = 2_000;
+
+    @Test
+    public void slowConsumerIsDisconnected() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(config(SlowConsumerPolicy.DISCONNECT));
+             TestClient publisher = server.connect();
+             TestClient slow = server.connectSlow()) {
+            server.awaitConnections(2);
+
+            publish(publisher, MESSAGES);
+
+            assertTrue(slow.awaitClosed());
+            assertEquals(1, server.server().getCloseCount(CloseReason.SLOW_CONSUMER));
+            assertEquals(1, server.server().getBackpressure().disconnected());
+            publisher.send("still here");
+            publisher.await("]: still here");
+        }
+    }
+
+    @Test
+    public void newestFramesAreDroppedForSlowConsumer() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(config(SlowConsumerPolicy.DROP_NEWEST));
+             TestClient publisher = server.connect();
+             TestClient slow = server.connectSlow()) {
+            server.awaitConnections(2);
+
+            publish(publisher, MESSAGES);
+
+            final int received = drain(slow);
+            assertTrue(received < MESSAGES, received + " messages received");
+            // room again for the new ones
+            publisher.send("after");
+            slow.await("]: after");
+            assertTrue(server.server().getBackpressure().droppedNewest() > 0);
+            assertEquals(0, server.server().getCloseCount(CloseReason.SLOW_CONSUMER));
+        }
+    }
+
+    @Test
+    public void oldestFramesAreDroppedForSlowConsumer() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(config(SlowConsumerPolicy.DROP_OLDEST));
+             TestClient publisher = server.connect();
+             TestClient slow = server.connectSlow()) {
+            server.awaitConnections(2);
+
+            publish(publisher, MESSAGES);
+
+            // the first frame (maybe partially written already) & the newest ones are kept
+            assertTrue(slow.readLine().contains("]: 0 "));
+            final int received = readUntil(slow, "]: " + (MESSAGES - 1) + " ");
+            assertTrue(received < MESSAGES - 1, received + " messages received");
+            assertTrue(server.server().getBackpressure().droppedOldest() > 0);
+        }
+    }
+
+    @Test
+    public void lowWatermarkMustNotExceedHighWatermark() {
+        assertThrows(IllegalArgumentException.class, () -> new Backpressure(10, 11, SlowConsumerPolicy.DISCONNECT));
+    }
+
+    private static ServerConfig config(SlowConsumerPolicy policy) throws IOException {
+        return TestServer.config()
+                .sendBufferSize(4 * 1024)
+                .highWatermark(32 * 1024)
+                .lowWatermark(16 * 1024)
+                .slowConsumerPolicy(policy)
+                .build();
+    }
+
+    // everything queued for the client (read until nothing comes for a while)
+    private static int drain(TestClient client) throws IOException {
+        client.socket().setSoTimeout(500);
+        int lines = 0;
+        try {
+            while (client.readLine() != null) {
+                lines++;
+            }
+        } catch (SocketTimeoutException e) {
+            // drained
+        } finally {
+            client.socket().setSoTimeout(TestClient.TIMEOUT_MILLIS);
+        }
+        return lines;
+    }
+
+    // lines read before the expected one
+    private static int readUntil(TestClient client, String fragment) throws IOException {
+        int lines = 0;
+        String line;
+        while (!(line = client.readLine()).contains(fragment)) {
+            lines++;
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * One frame is encoded per broadcast & shared by all recipients, it returns to the pool once written to every one.
+ */
+public class BroadcastTest {
+    private static final int CLIENTS = 10;
+
+    @Test
+    public void sharedFrameIsReleasedAfterDeliveryToAll() throws IOException, InterruptedException {
+        final List<TestClient> clients = new ArrayList<>();
+        try (TestServer server = TestServer.start(TestServer.config().workerCount(3).build())) {
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.add(server.connect());
+            }
+            server.awaitConnections(CLIENTS);
+
+            for (int i = 0; i < 100; i++) {
+                clients.get(i % CLIENTS).send("message " + i);
+            }
+            for (TestClient client : clients) {
+                client.await("]: message 99");
+            }
+
+            // frames are released after their last write, i.e. right after the bytes are handed over to the socket
+            final long deadline = System.currentTimeMillis() + TestClient.TIMEOUT_MILLIS;
+            while (server.server().getBufferPool().leased() != 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, server.server().getBufferPool().leased());
+        } finally {
+            for (TestClient client : clients) {
+                client.close();
+            }
+        }
+    }
+}
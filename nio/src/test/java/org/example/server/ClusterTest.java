@@ -0,0 +1,43 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Clients of different nodes talk to each other: messages are relayed between the nodes.
+ */
+public class ClusterTest {
+
+    @Test
+    public void broadcastAndTopicsSpanNodes() throws IOException, InterruptedException {
+        final int firstClusterPort = TestClient.freePort();
+        final int secondClusterPort = TestClient.freePort();
+        try (TestServer first = TestServer.start(TestServer.config()
+                .clusterPort(firstClusterPort)
+                .clusterPeers("127.0.0.1:" + secondClusterPort)
+                .build());
+             TestServer second = TestServer.start(TestServer.config()
+                     .clusterPort(secondClusterPort)
+                     .clusterPeers("127.0.0.1:" + firstClusterPort)
+                     .build());
+             TestClient alice = first.connect();
+             TestClient bob = second.connect()) {
+            first.awaitConnections(1);
+            second.awaitConnections(1);
+            first.awaitMetric("cluster.peers.connected", 1);
+            second.awaitMetric("cluster.peers.connected", 1);
+
+            alice.send("hello bob");
+            assertTrue(bob.readLine().endsWith("]: hello bob"));
+            assertTrue(alice.readLine().endsWith("]: hello bob"));
+
+            bob.send("/sub room");
+            bob.await("subscribed to #room");
+            alice.send("/pub room for the room");
+            bob.await("]: for the room");
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConnectionRegistryTest {
+    private final ConnectionRegistry registry = new ConnectionRegistry();
+
+    @Test
+    public void idsAreDenseSlots() {
+        final Connection first = connection();
+        final Connection second = connection();
+
+        registry.add(first);
+        registry.add(second);
+
+        assertEquals(0, first.id());
+        assertEquals(1, second.id());
+        assertSame(second, registry.get(1));
+        assertNull(registry.get(2));
+        assertNull(registry.get(-1));
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void freedIdIsReusedFirst() {
+        final List<Connection> connections = addConnections(3);
+
+        registry.remove(connections.get(0));
+        registry.remove(connections.get(2));
+        final Connection next = connection();
+        registry.add(next);
+
+        // the most recently freed one
+        assertEquals(2, next.id());
+        assertNull(registry.get(0));
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void removedConnectionIsRemovedOnce() {
+        final Connection connection = connection();
+        registry.add(connection);
+
+        assertTrue(registry.remove(connection));
+        assertFalse(registry.remove(connection));
+        assertFalse(registry.remove(connection()));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void registryGrowsBeyondInitialCapacity() {
+        final List<Connection> connections = addConnections(200);
+        for (int i = 0; i < 200; i += 2) {
+            registry.remove(connections.get(i));
+        }
+
+        final List<Connection> visited = new ArrayList<>();
+        registry.forEach(visited::add);
+
+        assertEquals(100, registry.size());
+        assertEquals(100, visited.size());
+        for (Connection connection : visited) {
+            assertEquals(1, connection.id() % 2);
+            assertSame(connection, registry.get(connection.id()));
+        }
+    }
+
+    @Test
+    public void clearForgetsEverything() {
+        addConnections(3);
+
+        registry.clear();
+        final Connection next = connection();
+        registry.add(next);
+
+        assertEquals(0, next.id());
+        assertEquals(1, registry.size());
+    }
+
+    private List<Connection> addConnections(int count) {
+        final List<Connection> connections = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final Connection connection = connection();
+            registry.add(connection);
+            connections.add(connection);
+        }
+        return connections;
+    }
+
+    // the registry doesn't touch the channel, key or loop
+    private static Connection connection() {
+        return new Connection(null, null, null, null, new InetSocketAddress("127.0.0.1", 1));
+    }
+}
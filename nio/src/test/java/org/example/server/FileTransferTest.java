@@ -0,0 +1,122 @@
+package org.example.server;
+
+import org.example.server.codec.DelimiterFrameEncoder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileTransferTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void fileIsSentInChunksWithHeaders() throws IOException {
+        final byte[] content = content(2_500);
+        Files.write(directory.resolve("data.bin"), content);
+        final AtomicReference<Boolean> completed = new AtomicReference<>();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (WritableByteChannel channel = Channels.newChannel(out)) {
+            final FileTransfer transfer = new FileTransfer("data.bin", FileChannel.open(directory.resolve("data.bin"), READ),
+                    500, 1_000, DelimiterFrameEncoder.lines(), (finished, done) -> completed.set(done));
+            while (transfer.hasMore()) {
+                transfer.startChunk();
+                assertTrue(transfer.inChunk());
+                assertTrue(transfer.writeChunk(channel));
+                assertFalse(transfer.inChunk());
+            }
+            transfer.finish(true);
+            assertEquals(2_500, transfer.position());
+        }
+
+        assertTrue(completed.get());
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals("/chunk 500 1000 2500 data.bin", readLine(in));
+        assertArrayEquals(Arrays.copyOfRange(content, 500, 1_500), in.readNBytes(1_000));
+        assertEquals("/chunk 1500 1000 2500 data.bin", readLine(in));
+        in.readNBytes(1_000);
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void clientDownloadsFile() throws IOException, InterruptedException {
+        final byte[] content = content(300 * 1024);
+        Files.write(directory.resolve("data.bin"), content);
+        try (TestServer server = TestServer.start(TestServer.config()
+                .fileDirectory(directory.toString())
+                .fileChunkBytes(64 * 1024)
+                .build());
+             TestClient client = server.connect()) {
+            final InputStream in = client.socket().getInputStream();
+
+            client.send("/file data.bin 1000");
+
+            assertEquals("[System]: sending data.bin (307200 bytes) from offset 1000", readLine(in));
+            final ByteArrayOutputStream received = new ByteArrayOutputStream();
+            String line;
+            while ((line = readLine(in)).startsWith(FileTransfer.CHUNK_COMMAND + " ")) {
+                final String[] header = line.split(" ");
+                assertEquals(1000 + received.size(), Long.parseLong(header[1]));
+                received.write(in.readNBytes(Integer.parseInt(header[2])));
+            }
+            assertEquals("[System]: sent data.bin, 306200 bytes from offset 1000", line);
+            assertArrayEquals(Arrays.copyOfRange(content, 1000, content.length), received.toByteArray());
+        }
+    }
+
+    @Test
+    public void onlyFilesOfTheDirectoryAreServed() throws IOException, InterruptedException {
+        Files.createDirectories(directory.resolve("shared"));
+        Files.write(directory.resolve("secret.txt"), content(10));
+        try (TestServer server = TestServer.start(TestServer.config()
+                .fileDirectory(directory.resolve("shared").toString())
+                .build());
+             TestClient client = server.connect()) {
+
+            client.send("/file ../secret.txt");
+            client.await("no such file ../secret.txt");
+            client.send("/file missing.txt");
+            client.await("no such file missing.txt");
+        }
+    }
+
+    // header lines are ASCII, the bytes after them are raw
+    private static String readLine(InputStream in) throws IOException {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) {
+                throw new IOException("Connection closed");
+            }
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] content(int size) {
+        final byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+}
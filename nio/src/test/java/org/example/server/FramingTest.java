@@ -0,0 +1,113 @@
+package org.example.server;
+
+import org.example.server.codec.LengthFieldFrameDecoder;
+import org.example.server.codec.LengthFieldFrameEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Frames reach the server in pieces & several at once, the server accumulates them per connection.
+ */
+public class FramingTest {
+
+    @Test
+    public void lengthFieldFramesSplitAcrossWrites() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config()
+                .frameDecoder(new LengthFieldFrameDecoder(1024))
+                .frameEncoder(new LengthFieldFrameEncoder())
+                .build());
+             TestClient client = server.connect()) {
+            server.awaitConnections(1);
+            final OutputStream out = client.socket().getOutputStream();
+            final byte[] frames = ByteBuffer.allocate(64)
+                    .putInt(5).put(bytes("first"))
+                    .putInt(6).put(bytes("second"))
+                    .flip()
+                    .array();
+            final int length = 4 + 5 + 4 + 6;
+
+            // header cut in the middle, then the rest of the first frame together with the second one
+            out.write(frames, 0, 2);
+            out.flush();
+            Thread.sleep(50);
+            out.write(frames, 2, 5);
+            out.flush();
+            Thread.sleep(50);
+            out.write(frames, 7, length - 7);
+            out.flush();
+
+            final DataInputStream in = new DataInputStream(client.socket().getInputStream());
+            assertTrue(readFrame(in).endsWith("]: first"));
+            assertTrue(readFrame(in).endsWith("]: second"));
+        }
+    }
+
+    @Test
+    public void corruptedFrameClosesConnection() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config()
+                .frameDecoder(new LengthFieldFrameDecoder(16))
+                .frameEncoder(new LengthFieldFrameEncoder())
+                .build());
+             TestClient client = server.connect()) {
+            server.awaitConnections(1);
+
+            client.socket().getOutputStream().write(ByteBuffer.allocate(4).putInt(17).array());
+
+            assertTrue(client.awaitClosed());
+            server.awaitConnections(0);
+        }
+    }
+
+    @Test
+    public void lineSplitAcrossWritesIsAccumulated() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config().build());
+             TestClient client = server.connect()) {
+            server.awaitConnections(1);
+            final OutputStream out = client.socket().getOutputStream();
+
+            out.write(bytes("hel"));
+            out.flush();
+            Thread.sleep(50);
+            out.write(bytes("lo\nwor"));
+            out.flush();
+            Thread.sleep(50);
+            out.write(bytes("ld\n"));
+            out.flush();
+
+            assertTrue(client.readLine().endsWith("]: hello"));
+            assertTrue(client.readLine().endsWith("]: world"));
+        }
+    }
+
+    @Test
+    public void frameLargerThanBufferClosesConnection() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config().bufferSize(1024).build());
+             TestClient client = server.connect()) {
+            server.awaitConnections(1);
+
+            client.send("x".repeat(3000));
+
+            assertTrue(client.awaitClosed());
+            server.awaitConnections(0);
+            assertEquals(1, server.server().getCloseCount(CloseReason.PROTOCOL_ERROR));
+        }
+    }
+
+    private static String readFrame(DataInputStream in) throws IOException {
+        final byte[] payload = new byte[in.readInt()];
+        in.readFully(payload);
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
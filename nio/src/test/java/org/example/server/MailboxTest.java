@@ -0,0 +1,151 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MailboxTest {
+    // runs submitted tasks only when the test says so
+    private final Queue<Runnable> pool = new ArrayDeque<>();
+    private final List<Integer> processed = new ArrayList<>();
+    private final AtomicInteger drained = new AtomicInteger();
+
+    @Test
+    public void messagesAreProcessedInOrderByOneTask() {
+        final Mailbox mailbox = mailbox(8, 64);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(mailbox.offer(message(i)));
+        }
+
+        // submitted once, not per message
+        assertEquals(1, pool.size());
+        pool.poll().run();
+        assertEquals(List.of(0, 1, 2, 3, 4), processed);
+        assertEquals(0, mailbox.size());
+        assertTrue(pool.isEmpty());
+    }
+
+    @Test
+    public void runYieldsThePoolThreadAfterThroughput() {
+        final Mailbox mailbox = mailbox(8, 2);
+        for (int i = 0; i < 5; i++) {
+            mailbox.offer(message(i));
+        }
+
+        pool.poll().run();
+
+        assertEquals(List.of(0, 1), processed);
+        // the rest is submitted again behind the other mailboxes
+        assertEquals(1, pool.size());
+        pool.poll().run();
+        pool.poll().run();
+        assertEquals(List.of(0, 1, 2, 3, 4), processed);
+        assertTrue(pool.isEmpty());
+    }
+
+    @Test
+    public void capacityIsRoundedUpToPowerOfTwo() {
+        final Mailbox mailbox = mailbox(5, 64);
+
+        for (int i = 0; i < 8; i++) {
+            assertTrue(mailbox.offer(message(i)));
+        }
+
+        assertTrue(mailbox.isFull());
+        assertFalse(mailbox.offer(message(8)));
+        assertEquals(8, mailbox.size());
+    }
+
+    @Test
+    public void suspendedReadingResumesWhenDrainedToHalf() {
+        final Mailbox mailbox = mailbox(8, 3);
+        for (int i = 0; i < 8; i++) {
+            mailbox.offer(message(i));
+        }
+
+        assertTrue(mailbox.suspend());
+        // 5 left
+        pool.poll().run();
+        assertEquals(0, drained.get());
+        // 2 left
+        pool.poll().run();
+        assertEquals(1, drained.get());
+        pool.poll().run();
+        assertEquals(1, drained.get());
+    }
+
+    @Test
+    public void suspendIsNotNeededWhenAlreadyDrained() {
+        final Mailbox mailbox = mailbox(8, 64);
+        mailbox.offer(message(0));
+
+        assertFalse(mailbox.suspend());
+        pool.poll().run();
+        assertEquals(0, drained.get());
+    }
+
+    @Test
+    public void messagesAreNeverProcessedConcurrently() throws InterruptedException {
+        final int count = 100_000;
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        final AtomicInteger outOfOrder = new AtomicInteger();
+        final int[] next = new int[1];
+        final Mailbox mailbox = new Mailbox(null, executor, (connection, message) -> {
+            if (running.incrementAndGet() != 1) {
+                overlaps.incrementAndGet();
+            }
+            if (message.getInt(0) != next[0]++) {
+                outOfOrder.incrementAndGet();
+            }
+            running.decrementAndGet();
+        }, drained::incrementAndGet, 16, 4);
+
+        for (int i = 0; i < count; i++) {
+            final ByteBuffer message = message(i);
+            while (!mailbox.offer(message)) {
+                Thread.onSpinWait();
+            }
+        }
+        final long deadline = System.currentTimeMillis() + 5_000;
+        while (mailbox.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(count, next[0]);
+        assertEquals(0, overlaps.get());
+        assertEquals(0, outOfOrder.get());
+    }
+
+    @Test
+    public void capacityAndThroughputAreValidated() {
+        assertThrows(IllegalArgumentException.class, () -> mailbox(1, 64));
+        assertThrows(IllegalArgumentException.class, () -> mailbox(8, 0));
+    }
+
+    private Mailbox mailbox(int capacity, int throughput) {
+        return new Mailbox(null, pool::add, (connection, message) -> processed.add(message.getInt(0)),
+                drained::incrementAndGet, capacity, throughput);
+    }
+
+    private static ByteBuffer message(int value) {
+        return ByteBuffer.allocate(Integer.BYTES).putInt(0, value);
+    }
+}
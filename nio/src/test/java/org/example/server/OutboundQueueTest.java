@@ -0,0 +1,48 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Frames a client can't take right now wait in its outbound queue (written on OP_WRITE), the other clients
+ * get theirs meanwhile.
+ */
+public class OutboundQueueTest {
+    private static final int MESSAGES = 2_000;
+    private static final String PADDING = "x".repeat(100);
+
+    @Test
+    public void slowReaderGetsEverythingLaterInOrder() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config()
+                .sendBufferSize(4 * 1024)
+                .highWatermark(16 * 1024 * 1024)
+                .lowWatermark(8 * 1024 * 1024)
+                .build());
+             TestClient publisher = server.connect();
+             TestClient slow = server.connectSlow()) {
+            server.awaitConnections(2);
+
+            publish(publisher, MESSAGES);
+
+            // the whole burst has been delivered to the publisher while the slow client wasn't reading
+            for (int i = 0; i < MESSAGES; i++) {
+                assertTrue(slow.readLine().endsWith("]: " + i + " " + PADDING));
+            }
+            assertEquals(0, server.server().getBackpressure().disconnected());
+        }
+    }
+
+    // in batches, every batch is echoed to the publisher before the next one (so the publisher is a fast reader)
+    static void publish(TestClient publisher, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            publisher.send(i + " " + PADDING);
+            if ((i + 1) % 100 == 0) {
+                publisher.await("]: " + i + " ");
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.example.server;
+
+import org.example.server.buffer.ExhaustionPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProactorServerTest {
+    private ProactorServer server;
+    private Thread serverThread;
+
+    @AfterEach
+    public void stop() throws InterruptedException {
+        server.shutdown();
+        serverThread.join(TestClient.TIMEOUT_MILLIS);
+    }
+
+    @Test
+    public void broadcastReachesEveryClient() throws IOException {
+        final int port = start(TestServer.config().build());
+        try (TestClient first = connect(port);
+             TestClient second = connect(port)) {
+
+            first.send("hello");
+
+            assertTrue(first.readLine().endsWith("]: hello"));
+            assertTrue(second.readLine().endsWith("]: hello"));
+        }
+    }
+
+    @Test
+    public void publishedMessageReachesOnlyRoomMembers() throws IOException {
+        final int port = start(TestServer.config().build());
+        try (TestClient member = connect(port);
+             TestClient outsider = connect(port)) {
+            member.send("/sub room");
+            member.await("subscribed to #room");
+
+            outsider.send("/pub room for members");
+            outsider.send("for everybody");
+
+            assertTrue(member.readLine().endsWith("]: for members"));
+            assertTrue(member.readLine().endsWith("]: for everybody"));
+            assertTrue(outsider.readLine().endsWith("]: for everybody"));
+        }
+    }
+
+    @Test
+    public void exitClosesConnection() throws IOException {
+        final int port = start(TestServer.config().build());
+        try (TestClient client = connect(port)) {
+
+            client.send("q");
+
+            assertTrue(client.awaitClosed());
+        }
+    }
+
+    @Test
+    public void slowConsumerIsDisconnected() throws IOException {
+        final int port = start(TestServer.config()
+                .sendBufferSize(4 * 1024)
+                .highWatermark(32 * 1024)
+                .lowWatermark(16 * 1024)
+                .build());
+        try (TestClient publisher = connect(port);
+             TestClient slow = connect(port, 1024)) {
+
+            final String payload = "x".repeat(4 * 1024);
+            for (int i = 0; i < 2_000; i++) {
+                publisher.send(i + " " + payload);
+                publisher.await("]: " + i + " ");
+            }
+
+            assertTrue(slow.awaitClosed());
+            publisher.send("still here");
+            publisher.await("]: still here");
+        }
+    }
+
+    @Test
+    public void clientWithoutInboundBufferIsRejected() throws IOException {
+        // one inbound buffer per connection, the group threads never wait for one
+        final int port = start(TestServer.config()
+                .maxConnections(2)
+                .exhaustionPolicy(ExhaustionPolicy.WAIT)
+                .bufferWaitMillis(60_000)
+                .build());
+        try (TestClient first = connect(port);
+             TestClient second = connect(port);
+             TestClient rejected = new TestClient(port)) {
+
+            assertTrue(rejected.awaitClosed());
+            first.send("served");
+            second.await("]: served");
+        }
+    }
+
+    private int start(ServerConfig config) {
+        server = new ProactorServer(config);
+        serverThread = new Thread(server::startServer, "server");
+        serverThread.start();
+        return config.getPort();
+    }
+
+    private static TestClient connect(int port) throws IOException {
+        return connect(port, 0);
+    }
+
+    // accept completes asynchronously: the reply to a command proves the session is registered & served
+    private static TestClient connect(int port, int receiveBufferSize) throws IOException {
+        final TestClient client = new TestClient(port, receiveBufferSize);
+        client.send("/sub ready");
+        client.await("subscribed to #ready");
+        return client;
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RateLimitTest {
+
+    @Test
+    public void burstDefaultsToOneSecondOfRate() {
+        assertEquals(100, new RateLimit(100, 0).burst());
+        assertEquals(1, new RateLimit(0.5, 0).burst());
+        assertEquals(5, new RateLimit(100, 5).burst());
+    }
+
+    @Test
+    public void zeroRateIsUnlimited() {
+        final RateLimit limit = new RateLimit(0, 10);
+
+        assertTrue(limit.settings().unlimited());
+        assertEquals(0, limit.burst());
+    }
+
+    @Test
+    public void updateReplacesSettings() {
+        final RateLimit limit = new RateLimit(10, 1);
+
+        limit.update(1_000, 50);
+
+        assertEquals(1_000, limit.permitsPerSecond());
+        assertEquals(50, limit.burst());
+        assertEquals(1_000_000, limit.settings().intervalNanos());
+    }
+
+    @Test
+    public void negativeValuesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimit(-1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimit(1, -1));
+    }
+}
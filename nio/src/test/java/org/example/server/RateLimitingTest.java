@@ -0,0 +1,90 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Clients above their message rate are paused, not dropped: every message arrives, just later.
+ */
+public class RateLimitingTest {
+
+    @Test
+    public void connectionRateIsLimited() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config()
+                .connectionMessagesPerSecond(20)
+                .connectionBurst(5)
+                .build());
+             TestClient client = server.connect()) {
+            server.awaitConnections(1);
+
+            final long start = System.nanoTime();
+            // 5 of the burst, then 20 more at 20/s
+            sendAndAwait(client, "limited", 25);
+            final long millis = (System.nanoTime() - start) / 1_000_000;
+
+            assertTrue(millis >= 900, "25 messages in " + millis + " ms");
+            assertTrue(server.metric("ratelimit.paused.connection") > 0);
+            assertEquals(0, server.metric("ratelimit.paused.global"));
+        }
+    }
+
+    @Test
+    public void limitIsLiftedAtRuntime() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config()
+                .connectionMessagesPerSecond(1)
+                .connectionBurst(1)
+                .build());
+             TestClient client = server.connect()) {
+            server.awaitConnections(1);
+            sendAndAwait(client, "first", 1);
+
+            server.server().getConnectionRateLimit().update(0, 0);
+
+            final long start = System.nanoTime();
+            // the connection was paused by the second message at most, for the 1 s interval
+            sendAndAwait(client, "unlimited", 200);
+            final long millis = (System.nanoTime() - start) / 1_000_000;
+            assertTrue(millis < 2_000, "200 messages in " + millis + " ms");
+        }
+    }
+
+    @Test
+    public void globalRateIsSharedByConnections() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config()
+                .globalMessagesPerSecond(20)
+                .globalBurst(5)
+                .build());
+             TestClient first = server.connect();
+             TestClient second = server.connect()) {
+            server.awaitConnections(2);
+
+            final long start = System.nanoTime();
+            for (int i = 0; i < 10; i++) {
+                first.send("first " + i);
+                second.send("second " + i);
+            }
+            // both senders' messages, interleaved in any order
+            for (int i = 0; i < 20; i++) {
+                assertTrue(first.readLine().matches(".*]: (first|second) \\d+"));
+            }
+            final long millis = (System.nanoTime() - start) / 1_000_000;
+
+            // 5 of the burst, 15 more at 20/s together
+            assertTrue(millis >= 650, "20 messages in " + millis + " ms");
+            assertTrue(server.metric("ratelimit.paused.global") > 0);
+        }
+    }
+
+    private static void sendAndAwait(TestClient client, String prefix, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            client.send(prefix + " " + i);
+        }
+        for (int i = 0; i < count; i++) {
+            client.await("]: " + prefix + " " + i);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReactiveConnectionTest {
+
+    @Test
+    public void inboundIsEchoedThroughOutbound() throws IOException, InterruptedException {
+        try (TestServer server = start(streams -> new Echo(streams));
+             TestClient client = server.connect()) {
+            for (int i = 0; i < 100; i++) {
+                client.send("echo " + i);
+            }
+            for (int i = 0; i < 100; i++) {
+                // no chat prefix, the payload as it is
+                assertEquals("echo " + i, client.readLine());
+            }
+        }
+    }
+
+    @Test
+    public void nothingIsReadWithoutDemand() throws IOException, InterruptedException {
+        final Recorder recorder = new Recorder(1);
+        try (TestServer server = start(streams -> streams.inbound().subscribe(recorder));
+             TestClient client = server.connect()) {
+            client.send("first");
+            client.send("second");
+            client.send("third");
+
+            assertEquals("first", recorder.next());
+            assertNull(recorder.signals.poll(200, TimeUnit.MILLISECONDS));
+
+            recorder.subscription.request(2);
+            assertEquals("second", recorder.next());
+            assertEquals("third", recorder.next());
+        }
+    }
+
+    @Test
+    public void clientCloseCompletesInbound() throws IOException, InterruptedException {
+        final Recorder recorder = new Recorder(Long.MAX_VALUE);
+        try (TestServer server = start(streams -> streams.inbound().subscribe(recorder))) {
+            try (TestClient client = server.connect()) {
+                client.send("bye");
+                assertEquals("bye", recorder.next());
+            }
+
+            assertEquals("complete", recorder.next());
+        }
+    }
+
+    @Test
+    public void cancelClosesConnection() throws IOException, InterruptedException {
+        final Recorder recorder = new Recorder(1);
+        try (TestServer server = start(streams -> streams.inbound().subscribe(recorder));
+             TestClient client = server.connect()) {
+            client.send("enough");
+            assertEquals("enough", recorder.next());
+
+            recorder.subscription.cancel();
+
+            assertTrue(client.awaitClosed());
+            server.awaitMetric("connections.closed.application", 1);
+            // cancelled: no onComplete after it
+            assertNull(recorder.signals.poll(200, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void completedOutboundClosesAfterWriting() throws IOException, InterruptedException {
+        try (TestServer server = start(streams ->
+                     new Fixed(List.of("one", "two", "three")).subscribe(streams.outbound()));
+             TestClient client = server.connect()) {
+            assertEquals("one", client.readLine());
+            assertEquals("two", client.readLine());
+            assertEquals("three", client.readLine());
+            assertNull(client.readLine());
+        }
+    }
+
+    @Test
+    public void secondInboundSubscriberIsRejected() throws IOException, InterruptedException {
+        final Recorder first = new Recorder(1);
+        final Recorder second = new Recorder(1);
+        try (TestServer server = start(streams -> {
+                 streams.inbound().subscribe(first);
+                 streams.inbound().subscribe(second);
+             });
+             TestClient client = server.connect()) {
+            assertTrue(second.next().startsWith("error: Inbound of"));
+
+            client.send("only first");
+            assertEquals("only first", first.next());
+        }
+    }
+
+    private static TestServer start(Consumer<ReactiveConnection> handler) throws IOException {
+        return TestServer.start(TestServer.config().reactiveHandler(handler).build());
+    }
+
+    private static String string(ByteBuffer frame) {
+        return StandardCharsets.UTF_8.decode(frame).toString();
+    }
+
+    // frames & terminal signals as strings, requests the initial demand on subscribe
+    private static final class Recorder implements Subscriber<ByteBuffer> {
+        private final BlockingQueue<String> signals = new LinkedBlockingQueue<>();
+        private final long initialDemand;
+        private volatile Subscription subscription;
+
+        private Recorder(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialDemand);
+        }
+
+        @Override
+        public void onNext(ByteBuffer frame) {
+            signals.add(string(frame));
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            signals.add("error: " + error.getMessage());
+        }
+
+        @Override
+        public void onComplete() {
+            signals.add("complete");
+        }
+
+        String next() throws InterruptedException {
+            final String signal = signals.poll(TestClient.TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            assertTrue(signal != null, "No signal");
+            return signal;
+        }
+    }
+
+    // inbound subscriber & the outbound's upstream at once: outbound demand is passed on to the inbound
+    private static final class Echo implements Subscriber<ByteBuffer>, Subscription {
+        private final Subscriber<ByteBuffer> outbound;
+        private Subscription inbound;
+
+        private Echo(ReactiveConnection streams) {
+            this.outbound = streams.outbound();
+            streams.inbound().subscribe(this);
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            inbound = subscription;
+            outbound.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(ByteBuffer frame) {
+            outbound.onNext(frame);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            outbound.onError(error);
+        }
+
+        @Override
+        public void onComplete() {
+            outbound.onComplete();
+        }
+
+        @Override
+        public void request(long n) {
+            inbound.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            inbound.cancel();
+        }
+    }
+
+    // publishes the items as demanded, then completes
+    private static final class Fixed implements Publisher<ByteBuffer> {
+        private final List<String> items;
+
+        private Fixed(List<String> items) {
+            this.items = items;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                private int next;
+                private boolean done;
+
+                @Override
+                public void request(long n) {
+                    for (long i = 0; i < n && next < items.size(); i++) {
+                        subscriber.onNext(ByteBuffer.wrap(items.get(next++).getBytes(StandardCharsets.UTF_8)));
+                    }
+                    if (next == items.size() && !done) {
+                        done = true;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    done = true;
+                }
+            });
+        }
+    }
+}
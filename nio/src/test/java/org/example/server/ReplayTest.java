@@ -0,0 +1,60 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Late joiners ask for the journaled messages with /replay.
+ */
+public class ReplayTest {
+
+    @TempDir
+    Path journal;
+
+    @Test
+    public void lateJoinerReplaysJournal() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config()
+                .journalDirectory(journal.toString())
+                .build())) {
+            try (TestClient early = server.connect()) {
+                server.awaitConnections(1);
+                for (int i = 0; i < 3; i++) {
+                    early.send("message " + i);
+                    early.await("]: message " + i);
+                }
+            }
+
+            try (TestClient late = server.connect()) {
+                late.send("/replay 0");
+
+                late.await("replaying offsets 0..3");
+                for (int i = 0; i < 3; i++) {
+                    assertTrue(late.readLine().endsWith("]: message " + i));
+                }
+                late.await("replay done, next offset 3");
+
+                // the last one only
+                late.send("/replay -1");
+                late.await("replaying offsets 2..3");
+                assertTrue(late.readLine().endsWith("]: message 2"));
+                late.await("replay done");
+            }
+        }
+    }
+
+    @Test
+    public void replayIsDisabledWithoutJournal() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config().build());
+             TestClient client = server.connect()) {
+
+            client.send("/replay 0");
+
+            client.await("journal is disabled");
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ServerMetricsTest {
+
+    @Test
+    public void connectionsMessagesAndBytesAreCounted() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config().build())) {
+            try (TestClient sender = server.connect();
+                 TestClient receiver = server.connect()) {
+                server.awaitConnections(2);
+                for (int i = 0; i < 3; i++) {
+                    sender.send("message " + i);
+                    receiver.await("]: message " + i);
+                }
+                sender.send("q");
+                sender.awaitClosed();
+            }
+            server.awaitConnections(0);
+
+            final ServerMetrics metrics = server.server().getMetrics();
+            // 3 messages & the exit code
+            assertEquals(4, metrics.processedMessages());
+            assertEquals(2, server.metric("connections.accepted"));
+            assertEquals(2, server.metric("connections.closed"));
+            assertEquals(1, metrics.closeCount(CloseReason.CLIENT_EXIT));
+            assertEquals(1, server.metric("connections.closed.peer_closed"));
+            assertEquals("message 0\n".length() * 3 + "q\n".length(), server.metric("bytes.in"));
+            assertTrue(server.metric("bytes.out") > 0);
+            assertTrue(metrics.framesWritten() >= 6);
+            assertTrue(metrics.writeSyscalls() > 0);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Multi-reactor layout: the acceptor hands connections to the worker loops round-robin, a message read by one
+ * worker reaches the clients of every worker.
+ */
+public class SimpleServerTest {
+
+    @Test
+    public void broadcastReachesClientsOfEveryWorker() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config().workerCount(2).build());
+             TestClient first = server.connect();
+             TestClient second = server.connect();
+             TestClient third = server.connect()) {
+            server.awaitConnections(3);
+
+            first.send("hello");
+
+            // the sender is a recipient too
+            assertEquals(first.await("hello"), second.await("hello"));
+            third.await("]: hello");
+        }
+    }
+
+    @Test
+    public void acceptorServesClientsWithoutWorkers() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config().workerCount(0).build());
+             TestClient first = server.connect();
+             TestClient second = server.connect()) {
+            server.awaitConnections(2);
+
+            second.send("no workers");
+
+            first.await("]: no workers");
+            second.await("]: no workers");
+        }
+    }
+
+    @Test
+    public void messagesOfOneClientKeepTheirOrder() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config().workerCount(4).build());
+             TestClient sender = server.connect();
+             TestClient receiver = server.connect()) {
+            server.awaitConnections(2);
+
+            for (int i = 0; i < 100; i++) {
+                sender.send("message " + i);
+            }
+
+            for (int i = 0; i < 100; i++) {
+                assertEquals(": message " + i, receiver.readLine().replaceFirst("^\\[[^]]*]", ""));
+            }
+        }
+    }
+
+    @Test
+    public void exitClosesOnlyTheExitingClient() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config().build());
+             TestClient leaving = server.connect();
+             TestClient staying = server.connect()) {
+            server.awaitConnections(2);
+
+            leaving.send("q");
+
+            assertTrue(leaving.awaitClosed());
+            server.awaitConnections(1);
+            assertEquals(1, server.server().getCloseCount(CloseReason.CLIENT_EXIT));
+            staying.send("still here");
+            staying.await("]: still here");
+        }
+    }
+}
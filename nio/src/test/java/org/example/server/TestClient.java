@@ -0,0 +1,98 @@
+package org.example.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Blocking line client of the chat protocol for tests: every read gives up after {@link #TIMEOUT_MILLIS}.
+ */
+final class TestClient implements AutoCloseable {
+    static final int TIMEOUT_MILLIS = 5_000;
+
+    private final Socket socket;
+    private final BufferedReader in;
+    private final OutputStream out;
+
+    TestClient(int port) throws IOException {
+        this(port, 0);
+    }
+
+    // small receive buffer (set before connect, so the TCP window is small too) - slow reader
+    TestClient(int port, int receiveBufferSize) throws IOException {
+        socket = new Socket();
+        if (receiveBufferSize > 0) {
+            socket.setReceiveBufferSize(receiveBufferSize);
+        }
+        socket.connect(new InetSocketAddress("127.0.0.1", port));
+        // line per write, no waiting for the ACK of the previous one
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(TIMEOUT_MILLIS);
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        out = socket.getOutputStream();
+    }
+
+    // port nobody listens on right now (the server binds it a moment later)
+    static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    void send(String line) throws IOException {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    Socket socket() {
+        return socket;
+    }
+
+    // null - closed by the server
+    String readLine() throws IOException {
+        return in.readLine();
+    }
+
+    // skips other lines (e.g. broadcasts of the other tests' clients) until the expected one comes
+    String await(String fragment) throws IOException {
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.contains(fragment)) {
+                    return line;
+                }
+            }
+            return fail("Connection closed before \"" + fragment + "\"");
+        } catch (SocketTimeoutException e) {
+            return fail("No \"" + fragment + "\" within " + TIMEOUT_MILLIS + " ms");
+        }
+    }
+
+    // true - server closed the connection (whatever it sent before), false - still open after the timeout
+    boolean awaitClosed() throws IOException {
+        try {
+            while (in.readLine() != null) {
+                // drain
+            }
+            return true;
+        } catch (SocketTimeoutException e) {
+            return false;
+        } catch (IOException e) {
+            // reset by the server
+            return true;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
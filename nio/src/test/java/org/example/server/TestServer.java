@@ -0,0 +1,77 @@
+package org.example.server;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * {@link SimpleServer} on a free port, run by its own thread, stopped by {@link #close()}.
+ */
+final class TestServer implements AutoCloseable {
+    private final SimpleServer server;
+    private final Thread thread;
+    private final int port;
+
+    private TestServer(SimpleServer server, int port) {
+        this.server = server;
+        this.port = port;
+        this.thread = new Thread(server::startServer, "server");
+        thread.start();
+    }
+
+    // quiet config on a free port: no notices, no MBean (each test creates a server of its own)
+    static ServerConfig.ServerConfigBuilder config() throws IOException {
+        return ServerConfig.builder()
+                .port(TestClient.freePort())
+                .workerCount(2)
+                .announceConnections(false)
+                .jmxEnabled(false);
+    }
+
+    static TestServer start(ServerConfig config) {
+        return new TestServer(new SimpleServer(config), config.getPort());
+    }
+
+    SimpleServer server() {
+        return server;
+    }
+
+    int port() {
+        return port;
+    }
+
+    TestClient connect() throws IOException {
+        return new TestClient(port);
+    }
+
+    TestClient connectSlow() throws IOException {
+        return new TestClient(port, 1024);
+    }
+
+    // connections are handed to workers asynchronously, the ones not registered yet miss broadcasts
+    void awaitConnections(long count) throws InterruptedException {
+        awaitMetric("connections.active", count);
+    }
+
+    void awaitMetric(String name, long value) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TestClient.TIMEOUT_MILLIS;
+        long current;
+        while ((current = metric(name)) != value) {
+            if (System.currentTimeMillis() > deadline) {
+                fail(name + " is " + current + ", expected " + value);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    long metric(String name) {
+        final Number value = server.getMetrics().registry().snapshot().get(name);
+        return value == null ? -1 : value.longValue();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        server.shutdown();
+        thread.join(TestClient.TIMEOUT_MILLIS);
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Idle, read & heartbeat timeouts driven by the worker loops' timers.
+ */
+public class TimeoutTest {
+
+    @Test
+    public void idleConnectionIsClosed() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config()
+                .idleTimeoutMillis(300)
+                .timerTickMillis(20)
+                .build());
+             TestClient idle = server.connect()) {
+            server.awaitConnections(1);
+
+            assertTrue(idle.awaitClosed());
+            assertEquals(1, server.server().getCloseCount(CloseReason.IDLE_TIMEOUT));
+        }
+    }
+
+    @Test
+    public void activeConnectionIsNotIdle() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config()
+                .idleTimeoutMillis(300)
+                .timerTickMillis(20)
+                .build());
+             TestClient active = server.connect()) {
+            server.awaitConnections(1);
+
+            for (int i = 0; i < 10; i++) {
+                active.send("message " + i);
+                active.await("]: message " + i);
+                Thread.sleep(100);
+            }
+
+            assertEquals(0, server.server().getCloseCount(CloseReason.IDLE_TIMEOUT));
+        }
+    }
+
+    @Test
+    public void unfinishedFrameTimesOut() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config()
+                .readTimeoutMillis(300)
+                .timerTickMillis(20)
+                .build());
+             TestClient client = server.connect()) {
+            server.awaitConnections(1);
+            final OutputStream out = client.socket().getOutputStream();
+
+            out.write("no end of line".getBytes());
+            out.flush();
+
+            assertTrue(client.awaitClosed());
+            assertEquals(1, server.server().getCloseCount(CloseReason.READ_TIMEOUT));
+        }
+    }
+
+    @Test
+    public void unansweredPingClosesConnection() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config()
+                .heartbeatIntervalMillis(200)
+                .timerTickMillis(20)
+                .build());
+             TestClient answering = server.connect();
+             TestClient silent = server.connect()) {
+            server.awaitConnections(2);
+
+            for (int i = 0; i < 5; i++) {
+                final String ping = answering.await(SimpleServer.PING_COMMAND + " ");
+                answering.send(SimpleServer.PONG_COMMAND + " " + ping.substring(SimpleServer.PING_COMMAND.length() + 1));
+            }
+
+            assertTrue(silent.awaitClosed());
+            assertEquals(1, server.server().getCloseCount(CloseReason.HEARTBEAT_TIMEOUT));
+            answering.send("still here");
+            answering.await("]: still here");
+        }
+    }
+}
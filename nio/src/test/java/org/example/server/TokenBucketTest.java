@@ -0,0 +1,106 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenBucketTest {
+    // slow enough that no token refills during a test
+    private static final double PER_SECOND = 0.01;
+
+    @Test
+    public void fullBucketGivesBurstAtOnce() {
+        final TokenBucket bucket = new TokenBucket(new RateLimit(PER_SECOND, 5));
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(1));
+        }
+        final long wait = bucket.tryAcquire(1);
+
+        // the next token is one interval (100 s) away
+        assertTrue(wait > 99_000_000_000L && wait <= 100_000_000_000L, wait + " ns");
+    }
+
+    @Test
+    public void tokensRefillWithTime() throws InterruptedException {
+        final TokenBucket bucket = new TokenBucket(new RateLimit(100, 1));
+        assertEquals(0, bucket.tryAcquire(1));
+        final long wait = bucket.tryAcquire(1);
+        assertTrue(wait > 0 && wait <= 10_000_000, wait + " ns");
+
+        Thread.sleep(wait / 1_000_000 + 1);
+
+        assertEquals(0, bucket.tryAcquire(1));
+    }
+
+    @Test
+    public void refusedAcquireTakesNothing() {
+        final TokenBucket bucket = new TokenBucket(new RateLimit(PER_SECOND, 3));
+
+        assertTrue(bucket.tryAcquire(4) > 0);
+
+        assertEquals(0, bucket.tryAcquire(3));
+    }
+
+    @Test
+    public void refundReturnsTokens() {
+        final TokenBucket bucket = new TokenBucket(new RateLimit(PER_SECOND, 2));
+        bucket.tryAcquire(2);
+        assertTrue(bucket.tryAcquire(1) > 0);
+
+        bucket.refund(1);
+
+        assertEquals(0, bucket.tryAcquire(1));
+        assertTrue(bucket.tryAcquire(1) > 0);
+    }
+
+    @Test
+    public void updateAppliesToExistingBucket() {
+        final RateLimit limit = new RateLimit(PER_SECOND, 1);
+        final TokenBucket bucket = new TokenBucket(limit);
+        bucket.tryAcquire(1);
+        assertTrue(bucket.tryAcquire(1) > 0);
+
+        limit.update(0, 0);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(0, bucket.tryAcquire(1));
+        }
+    }
+
+    @Test
+    public void concurrentAcquiresNeverExceedBurst() throws InterruptedException {
+        final TokenBucket bucket = new TokenBucket(new RateLimit(PER_SECOND, 1_000));
+        final AtomicInteger acquired = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1_000; i++) {
+                    if (bucket.tryAcquire(1) == 0) {
+                        acquired.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1_000, acquired.get());
+    }
+}
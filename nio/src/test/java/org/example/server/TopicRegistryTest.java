@@ -0,0 +1,141 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TopicRegistryTest {
+    private final TopicRegistry<Client> registry = new TopicRegistry<>(Client[]::new);
+
+    @Test
+    public void publishingReachesOnlySubscribersOfTheTopic() {
+        final Client alice = new Client();
+        final Client bob = new Client();
+        registry.subscribe("java", alice);
+        registry.subscribe("java", bob);
+        registry.subscribe("go", bob);
+
+        assertArrayEquals(new Client[]{alice, bob}, registry.subscribers("java"));
+        assertArrayEquals(new Client[]{bob}, registry.subscribers("go"));
+        assertEquals(0, registry.subscribers("rust").length);
+        assertEquals(Set.of("java", "go"), bob.topics());
+    }
+
+    @Test
+    public void subscribingTwiceKeepsOneEntry() {
+        final Client alice = new Client();
+        registry.subscribe("java", alice);
+        final Client[] before = registry.subscribers("java");
+
+        registry.subscribe("java", alice);
+
+        assertSame(before, registry.subscribers("java"));
+    }
+
+    @Test
+    public void topicWithoutSubscribersIsDropped() {
+        final Client alice = new Client();
+        final Client bob = new Client();
+        registry.subscribe("java", alice);
+        registry.subscribe("java", bob);
+        registry.subscribe("go", alice);
+
+        registry.unsubscribe("java", alice);
+        assertArrayEquals(new Client[]{bob}, registry.subscribers("java"));
+        assertEquals(Set.of("go"), alice.topics());
+
+        registry.unsubscribeAll(alice);
+        registry.unsubscribeAll(bob);
+        assertEquals(0, registry.topicCount());
+    }
+
+    @Test
+    public void snapshotIsNotChangedBySubscription() {
+        final Client alice = new Client();
+        registry.subscribe("java", alice);
+        final Client[] snapshot = registry.subscribers("java");
+
+        registry.subscribe("java", new Client());
+        registry.unsubscribe("java", alice);
+
+        assertArrayEquals(new Client[]{alice}, snapshot);
+    }
+
+    @Test
+    public void closedClientDoesNotStayInTopic() {
+        final Client closed = new Client();
+        closed.closed = true;
+
+        registry.subscribe("java", closed);
+
+        assertEquals(0, registry.subscribers("java").length);
+    }
+
+    @Test
+    public void concurrentSubscribersAreNotLost() throws InterruptedException {
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final Thread thread = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    registry.subscribe("busy", new Client());
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(2_000, registry.subscribers("busy").length);
+    }
+
+    @Test
+    public void publishedMessageReachesOnlyRoomMembers() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config().build());
+             TestClient member = server.connect();
+             TestClient outsider = server.connect()) {
+            server.awaitConnections(2);
+            member.send("/sub room");
+            member.await("subscribed to #room");
+
+            outsider.send("/pub room for members");
+            outsider.send("for everybody");
+
+            assertTrue(member.readLine().endsWith("]: for members"));
+            assertTrue(member.readLine().endsWith("]: for everybody"));
+            // the outsider gets only the broadcast
+            assertTrue(outsider.readLine().endsWith("]: for everybody"));
+
+            member.send("/unsub room");
+            member.await("unsubscribed from #room");
+            outsider.send("/pub room nobody");
+            outsider.send("everybody again");
+            assertTrue(member.readLine().endsWith("]: everybody again"));
+        }
+    }
+
+    private static final class Client implements TopicRegistry.Subscriber {
+        private final Set<String> topics = ConcurrentHashMap.newKeySet();
+        private volatile boolean closed;
+
+        @Override
+        public Set<String> topics() {
+            return topics;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+    }
+}
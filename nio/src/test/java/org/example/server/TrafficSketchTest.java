@@ -0,0 +1,82 @@
+package org.example.server;
+
+import org.example.server.metrics.HeavyHitters;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TrafficSketchTest {
+
+    @Test
+    public void connectionsOfOneHostAddUp() {
+        final TrafficSketch traffic = new TrafficSketch(1024, 4, 10);
+        final Connection first = connection("10.0.0.1", 1000);
+        final Connection second = connection("10.0.0.1", 1001);
+        final Connection other = connection("10.0.0.2", 1000);
+
+        assertEquals(100, traffic.onRead(first, 100));
+        assertEquals(150, traffic.onRead(second, 50));
+        assertEquals(10, traffic.onRead(other, 10));
+        traffic.onMessage(first);
+        traffic.onMessage(second);
+        traffic.publish();
+
+        assertEquals(Map.of("10.0.0.1", 150L, "10.0.0.2", 10L), top(traffic.bytes()));
+        assertEquals(Map.of("10.0.0.1", 2L), top(traffic.messages()));
+    }
+
+    @Test
+    public void decayHalvesRecentTraffic() {
+        final TrafficSketch traffic = new TrafficSketch(1024, 4, 10);
+        final Connection connection = connection("10.0.0.1", 1000);
+        traffic.onRead(connection, 100);
+
+        traffic.decay();
+
+        assertEquals(60, traffic.onRead(connection, 10));
+    }
+
+    @Test
+    public void floodingClientIsThrottledWithoutLosingMessages() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config()
+                .trafficThrottleBytes(1_000)
+                .trafficThrottleMillis(50)
+                .build());
+             TestClient client = server.connect()) {
+            server.awaitConnections(1);
+
+            final String padding = "x".repeat(100);
+            for (int i = 0; i < 50; i++) {
+                client.send(i + " " + padding);
+            }
+            for (int i = 0; i < 50; i++) {
+                client.await("]: " + i + " " + padding);
+            }
+
+            assertTrue(server.metric("traffic.throttled") > 0);
+            // top talkers are published once a second
+            final long deadline = System.currentTimeMillis() + TestClient.TIMEOUT_MILLIS;
+            while (server.metric("traffic.top.bytes.127.0.0.1") < 50 * 100) {
+                assertTrue(System.currentTimeMillis() < deadline, "127.0.0.1 is not a top talker");
+                Thread.sleep(50);
+            }
+            assertTrue(server.metric("traffic.top.messages.127.0.0.1") >= 50);
+        }
+    }
+
+    private static Connection connection(String host, int port) {
+        return new Connection(null, null, null, null, new InetSocketAddress(host, port));
+    }
+
+    private static Map<String, Long> top(HeavyHitters<String> hitters) {
+        final Map<String, Long> top = new HashMap<>();
+        hitters.forEachCandidate((host, hash) -> top.put(host, hitters.estimate(hash)));
+        return top;
+    }
+}
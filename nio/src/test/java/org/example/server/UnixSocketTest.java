@@ -0,0 +1,66 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Local clients connect through a Unix domain socket, served by the same loops as the TCP ones.
+ */
+public class UnixSocketTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void unixAndTcpClientsTalkToEachOther() throws IOException, InterruptedException {
+        final Path socket = directory.resolve("chat.sock");
+        final TestServer server = TestServer.start(TestServer.config().unixSocketPath(socket.toString()).build());
+        try (SocketChannel local = SocketChannel.open(StandardProtocolFamily.UNIX);
+             TestClient remote = server.connect()) {
+            local.connect(UnixDomainSocketAddress.of(socket));
+            final BufferedReader localIn = new BufferedReader(
+                    new InputStreamReader(Channels.newInputStream(local), StandardCharsets.UTF_8));
+            server.awaitConnections(2);
+
+            local.write(ByteBuffer.wrap("from unix\n".getBytes(StandardCharsets.UTF_8)));
+            remote.await("]: from unix");
+            remote.send("from tcp");
+
+            String line;
+            do {
+                line = localIn.readLine();
+            } while (!line.endsWith("]: from tcp"));
+        } finally {
+            server.close();
+        }
+
+        // stale socket file would make the next bind fail
+        assertFalse(Files.exists(socket));
+    }
+
+    @Test
+    public void staleSocketFileIsReplaced() throws IOException, InterruptedException {
+        final Path socket = Files.createFile(directory.resolve("stale.sock"));
+
+        try (TestServer server = TestServer.start(TestServer.config().unixSocketPath(socket.toString()).build());
+             SocketChannel local = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            assertTrue(local.connect(UnixDomainSocketAddress.of(socket)));
+            server.awaitConnections(1);
+        }
+    }
+}
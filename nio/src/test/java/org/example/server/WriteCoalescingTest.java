@@ -0,0 +1,91 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Frames queued for a client are written together: at the end of the loop iteration or after the flush delay,
+ * right away once flushBytes are pending.
+ */
+public class WriteCoalescingTest {
+    private static final int MESSAGES = 50;
+
+    @Test
+    public void burstIsWrittenWithFewSyscalls() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config()
+                .flushDelayMillis(200)
+                .timerTickMillis(10)
+                .build());
+             TestClient sender = server.connect();
+             TestClient receiver = server.connect()) {
+            server.awaitConnections(2);
+
+            sendBurst(sender);
+
+            for (int i = 0; i < MESSAGES; i++) {
+                assertTrue(receiver.readLine().endsWith("]: message " + i));
+            }
+            sender.await("]: message " + (MESSAGES - 1));
+            final ServerMetrics metrics = server.server().getMetrics();
+            // a frame per recipient & message, counted right after the write returns
+            final long deadline = System.currentTimeMillis() + TestClient.TIMEOUT_MILLIS;
+            while (metrics.framesWritten() < 2 * MESSAGES && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(metrics.framesWritten() >= 2 * MESSAGES, metrics.framesWritten() + " frames");
+            // each written by a gathering write together with the others
+            assertTrue(metrics.writeSyscalls() <= 10, metrics.writeSyscalls() + " write syscalls");
+        }
+    }
+
+    @Test
+    public void frameWaitsForFlushDelay() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config()
+                .flushDelayMillis(300)
+                .timerTickMillis(10)
+                .build());
+             TestClient client = server.connect()) {
+            server.awaitConnections(1);
+            final long start = System.nanoTime();
+
+            client.send("delayed");
+
+            client.await("]: delayed");
+            final long millis = (System.nanoTime() - start) / 1_000_000;
+            assertTrue(millis >= 250, "delivered in " + millis + " ms");
+        }
+    }
+
+    @Test
+    public void flushBytesWriteWithoutWaiting() throws IOException, InterruptedException {
+        try (TestServer server = TestServer.start(TestServer.config()
+                .flushDelayMillis(10_000)
+                .flushBytes(16)
+                .build());
+             TestClient client = server.connect()) {
+            server.awaitConnections(1);
+            final long start = System.nanoTime();
+
+            client.send("longer than sixteen bytes");
+
+            client.await("]: longer than sixteen bytes");
+            final long millis = (System.nanoTime() - start) / 1_000_000;
+            assertTrue(millis < 5_000, "delivered in " + millis + " ms");
+        }
+    }
+
+    // one write, so the server reads them all at once
+    private static void sendBurst(TestClient sender) throws IOException {
+        final StringBuilder burst = new StringBuilder();
+        for (int i = 0; i < MESSAGES; i++) {
+            burst.append("message ").append(i).append('\n');
+        }
+        final OutputStream out = sender.socket().getOutputStream();
+        out.write(burst.toString().getBytes());
+        out.flush();
+    }
+}
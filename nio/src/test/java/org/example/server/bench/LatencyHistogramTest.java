@@ -0,0 +1,73 @@
+package org.example.server.bench;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesAreExact() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 10; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(10, histogram.totalCount());
+        assertEquals(5, histogram.percentile(50));
+        assertEquals(9, histogram.percentile(90));
+        assertEquals(10, histogram.percentile(100));
+        assertEquals(10, histogram.max());
+        assertEquals(5.5, histogram.mean());
+    }
+
+    @Test
+    public void largeValuesAreWithinBucketPrecision() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 100_000; value++) {
+            histogram.record(value);
+        }
+
+        assertWithin(50_000, histogram.percentile(50));
+        assertWithin(99_000, histogram.percentile(99));
+        assertWithin(99_900, histogram.percentile(99.9));
+        // never above the max recorded
+        assertEquals(100_000, histogram.percentile(100));
+    }
+
+    @Test
+    public void negativeValueCountsAsZero() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        histogram.record(-5);
+
+        assertEquals(1, histogram.totalCount());
+        assertEquals(0, histogram.percentile(100));
+    }
+
+    @Test
+    public void histogramsAreAddedTogether() {
+        final LatencyHistogram first = new LatencyHistogram();
+        final LatencyHistogram second = new LatencyHistogram();
+        first.record(10);
+        second.record(30);
+        second.record(1_000_000);
+
+        first.add(second);
+
+        assertEquals(3, first.totalCount());
+        assertEquals(30, first.percentile(50));
+        assertEquals(1_000_000, first.max());
+
+        first.reset();
+        assertEquals(0, first.totalCount());
+        assertEquals(0, first.percentile(99));
+        assertEquals(0, first.mean());
+    }
+
+    // 64 sub-buckets per power of two: ~1.6% (upper bound of the bucket)
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected * 1.016, actual + " is not within 1.6% of " + expected);
+    }
+}
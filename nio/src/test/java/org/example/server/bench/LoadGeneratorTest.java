@@ -0,0 +1,56 @@
+package org.example.server.bench;
+
+import org.example.server.ServerConfig;
+import org.example.server.SimpleServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LoadGeneratorTest {
+
+    @Test
+    public void everyConnectionGetsEveryMessage() throws IOException, InterruptedException {
+        final int port = freePort();
+        final SimpleServer server = new SimpleServer(ServerConfig.builder()
+                .port(port)
+                .workerCount(2)
+                .announceConnections(false)
+                .jmxEnabled(false)
+                .build());
+        final Thread serverThread = new Thread(server::startServer, "server");
+        serverThread.start();
+        try {
+            final Map<String, Object> result = new LoadGenerator(LoadGenerator.Options.parse(new String[]{
+                    "port=" + port, "connections=20", "senders=2", "rate=200", "warmup=0", "duration=1",
+                    "selectors=2"})).run().values();
+
+            assertEquals(20, result.get("open"));
+            assertEquals(0L, result.get("errors"));
+            assertTrue((Long) result.get("sent") > 0);
+            assertEquals(result.get("expected"), result.get("delivered"));
+        } finally {
+            server.shutdown();
+            serverThread.join(5_000);
+        }
+    }
+
+    @Test
+    public void optionsAreValidated() {
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Options.parse(new String[]{"connections"}));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Options.parse(new String[]{"unknown=1"}));
+        assertThrows(IllegalArgumentException.class,
+                () -> LoadGenerator.Options.parse(new String[]{"connections=1", "senders=2"}));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.example.server.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BufferPoolTest {
+
+    @Test
+    public void leasesDirectBufferOfRoundedUpSizeClass() throws BufferPoolExhaustedException {
+        final BufferPool pool = new BufferPool(512, 8 * 1024, 4, 16, ExhaustionPolicy.REJECT, 0);
+
+        final ByteBuffer small = pool.acquire(1);
+        final ByteBuffer medium = pool.acquire(700);
+        final ByteBuffer large = pool.acquire(8 * 1024);
+
+        assertTrue(small.isDirect());
+        assertEquals(512, small.capacity());
+        assertEquals(1, small.limit());
+        assertEquals(0, small.position());
+        assertEquals(1024, medium.capacity());
+        assertEquals(700, medium.limit());
+        assertEquals(8 * 1024, large.capacity());
+        assertEquals(3, pool.leased());
+        assertThrows(IllegalArgumentException.class, () -> pool.acquire(8 * 1024 + 1));
+    }
+
+    @Test
+    public void releasedBufferIsReusedCleared() throws BufferPoolExhaustedException {
+        final BufferPool pool = new BufferPool(512, 1024, 1, 16, ExhaustionPolicy.REJECT, 0);
+
+        final ByteBuffer first = pool.acquire(100);
+        first.put((byte) 1).flip();
+        pool.release(first);
+
+        final ByteBuffer second = pool.acquire(200);
+        assertSame(first, second);
+        assertEquals(0, second.position());
+        assertEquals(200, second.limit());
+        assertEquals(1, pool.leased());
+        assertEquals(1, pool.highWater());
+    }
+
+    @Test
+    public void slabIsSlicedIntoFreeBuffers() throws BufferPoolExhaustedException {
+        final BufferPool pool = new BufferPool(512, 512, 8, 16, ExhaustionPolicy.REJECT, 0);
+
+        pool.acquire(512);
+
+        assertEquals(1, pool.leased());
+        assertEquals(7, pool.free());
+    }
+
+    @Test
+    public void rejectPolicyFailsAtTheLimit() throws BufferPoolExhaustedException {
+        final BufferPool pool = new BufferPool(512, 512, 2, 2, ExhaustionPolicy.REJECT, 0);
+        final ByteBuffer first = pool.acquire(512);
+        pool.acquire(512);
+
+        assertThrows(BufferPoolExhaustedException.class, () -> pool.acquire(512));
+        assertThrows(BufferPoolExhaustedException.class, () -> pool.tryAcquire(512));
+
+        pool.release(first);
+        assertSame(first, pool.acquire(512));
+    }
+
+    @Test
+    public void growPolicyAllocatesBeyondTheLimit() throws BufferPoolExhaustedException {
+        final BufferPool pool = new BufferPool(512, 512, 2, 2, ExhaustionPolicy.GROW, 0);
+        pool.acquire(512);
+        pool.acquire(512);
+
+        final ByteBuffer grown = pool.acquire(512);
+
+        assertNotNull(grown);
+        assertEquals(3, pool.leased());
+        assertEquals(3, pool.highWater());
+    }
+
+    @Test
+    public void waitPolicyBlocksUntilBufferIsReleased() throws Exception {
+        final BufferPool pool = new BufferPool(512, 512, 1, 1, ExhaustionPolicy.WAIT, 5_000);
+        final ByteBuffer only = pool.acquire(512);
+
+        final CompletableFuture<ByteBuffer> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.acquire(512);
+            } catch (BufferPoolExhaustedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(waiting.isDone());
+        pool.release(only);
+
+        assertSame(only, waiting.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void waitPolicyTimesOut() throws BufferPoolExhaustedException {
+        final BufferPool pool = new BufferPool(512, 512, 1, 1, ExhaustionPolicy.WAIT, 20);
+        pool.acquire(512);
+
+        assertThrows(BufferPoolExhaustedException.class, () -> pool.acquire(512));
+    }
+
+    @Test
+    public void tryAcquireNeverWaits() throws BufferPoolExhaustedException {
+        final BufferPool pool = new BufferPool(512, 512, 1, 1, ExhaustionPolicy.WAIT, 60_000);
+        final ByteBuffer only = pool.acquire(512);
+
+        assertNull(pool.tryAcquire(512));
+        assertNull(pool.tryAcquireShared(512));
+
+        pool.release(only);
+        assertSame(only, pool.tryAcquire(512));
+    }
+
+    @Test
+    public void foreignBufferIsNotAccepted() {
+        final BufferPool pool = new BufferPool(512, 1024, 1, 16, ExhaustionPolicy.REJECT, 0);
+
+        assertThrows(IllegalArgumentException.class, () -> pool.release(ByteBuffer.allocate(512)));
+        assertThrows(IllegalArgumentException.class, () -> pool.release(ByteBuffer.allocateDirect(600)));
+    }
+
+    @Test
+    public void sizeClassesMustBePowersOfTwo() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new BufferPool(500, 1024, 1, 16, ExhaustionPolicy.REJECT, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new BufferPool(2048, 1024, 1, 16, ExhaustionPolicy.REJECT, 0));
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.server.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SharedBufferTest {
+    private final BufferPool pool = new BufferPool(512, 1024, 4, 16, ExhaustionPolicy.REJECT, 0, 2);
+
+    @Test
+    public void contentReturnsToPoolWithTheLastReference() throws BufferPoolExhaustedException {
+        final SharedBuffer shared = pool.acquireShared(100);
+        shared.retain().retain();
+
+        assertFalse(shared.release());
+        assertFalse(shared.release());
+        assertEquals(1, pool.leased());
+        assertTrue(shared.release());
+        assertEquals(0, pool.leased());
+    }
+
+    @Test
+    public void releasedWrapperIsRecycled() throws BufferPoolExhaustedException {
+        final SharedBuffer first = pool.acquireShared(100);
+        first.content().put((byte) 1).flip();
+        first.release();
+
+        final SharedBuffer second = pool.acquireShared(200);
+
+        assertSame(first, second);
+        assertEquals(1, second.refCount());
+        assertEquals(0, second.content().position());
+        assertEquals(200, second.content().limit());
+    }
+
+    @Test
+    public void viewsShareContentWithOwnPosition() throws BufferPoolExhaustedException {
+        final SharedBuffer shared = pool.acquireShared(3);
+        shared.content().put(new byte[]{1, 2, 3}).flip();
+
+        final ByteBuffer first = shared.view(0);
+        first.get();
+        final ByteBuffer second = shared.view(1);
+
+        assertTrue(first.isReadOnly());
+        assertEquals(2, first.remaining());
+        assertEquals(3, second.remaining());
+        assertEquals(3, shared.size());
+        // slot view is reused & reset
+        assertSame(first, shared.view(0));
+        assertEquals(3, first.remaining());
+        // no slot: fresh view
+        assertNotSame(shared.view(2), shared.view(2));
+    }
+
+    @Test
+    public void releasedBufferCannotBeRetained() {
+        final SharedBuffer shared = SharedBuffer.wrap(ByteBuffer.wrap(new byte[]{1}));
+        shared.release();
+
+        assertThrows(IllegalStateException.class, shared::retain);
+        assertThrows(IllegalStateException.class, shared::release);
+    }
+}
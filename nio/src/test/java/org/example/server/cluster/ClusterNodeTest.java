@@ -0,0 +1,148 @@
+package org.example.server.cluster;
+
+import org.example.server.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ClusterNodeTest {
+    private static final int BATCH_BYTES = 4 * 1024;
+
+    private final List<ClusterNode> nodes = new ArrayList<>();
+    private final List<MetricsRegistry> registries = new ArrayList<>();
+
+    @AfterEach
+    public void close() {
+        nodes.forEach(ClusterNode::close);
+    }
+
+    @Test
+    public void peersAreParsed() {
+        assertEquals(List.of(new InetSocketAddress("localhost", 9001), new InetSocketAddress("127.0.0.1", 9002)),
+                ClusterNode.parsePeers("localhost:9001, 127.0.0.1:9002"));
+        assertTrue(ClusterNode.parsePeers(null).isEmpty());
+        assertTrue(ClusterNode.parsePeers(" ").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> ClusterNode.parsePeers("9001"));
+    }
+
+    @Test
+    public void generatedIdsDifferAndAreNeverZero() {
+        final Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < 1_000; i++) {
+            final int id = ClusterNode.generateNodeId(9001);
+            assertNotEquals(0, id);
+            ids.add(id);
+        }
+        assertTrue(ids.size() > 990, ids.size() + " distinct ids");
+    }
+
+    @Test
+    public void messagesAreRelayedBothWays() throws IOException, InterruptedException {
+        final int firstPort = freePort();
+        final int secondPort = freePort();
+        final BlockingQueue<String> firstReceived = new LinkedBlockingQueue<>();
+        final BlockingQueue<String> secondReceived = new LinkedBlockingQueue<>();
+        final ClusterNode first = node(1, firstPort, secondPort, firstReceived);
+        final ClusterNode second = node(2, secondPort, firstPort, secondReceived);
+        awaitConnected(first);
+        awaitConnected(second);
+
+        for (int i = 0; i < 100; i++) {
+            first.relay("chat", bytes("from first " + i));
+        }
+        second.relay("room", bytes("from second"));
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("chat:from first " + i, secondReceived.poll(5, TimeUnit.SECONDS));
+        }
+        assertEquals("room:from second", firstReceived.poll(5, TimeUnit.SECONDS));
+        // nothing comes back to its origin
+        assertNull(firstReceived.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(100L, registries.get(1).snapshot().get("cluster.relayed.in"));
+    }
+
+    @Test
+    public void recordLargerThanBatchIsDropped() throws IOException, InterruptedException {
+        final int firstPort = freePort();
+        final int secondPort = freePort();
+        final BlockingQueue<String> secondReceived = new LinkedBlockingQueue<>();
+        final ClusterNode first = node(1, firstPort, secondPort, new LinkedBlockingQueue<>());
+        node(2, secondPort, firstPort, secondReceived);
+        awaitConnected(first);
+
+        first.relay("chat", ByteBuffer.allocate(BATCH_BYTES));
+        first.relay("chat", bytes("small"));
+
+        assertEquals("chat:small", secondReceived.poll(5, TimeUnit.SECONDS));
+        assertEquals(1L, registries.get(0).snapshot().get("cluster.dropped"));
+    }
+
+    @Test
+    public void peerWithOwnIdIsRejected() throws IOException, InterruptedException {
+        final int firstPort = freePort();
+        final int secondPort = freePort();
+        final BlockingQueue<String> secondReceived = new LinkedBlockingQueue<>();
+        final ClusterNode first = node(7, firstPort, secondPort, new LinkedBlockingQueue<>());
+        node(7, secondPort, firstPort, secondReceived);
+        Thread.sleep(500);
+
+        first.relay("chat", bytes("lost"));
+
+        // taken for its own message otherwise: silently dropped by every peer
+        assertNull(secondReceived.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    private ClusterNode node(int id, int port, int peerPort, BlockingQueue<String> received) {
+        final MetricsRegistry registry = new MetricsRegistry();
+        final ClusterNode node = new ClusterNode(id, port, List.of(new InetSocketAddress("127.0.0.1", peerPort)),
+                BATCH_BYTES, 1, 1024, registry, (topic, frame) -> received.add(topic + ":" + string(frame)));
+        node.start();
+        nodes.add(node);
+        registries.add(registry);
+        return node;
+    }
+
+    private static void awaitConnected(ClusterNode node) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5_000;
+        while (node.connectedPeers() < node.peerCount()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Peers are not connected");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static ByteBuffer bytes(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String string(ByteBuffer frame) {
+        final byte[] bytes = new byte[frame.remaining()];
+        frame.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
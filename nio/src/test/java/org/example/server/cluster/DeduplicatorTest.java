@@ -0,0 +1,65 @@
+package org.example.server.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DeduplicatorTest {
+    private final Deduplicator deduplicator = new Deduplicator(128);
+
+    @Test
+    public void duplicateIsRecognized() {
+        assertTrue(deduplicator.firstSeen(1, 10));
+        assertFalse(deduplicator.firstSeen(1, 10));
+        assertTrue(deduplicator.firstSeen(1, 11));
+    }
+
+    @Test
+    public void originsAreSeparate() {
+        assertTrue(deduplicator.firstSeen(1, 10));
+        assertTrue(deduplicator.firstSeen(2, 10));
+    }
+
+    @Test
+    public void resentBatchWithinWindowIsRecognized() {
+        for (long sequence = 1; sequence <= 100; sequence++) {
+            assertTrue(deduplicator.firstSeen(1, sequence));
+        }
+        // batch 50..100 is resent after a reconnect, one of them never arrived before
+        assertTrue(deduplicator.firstSeen(1, 150));
+
+        for (long sequence = 50; sequence <= 100; sequence++) {
+            assertFalse(deduplicator.firstSeen(1, sequence));
+        }
+        // skipped sequences are still new
+        assertTrue(deduplicator.firstSeen(1, 120));
+        assertFalse(deduplicator.firstSeen(1, 120));
+    }
+
+    @Test
+    public void sequenceBelowWindowIsTakenForDuplicate() {
+        assertTrue(deduplicator.firstSeen(1, 1_000));
+
+        assertFalse(deduplicator.firstSeen(1, 1_000 - 128));
+        assertTrue(deduplicator.firstSeen(1, 1_000 - 127));
+    }
+
+    @Test
+    public void jumpBeyondWindowForgetsOldSlots() {
+        assertTrue(deduplicator.firstSeen(1, 5));
+
+        // same slot as 5, but a different sequence
+        assertTrue(deduplicator.firstSeen(1, 5 + 128 * 10));
+        assertTrue(deduplicator.firstSeen(1, 5 + 128 * 10 - 1));
+        assertTrue(deduplicator.firstSeen(1, 5 + 128 * 9 + 1));
+    }
+
+    @Test
+    public void windowIsRoundedUpToWholeWords() {
+        assertEquals(64, new Deduplicator(1).window());
+        assertEquals(128, new Deduplicator(65).window());
+        assertEquals(128, new Deduplicator(128).window());
+    }
+}
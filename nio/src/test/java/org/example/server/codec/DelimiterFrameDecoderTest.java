@@ -0,0 +1,72 @@
+package org.example.server.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.example.server.codec.LengthFieldFrameDecoderTest.bytes;
+import static org.example.server.codec.LengthFieldFrameDecoderTest.string;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class DelimiterFrameDecoderTest {
+    private final DelimiterFrameDecoder decoder = DelimiterFrameDecoder.lines(8);
+
+    @Test
+    public void decodesLinesOfOneRead() throws CorruptedFrameException {
+        final ByteBuffer in = bytes("one\ntwo\r\n\nthr");
+
+        assertEquals("one", string(decoder.decode(in)));
+        // "\r\n" of telnet
+        assertEquals("two", string(decoder.decode(in)));
+        assertEquals("", string(decoder.decode(in)));
+        assertNull(decoder.decode(in));
+        assertEquals("thr", string(in));
+    }
+
+    @Test
+    public void decodePayloadNarrowsInputToPayload() throws CorruptedFrameException {
+        final ByteBuffer in = bytes("ab\r\ncd\n");
+
+        final int next = decoder.decodePayload(in);
+
+        assertEquals(4, next);
+        assertEquals(0, in.position());
+        assertEquals(2, in.limit());
+    }
+
+    @Test
+    public void partialLineLeavesInputUnchanged() throws CorruptedFrameException {
+        final ByteBuffer in = bytes("partial");
+
+        assertEquals(-1, decoder.decodePayload(in));
+        assertEquals(0, in.position());
+        assertEquals(7, in.limit());
+    }
+
+    @Test
+    public void rejectsTooLongFrame() {
+        assertThrows(CorruptedFrameException.class, () -> decoder.decode(bytes("123456789\n")));
+        // no delimiter within the limit, it can't come anymore
+        assertThrows(CorruptedFrameException.class, () -> decoder.decode(bytes("123456789")));
+    }
+
+    @Test
+    public void customDelimiterKeepsCarriageReturn() throws CorruptedFrameException {
+        final DelimiterFrameDecoder zeroTerminated = new DelimiterFrameDecoder((byte) 0, 8);
+        final DelimiterFrameEncoder encoder = new DelimiterFrameEncoder((byte) 0);
+
+        final ByteBuffer frame = encoder.encode(bytes("a\r"));
+
+        assertEquals(3, frame.remaining());
+        assertEquals("a\r", string(zeroTerminated.decode(frame)));
+    }
+
+    @Test
+    public void encodesLine() {
+        final ByteBuffer frame = DelimiterFrameEncoder.lines().encode("> ".getBytes(), bytes("hi"));
+
+        assertEquals("> hi\n", string(frame));
+    }
+}
@@ -0,0 +1,97 @@
+package org.example.server.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class LengthFieldFrameDecoderTest {
+    private final LengthFieldFrameDecoder decoder = new LengthFieldFrameDecoder(16);
+    private final LengthFieldFrameEncoder encoder = new LengthFieldFrameEncoder();
+
+    @Test
+    public void decodesEncodedFrame() throws CorruptedFrameException {
+        final ByteBuffer frame = encoder.encode(bytes("hello"));
+
+        assertEquals(4 + 5, frame.remaining());
+        assertEquals(5, frame.getInt(0));
+        assertEquals("hello", string(decoder.decode(frame)));
+        assertEquals(0, frame.remaining());
+    }
+
+    @Test
+    public void waitsForTheRestOfPartialFrame() throws CorruptedFrameException {
+        final ByteBuffer frame = encoder.encode(bytes("hello"));
+        final ByteBuffer in = ByteBuffer.allocate(64);
+
+        // header split in the middle, then payload split
+        for (int chunk : new int[]{2, 4, 2}) {
+            in.put(frame.slice(frame.position(), chunk));
+            frame.position(frame.position() + chunk);
+            in.flip();
+            assertNull(decoder.decode(in));
+            assertEquals(0, in.position());
+            in.position(in.limit()).limit(in.capacity());
+        }
+        in.put(frame).flip();
+
+        assertEquals("hello", string(decoder.decode(in)));
+    }
+
+    @Test
+    public void decodesSeveralFramesOfOneRead() throws CorruptedFrameException {
+        final ByteBuffer in = ByteBuffer.allocate(64);
+        in.put(encoder.encode(bytes("one"))).put(encoder.encode(bytes(""))).put(encoder.encode(bytes("three")));
+        in.put((byte) 0).flip();
+
+        assertEquals("one", string(decoder.decode(in)));
+        assertEquals("", string(decoder.decode(in)));
+        assertEquals("three", string(decoder.decode(in)));
+        // 1 byte of the next header
+        assertNull(decoder.decode(in));
+        assertEquals(1, in.remaining());
+    }
+
+    @Test
+    public void decodePayloadNarrowsInputToPayload() throws CorruptedFrameException {
+        final ByteBuffer in = ByteBuffer.allocate(64);
+        in.put(encoder.encode(bytes("ab"))).put(encoder.encode(bytes("cd"))).flip();
+
+        final int next = decoder.decodePayload(in);
+
+        assertEquals(4 + 2, next);
+        assertEquals(4, in.position());
+        assertEquals(6, in.limit());
+        assertEquals("ab", string(in));
+    }
+
+    @Test
+    public void encodesPrefixAndPayloadAsOneFrame() throws CorruptedFrameException {
+        final ByteBuffer frame = encoder.encode("[me]: ".getBytes(StandardCharsets.UTF_8), bytes("hi"));
+
+        assertEquals("[me]: hi", string(decoder.decode(frame)));
+    }
+
+    @Test
+    public void rejectsInvalidLength() {
+        final ByteBuffer tooLong = ByteBuffer.allocate(4).putInt(17).flip();
+        final ByteBuffer negative = ByteBuffer.allocate(4).putInt(-1).flip();
+
+        assertThrows(CorruptedFrameException.class, () -> decoder.decode(tooLong));
+        assertThrows(CorruptedFrameException.class, () -> decoder.decode(negative));
+    }
+
+    static ByteBuffer bytes(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String string(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
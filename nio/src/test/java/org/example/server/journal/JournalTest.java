@@ -0,0 +1,203 @@
+package org.example.server.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JournalTest {
+    // 12 bytes of record header + 20 bytes of message: 2 records per segment
+    private static final int SEGMENT_BYTES = 64;
+    private static final long NO_LIMIT = 0;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void messagesAreReadBackInOrder() {
+        try (Journal journal = journal(1024, NO_LIMIT, NO_LIMIT)) {
+            assertEquals(0, journal.append(message(0), 1));
+            assertEquals(1, journal.append(message(1), 2));
+
+            final Journal.Cursor cursor = journal.cursor(0);
+            assertEquals(List.of(0, 1), read(cursor));
+            // end of the journal for now, the cursor goes on once more is appended
+            assertNull(cursor.next());
+            journal.append(message(2), 3);
+            assertEquals(List.of(2), read(cursor));
+            assertEquals(3, cursor.offset());
+        }
+    }
+
+    @Test
+    public void messageIsStoredWithoutChangingTheSource() {
+        try (Journal journal = journal(1024, NO_LIMIT, NO_LIMIT)) {
+            final ByteBuffer message = ByteBuffer.wrap("hello".getBytes(StandardCharsets.UTF_8));
+
+            journal.append(message, 1);
+
+            assertEquals(5, message.remaining());
+            final ByteBuffer stored = journal.cursor(0).next();
+            assertTrue(stored.isReadOnly());
+            assertEquals(message, stored);
+        }
+    }
+
+    @Test
+    public void segmentRollsOverWhenFull() {
+        try (Journal journal = journal(SEGMENT_BYTES, NO_LIMIT, NO_LIMIT)) {
+            for (int i = 0; i < 5; i++) {
+                journal.append(message(i), i);
+            }
+
+            assertEquals(3, journal.segmentCount());
+            assertEquals(List.of(0, 1, 2, 3, 4), read(journal.cursor(0)));
+            assertEquals(List.of(3, 4), read(journal.cursor(3)));
+        }
+    }
+
+    @Test
+    public void oldestSegmentsAreDeletedAboveRetentionBytes() {
+        try (Journal journal = journal(SEGMENT_BYTES, 2 * SEGMENT_BYTES, NO_LIMIT)) {
+            for (int i = 0; i < 10; i++) {
+                journal.append(message(i), System.currentTimeMillis());
+            }
+
+            // checked on rollover: sealed segments within the limit, the active one on top of them
+            assertTrue(journal.sizeBytes() <= 3 * SEGMENT_BYTES, journal.sizeBytes() + " bytes");
+            assertTrue(journal.firstOffset() > 0);
+            // deleted offsets start at the oldest retained one
+            final Journal.Cursor cursor = journal.cursor(0);
+            assertEquals(journal.firstOffset(), cursor.offset());
+            assertEquals(9, read(cursor).get((int) (9 - journal.firstOffset())));
+        }
+    }
+
+    @Test
+    public void oldSegmentsAreDeletedAboveRetentionTime() {
+        try (Journal journal = journal(SEGMENT_BYTES, NO_LIMIT, 60_000)) {
+            journal.append(message(0), 0);
+            journal.append(message(1), 0);
+            final long now = System.currentTimeMillis();
+            journal.append(message(2), now);
+            journal.append(message(3), now);
+            journal.append(message(4), now);
+
+            assertEquals(2, journal.firstOffset());
+            assertEquals(List.of(2, 3, 4), read(journal.cursor(0)));
+        }
+    }
+
+    @Test
+    public void cursorAtTimeStartsAtFirstMessageNotOlder() {
+        try (Journal journal = journal(SEGMENT_BYTES, NO_LIMIT, NO_LIMIT)) {
+            for (int i = 0; i < 6; i++) {
+                journal.append(message(i), 100 * (i + 1));
+            }
+
+            assertEquals(2, journal.cursorAt(250).offset());
+            assertEquals(2, journal.cursorAt(300).offset());
+            assertEquals(0, journal.cursorAt(0).offset());
+            assertEquals(6, journal.cursorAt(1_000).offset());
+        }
+    }
+
+    @Test
+    public void cursorBeyondTheEndWaitsAtTheEnd() {
+        try (Journal journal = journal(1024, NO_LIMIT, NO_LIMIT)) {
+            journal.append(message(0), 1);
+
+            final Journal.Cursor cursor = journal.cursor(100);
+
+            assertEquals(1, cursor.offset());
+            assertNull(cursor.next());
+        }
+    }
+
+    @Test
+    public void reopenedJournalContinuesAfterTheLastMessage() {
+        try (Journal journal = journal(SEGMENT_BYTES, NO_LIMIT, NO_LIMIT)) {
+            for (int i = 0; i < 3; i++) {
+                journal.append(message(i), i);
+            }
+        }
+
+        try (Journal journal = journal(SEGMENT_BYTES, NO_LIMIT, NO_LIMIT)) {
+            assertEquals(3, journal.nextOffset());
+            assertEquals(3, journal.append(message(3), 3));
+            assertEquals(List.of(0, 1, 2, 3), read(journal.cursor(0)));
+        }
+    }
+
+    @Test
+    public void invalidAppendsAreRejected() {
+        final Journal journal = journal(SEGMENT_BYTES, NO_LIMIT, NO_LIMIT);
+
+        assertThrows(IllegalArgumentException.class, () -> journal.append(ByteBuffer.allocate(0), 1));
+        assertThrows(IllegalArgumentException.class, () -> journal.append(ByteBuffer.allocate(SEGMENT_BYTES), 1));
+        journal.close();
+        assertThrows(IllegalStateException.class, () -> journal.append(message(0), 1));
+    }
+
+    @Test
+    public void readerFollowsConcurrentWriter() throws InterruptedException {
+        final int count = 20_000;
+        try (Journal journal = journal(4 * 1024, NO_LIMIT, NO_LIMIT)) {
+            final Thread writer = new Thread(() -> {
+                for (int i = 0; i < count; i++) {
+                    journal.append(message(i), i);
+                }
+            });
+            final AtomicReference<String> failure = new AtomicReference<>();
+            final Journal.Cursor cursor = journal.cursor(0);
+            writer.start();
+
+            int expected = 0;
+            final long deadline = System.currentTimeMillis() + 10_000;
+            while (expected < count && System.currentTimeMillis() < deadline) {
+                final ByteBuffer next = cursor.next();
+                if (next == null) {
+                    // nothing complete yet, never a partial record
+                    Thread.onSpinWait();
+                    continue;
+                }
+                if (next.remaining() != 20 || next.getInt(next.position()) != expected) {
+                    failure.compareAndSet(null, "unexpected record at offset " + expected);
+                }
+                expected++;
+            }
+            writer.join();
+
+            assertNull(failure.get());
+            assertEquals(count, expected);
+        }
+    }
+
+    private Journal journal(int segmentBytes, long retentionBytes, long retentionMillis) {
+        return new Journal(directory, segmentBytes, retentionBytes, retentionMillis, 16);
+    }
+
+    // 20 bytes, the number first
+    private static ByteBuffer message(int number) {
+        return ByteBuffer.allocate(20).putInt(0, number);
+    }
+
+    private static List<Integer> read(Journal.Cursor cursor) {
+        final List<Integer> numbers = new ArrayList<>();
+        ByteBuffer message;
+        while ((message = cursor.next()) != null) {
+            numbers.add(message.getInt(message.position()));
+        }
+        return numbers;
+    }
+}
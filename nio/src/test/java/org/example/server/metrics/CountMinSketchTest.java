@@ -0,0 +1,89 @@
+package org.example.server.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CountMinSketchTest {
+
+    @Test
+    public void fewKeysAreCountedExactly() {
+        final CountMinSketch sketch = new CountMinSketch(1024, 4);
+
+        assertEquals(3, sketch.add(1, 3));
+        assertEquals(5, sketch.add(1, 2));
+        sketch.add(2, 7);
+
+        assertEquals(5, sketch.estimate(1));
+        assertEquals(7, sketch.estimate(2));
+        assertEquals(0, sketch.estimate(3));
+        assertEquals(12, sketch.total());
+    }
+
+    @Test
+    public void estimateIsNeverBelowRealCount() {
+        final int keys = 10_000;
+        final CountMinSketch sketch = new CountMinSketch(256, 4);
+        final long[] counts = new long[keys];
+        final Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            final int key = random.nextInt(keys);
+            counts[key]++;
+            sketch.add(hash(key), 1);
+        }
+
+        int withinBound = 0;
+        // e * total / width
+        final double bound = Math.E * sketch.total() / 256;
+        for (int key = 0; key < keys; key++) {
+            final long estimate = sketch.estimate(hash(key));
+            assertTrue(estimate >= counts[key], key + ": " + estimate + " < " + counts[key]);
+            if (estimate - counts[key] <= bound) {
+                withinBound++;
+            }
+        }
+        // 1 - e^-4 of them at least
+        assertTrue(withinBound >= keys * 0.98, withinBound + " of " + keys + " within the error bound");
+    }
+
+    @Test
+    public void heavyKeyStandsOut() {
+        final CountMinSketch sketch = new CountMinSketch(256, 4);
+        for (int key = 0; key < 10_000; key++) {
+            sketch.add(hash(key), 1);
+        }
+        sketch.add(hash(-1), 5_000);
+
+        assertTrue(sketch.estimate(hash(-1)) >= 5_000);
+        assertTrue(sketch.estimate(hash(-1)) < 5_000 + Math.E * sketch.total() / 256);
+    }
+
+    @Test
+    public void decayHalvesCounts() {
+        final CountMinSketch sketch = new CountMinSketch(64, 2);
+        sketch.add(1, 100);
+        sketch.add(2, 7);
+
+        sketch.decay();
+
+        assertEquals(50, sketch.estimate(1));
+        assertEquals(3, sketch.estimate(2));
+        assertEquals(53, sketch.total());
+    }
+
+    @Test
+    public void dimensionsAreValidated() {
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(100, 4));
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(64, 0));
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(64, 9));
+    }
+
+    // keys hashed once by the caller, like the server does for hosts
+    static long hash(int key) {
+        return Long.hashCode(key) * 0x9E3779B97F4A7C15L + 1;
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.server.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.example.server.metrics.CountMinSketchTest.hash;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HeavyHittersTest {
+
+    @Test
+    public void heaviestKeysAreFoundAmongMany() {
+        final HeavyHitters<Integer> hitters = new HeavyHitters<>(1024, 4, 3);
+        final Random random = new Random(7);
+        for (int i = 0; i < 50_000; i++) {
+            // background: many light keys, three heavy ones interleaved
+            final int key = random.nextInt(10) == 0 ? -1 - random.nextInt(3) : random.nextInt(10_000);
+            hitters.add(key, hash(key), 1);
+        }
+        hitters.publish();
+
+        final Map<Integer, Long> top = candidates(hitters);
+        assertEquals(3, top.size());
+        assertTrue(top.containsKey(-1) && top.containsKey(-2) && top.containsKey(-3), top.toString());
+        top.values().forEach(count -> assertTrue(count > 1_000, top.toString()));
+    }
+
+    @Test
+    public void candidatesAreVisibleAfterPublish() {
+        final HeavyHitters<String> hitters = new HeavyHitters<>(64, 2, 2);
+        hitters.add("a", 1, 10);
+
+        assertTrue(candidates(hitters).isEmpty());
+        hitters.publish();
+        assertEquals(Map.of("a", 10L), candidates(hitters));
+    }
+
+    @Test
+    public void newHeavyKeyReplacesWeakest() {
+        final HeavyHitters<String> hitters = new HeavyHitters<>(1024, 4, 2);
+        hitters.add("a", 1, 10);
+        hitters.add("b", 2, 20);
+        hitters.add("c", 3, 5);
+        hitters.publish();
+        assertEquals(Map.of("a", 10L, "b", 20L), candidates(hitters));
+
+        assertEquals(15, hitters.add("c", 3, 10));
+        hitters.publish();
+        assertEquals(Map.of("b", 20L, "c", 15L), candidates(hitters));
+    }
+
+    @Test
+    public void decayKeepsTopKeys() {
+        final HeavyHitters<String> hitters = new HeavyHitters<>(1024, 4, 2);
+        hitters.add("a", 1, 100);
+        hitters.add("b", 2, 40);
+
+        hitters.decay();
+        // ranked by the halved counts: 25 beats 20
+        hitters.add("c", 3, 25);
+        hitters.publish();
+
+        assertEquals(Map.of("a", 50L, "c", 25L), candidates(hitters));
+    }
+
+    private static <K> Map<K, Long> candidates(HeavyHitters<K> hitters) {
+        final Map<K, Long> candidates = new HashMap<>();
+        hitters.forEachCandidate((key, hash) -> candidates.put(key, hitters.estimate(hash)));
+        return candidates;
+    }
+}
@@ -0,0 +1,165 @@
+package org.example.server.metrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsRegistryTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+
+    @AfterEach
+    public void close() {
+        registry.close();
+    }
+
+    @Test
+    public void snapshotFlattensEveryMetric() {
+        final Counter counter = registry.counter("messages");
+        final Histogram histogram = registry.histogram("latency");
+        registry.gauge("queue", () -> 7);
+        registry.labeledGauge("top", () -> Map.of("a", 1L, "b", 2L));
+        counter.add(3);
+        histogram.record(10);
+        histogram.record(20);
+
+        final Map<String, Number> snapshot = registry.snapshot();
+
+        assertEquals(3L, snapshot.get("messages"));
+        assertEquals(0.0, snapshot.get("messages.rate"));
+        assertEquals(7L, snapshot.get("queue"));
+        assertEquals(1L, snapshot.get("top.a"));
+        assertEquals(2L, snapshot.get("top.b"));
+        // percentiles of the last sampled interval, there was none yet
+        assertEquals(0L, snapshot.get("latency.count"));
+        assertTrue(snapshot.containsKey("latency.p99"));
+    }
+
+    @Test
+    public void nameIsRegisteredOnce() {
+        registry.counter("messages");
+
+        assertThrows(IllegalArgumentException.class, () -> registry.histogram("messages"));
+    }
+
+    @Test
+    public void counterRateIsPerSecondOfInterval() {
+        final Counter counter = registry.counter("messages");
+        counter.add(100);
+
+        counter.sample(2 * SECOND);
+        assertEquals(50.0, counter.rate());
+
+        counter.add(10);
+        counter.sample(SECOND);
+        assertEquals(10.0, counter.rate());
+        assertEquals(110, counter.count());
+    }
+
+    @Test
+    public void histogramReportsLastInterval() {
+        final Histogram histogram = new Histogram();
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        histogram.sample();
+
+        final Histogram.Snapshot first = histogram.lastInterval();
+        assertEquals(100, first.count());
+        assertEquals(50.5, first.mean());
+        // 16 sub-buckets per power of two: ~6%
+        assertTrue(first.percentile(50) >= 50 && first.percentile(50) <= 53, "p50 " + first.percentile(50));
+        assertTrue(first.max() >= 100 && first.max() <= 103, "max " + first.max());
+
+        histogram.record(1_000);
+        histogram.sample();
+        assertEquals(1, histogram.lastInterval().count());
+        assertTrue(histogram.lastInterval().percentile(50) >= 1_000);
+    }
+
+    @Test
+    public void histogramRecordsFromManyThreads() throws InterruptedException {
+        final Histogram histogram = new Histogram();
+        final List<Thread> threads = List.of(1, 2, 3, 4).stream()
+                .map(i -> new Thread(() -> {
+                    for (int j = 0; j < 10_000; j++) {
+                        histogram.record(j);
+                    }
+                }))
+                .collect(Collectors.toList());
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        histogram.sample();
+
+        assertEquals(40_000, histogram.lastInterval().count());
+    }
+
+    @Test
+    public void snapshotIsExposedAsMBean() throws JMException {
+        registry.gauge("queue", () -> 7);
+        final String name = "org.example.server:type=MetricsRegistryTest";
+
+        registry.registerMBean(name);
+
+        assertEquals(7L, ManagementFactory.getPlatformMBeanServer().getAttribute(new ObjectName(name), "queue"));
+        registry.close();
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(name)));
+    }
+
+    @Test
+    public void adminEndpointServesPlainTextAndHttp() throws IOException {
+        registry.gauge("queue", () -> 7);
+        final int port = freePort();
+        try (AdminEndpoint endpoint = new AdminEndpoint(port, registry)) {
+            endpoint.start();
+
+            // nc: sends nothing
+            try (Socket socket = new Socket("127.0.0.1", port)) {
+                assertEquals(List.of("queue 7"), lines(socket));
+            }
+            try (Socket socket = new Socket("127.0.0.1", port)) {
+                final OutputStream out = socket.getOutputStream();
+                out.write("GET / HTTP/1.0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                final List<String> lines = lines(socket);
+                assertEquals("HTTP/1.0 200 OK", lines.get(0));
+                assertEquals("queue 7", lines.get(lines.size() - 1));
+            }
+        }
+    }
+
+    private static List<String> lines(Socket socket) throws IOException {
+        socket.setSoTimeout(5_000);
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))
+                .lines()
+                .collect(Collectors.toList());
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
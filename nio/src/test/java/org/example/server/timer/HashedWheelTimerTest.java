@@ -0,0 +1,107 @@
+package org.example.server.timer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Time is driven by {@link HashedWheelTimer#tick(long)} with 1 second ticks, so the real time passing while
+ * the test runs doesn't make a tick. Delays are half a tick off the tick boundary: the time since the last tick
+ * counts as well, an exact multiple of the tick is rounded up to the next one.
+ */
+public class HashedWheelTimerTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    private final HashedWheelTimer timer = new HashedWheelTimer(1_000, 8);
+    private final long start = System.nanoTime();
+    private final List<String> fired = new ArrayList<>();
+
+    @Test
+    public void taskFiresAtItsTickRoundedUp() {
+        final Timeout timeout = timer.schedule(2_500, () -> fired.add("task"));
+
+        timer.tick(start + 2 * SECOND);
+        assertTrue(fired.isEmpty());
+        assertFalse(timeout.isExpired());
+
+        timer.tick(start + 3 * SECOND);
+        assertEquals(List.of("task"), fired);
+        assertTrue(timeout.isExpired());
+        assertEquals(0, timer.pending());
+    }
+
+    @Test
+    public void taskBeyondWheelWaitsForItsRound() {
+        timer.schedule(19_500, () -> fired.add("late"));
+        timer.schedule(3_500, () -> fired.add("early"));
+
+        // same bucket (4 & 20 modulo 8), the late one has 2 more rounds to go
+        timer.tick(start + 4 * SECOND);
+        assertEquals(List.of("early"), fired);
+        timer.tick(start + 12 * SECOND);
+        assertEquals(List.of("early"), fired);
+        timer.tick(start + 20 * SECOND);
+        assertEquals(List.of("early", "late"), fired);
+    }
+
+    @Test
+    public void cancelledTaskNeverFires() {
+        final Timeout timeout = timer.schedule(500, () -> fired.add("cancelled"));
+        timer.schedule(500, () -> fired.add("kept"));
+
+        timeout.cancel();
+
+        assertTrue(timeout.isCancelled());
+        assertEquals(1, timer.pending());
+        timer.tick(start + 5 * SECOND);
+        assertEquals(List.of("kept"), fired);
+    }
+
+    @Test
+    public void taskMayCancelAndScheduleOthers() {
+        final Timeout[] other = new Timeout[1];
+        timer.schedule(500, () -> {
+            other[0].cancel();
+            timer.schedule(500, () -> fired.add("rescheduled"));
+        });
+        other[0] = timer.schedule(500, () -> fired.add("cancelled by the first"));
+
+        timer.tick(start + SECOND);
+        assertTrue(fired.isEmpty());
+        timer.tick(start + 2 * SECOND);
+        assertEquals(List.of("rescheduled"), fired);
+    }
+
+    @Test
+    public void failingTaskDoesNotStopOthers() {
+        timer.schedule(500, () -> {
+            throw new IllegalStateException("expected by test");
+        });
+        timer.schedule(500, () -> fired.add("next"));
+
+        timer.tick(start + SECOND);
+
+        assertEquals(List.of("next"), fired);
+    }
+
+    @Test
+    public void selectBlocksWithoutLimitWhenNothingIsPending() {
+        assertEquals(0, timer.selectTimeoutMillis());
+
+        timer.schedule(4_500, () -> fired.add("task"));
+
+        final long timeout = timer.selectTimeoutMillis();
+        assertTrue(timeout > 0 && timeout <= 1_000, "select timeout " + timeout);
+    }
+
+    @Test
+    public void wheelSizeMustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new HashedWheelTimer(100, 10));
+    }
+}